@@ -1,28 +1,27 @@
 package org.opensourcebim.bcfexport;
 
-public class BcfExportSettings {
+/**
+ * Immutable settings of a bcf export. The default settings are shared by all
+ * exports, other settings can be passed to the converter per export.
+ */
+public final class BcfExportSettings {
 
-	private String author;
-	private static BcfExportSettings settings = null;
-	
-    private BcfExportSettings() {}
-    
-    public static BcfExportSettings getInstance() {
-        if (settings == null) {
-            synchronized (BcfExportSettings.class) {
-                if (settings == null) {
-                	settings = new BcfExportSettings();
-                }
-            }
-        }
-        return settings;
-    }
+	private static final BcfExportSettings DEFAULT = new BcfExportSettings("bim bot bcf export service");
+
+	private final String author;
+
+	public BcfExportSettings(String author) {
+		this.author = author;
+	}
+
+	/**
+	 * @return the default settings of the bim bot services
+	 */
+	public static BcfExportSettings getInstance() {
+		return DEFAULT;
+	}
 
 	public String getAuthor() {
 		return author;
 	}
-	
-	public void setAuthor(String author) {
-		this.author = author;
-	}
 }
@@ -16,15 +16,21 @@ import org.opensourcebim.ifccollection.MpgObject;
 import org.opensourcebim.ifccollection.MpgObjectStore;
 
 public class ObjectStoreToBcfConverter {
-	MpgObjectStore store;
-	BcfExportSettings settings;
+	private final MpgObjectStore store;
+	private final BcfExportSettings settings;
 
 	public ObjectStoreToBcfConverter(MpgObjectStore store, BimBotsInput botInput) {
-		this.store = store;
-
-		settings = BcfExportSettings.getInstance();
+		this(store, botInput, BcfExportSettings.getInstance());
+	}
 
-		BcfExportSettings.getInstance().setAuthor("bim bot bcf export service");
+	/**
+	 * @param store    the store to report the issues of
+	 * @param botInput input of the bim bot call
+	 * @param settings settings of this export
+	 */
+	public ObjectStoreToBcfConverter(MpgObjectStore store, BimBotsInput botInput, BcfExportSettings settings) {
+		this.store = store;
+		this.settings = settings;
 	}
 
 	public BcfFile write() {
@@ -1,5 +1,6 @@
 package org.opensourcebim.ifcanalysis;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -7,6 +8,7 @@ import java.util.stream.Collectors;
 
 import org.opensourcebim.ifccollection.MpgObject;
 import org.opensourcebim.ifccollection.MpgObjectStore;
+import org.opensourcebim.ifccollection.MpgValidationReport;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -22,6 +24,9 @@ public class GuidCollection {
 	
 	@JsonIgnore
 	private MpgObjectStore store;
+	// flag to indicate the summary of the objects has been determined
+	@JsonIgnore
+	private boolean updated;
 	
 	public GuidCollection(MpgObjectStore store, String description) {
 		guids = new HashSet<String>();
@@ -29,9 +34,14 @@ public class GuidCollection {
 		this.setDescription(description);
 	}
 	
+	public GuidCollection(MpgObjectStore store, String description, Collection<String> guids) {
+		this(store, description);
+		this.guids.addAll(guids);
+	}
+	
 	public void setCollection(List<String> guids){
 		this.guids = new HashSet<String>(guids);
-		update();
+		updated = false;
 	}
 		
 	public int getSize() {
@@ -44,22 +54,27 @@ public class GuidCollection {
 	}
 	
 	public List<String> getTypes() {
+		update();
 		return this.types;
 	}
 	
 	public List<String> getNames() {
+		update();
 		return this.names;
 	}
 	
 	public List<String> getMaterials() {
+		update();
 		return this.materials;
 	}
 	
 	public Long getNumberOfComponents() {
+		update();
 		return this.numberOfComponents;
 	}
 	
 	public Long getNumberOfComposed() {
+		update();
 		return this.numberOfComposed;
 	}
 	
@@ -73,10 +88,17 @@ public class GuidCollection {
 
 	public void reset() {
 		this.guids.clear();
-		update();
+		updated = false;
 	}
 	
+	/**
+	 * Summarize the selected objects on first request
+	 */
 	private void update() {
+		if (updated) {
+			return;
+		}
+		updated = true;
 		List<MpgObject> selectedObjects = store.getObjectsByGuids(guids);
 		types = selectedObjects.stream().map(o -> o.getObjectType()).distinct()
 				.collect(Collectors.toList());
@@ -84,7 +106,8 @@ public class GuidCollection {
 				.collect(Collectors.toList());
 		names = selectedObjects.stream().map(o -> o.getObjectName()).distinct()
 				.collect(Collectors.toList());
-		numberOfComposed = selectedObjects.stream().filter(o -> store.getChildren(o.getGlobalId()).count() > 0).count();
+		MpgValidationReport report = store.getValidationReport();
+		numberOfComposed = selectedObjects.stream().filter(o -> report.isDecomposed(o.getGlobalId())).count();
 		numberOfComponents = selectedObjects.stream().filter(o -> o.getParentId() != null && o.getParentId() != "").count();
 	}
 }
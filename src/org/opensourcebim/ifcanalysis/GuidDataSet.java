@@ -9,6 +9,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.emf.common.util.BasicEList;
 import org.opensourcebim.ifccollection.MpgObject;
 import org.opensourcebim.ifccollection.MpgObjectStore;
+import org.opensourcebim.ifccollection.MpgValidationReport;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -23,6 +24,7 @@ public class GuidDataSet {
 		
 		records = new HashMap<String, GuidPropertyRecord>();
 		columnDefinitions = new HashSet<String>();
+		MpgValidationReport report = store.getValidationReport();
 		
 		for (MpgObject obj : store.getObjects()) {
 			String guid = obj.getGlobalId();
@@ -41,7 +43,7 @@ public class GuidDataSet {
 			this.setRecordValue(guid, "isAssembly",
 					obj.getObjectType().equals("ElementAssembly"));
 			this.setRecordValue(guid, "IsDecomposedById", obj.getParentId());
-			this.setRecordValue(guid, "hasDecomposedProducts", store.getChildren(obj.getGlobalId()).count() > 0);
+			this.setRecordValue(guid, "hasDecomposedProducts", report.isDecomposed(guid));
 			
 			Boolean isAssembly = false;
 			List<String> parentMats = new BasicEList<String>();
@@ -70,6 +70,16 @@ public class MaterialSource {
 		this.mapId = -1;
 		this.mapName = "";
 	}
+
+	/**
+	 * Replace the strings of the material by the instances of the store dictionary
+	 */
+	void internStrings(MpgStringDictionary strings) {
+		this.oid = strings.intern(this.oid);
+		this.name = strings.intern(this.name);
+		this.source = strings.intern(this.source);
+		this.mapName = strings.intern(this.mapName);
+	}
 	public MaterialSource copy() {
 		MaterialSource res = new MaterialSource(this.getOid(), this.getName(), this.getSource());
 		res.mapId = this.getMapId();
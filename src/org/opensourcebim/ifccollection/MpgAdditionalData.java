@@ -0,0 +1,93 @@
+package org.opensourcebim.ifccollection;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * The fields of the additional data json of a GeometryInfo object that are used
+ * for the geometry of an object. The json is read with a streaming parser that
+ * only picks up the required top level fields, without building a tree.
+ */
+final class MpgAdditionalData {
+
+	static final String SURFACE_AREA_ALONG_Z = "SURFACE_AREA_ALONG_Z";
+
+	static final MpgAdditionalData EMPTY = new MpgAdditionalData(0, 0.0);
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private final int fieldCount;
+	private final double surfaceAreaAlongZ;
+
+	private MpgAdditionalData(int fieldCount, double surfaceAreaAlongZ) {
+		this.fieldCount = fieldCount;
+		this.surfaceAreaAlongZ = surfaceAreaAlongZ;
+	}
+
+	/**
+	 * @return flag to indicate the additional data does not contain any fields
+	 */
+	boolean isEmpty() {
+		return fieldCount == 0;
+	}
+
+	/**
+	 * @return the surface area along z in model units, 0 when not present
+	 */
+	double getSurfaceAreaAlongZ() {
+		return surfaceAreaAlongZ;
+	}
+
+	/**
+	 * Read the additional data of a GeometryInfo object. Never throws: data
+	 * that is missing, malformed or not a json object results in empty
+	 * additional data, which marks the geometry of the object as incomplete.
+	 *
+	 * @param json the additional data json
+	 * @return the parsed fields
+	 */
+	static MpgAdditionalData parse(String json) {
+		if (json == null || json.isEmpty()) {
+			return EMPTY;
+		}
+
+		int fieldCount = 0;
+		double surfaceAreaAlongZ = 0.0;
+		try (JsonParser parser = FACTORY.createParser(json)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return EMPTY;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				fieldCount++;
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (SURFACE_AREA_ALONG_Z.equals(name)) {
+					surfaceAreaAlongZ = toDouble(parser, value);
+				} else {
+					// skip nested objects and arrays as a whole
+					parser.skipChildren();
+				}
+			}
+		} catch (IOException e) {
+			return EMPTY;
+		}
+		return fieldCount == 0 ? EMPTY : new MpgAdditionalData(fieldCount, surfaceAreaAlongZ);
+	}
+
+	private static double toDouble(JsonParser parser, JsonToken value) throws IOException {
+		if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+			return parser.getDoubleValue();
+		} else if (value == JsonToken.VALUE_STRING) {
+			try {
+				return Double.parseDouble(parser.getText().trim());
+			} catch (NumberFormatException e) {
+				return 0.0;
+			}
+		}
+		parser.skipChildren();
+		return 0.0;
+	}
+}
@@ -0,0 +1,91 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.models.ifc2x3tc1.IfcClassification;
+import org.bimserver.models.ifc2x3tc1.IfcMaterialSelect;
+import org.bimserver.models.ifc2x3tc1.IfcSpatialStructureElement;
+
+/**
+ * State of a single collection of an IfcModel. Every call to the
+ * MpgIfcObjectCollector creates its own context, such that one collector can
+ * collect several models at the same time.
+ */
+final class MpgCollectionContext {
+
+	private final MpgCollectorSettings settings;
+	private final MpgObjectStoreImpl objectStore;
+	private final MpgGeometryParser geometryParser;
+	// collection metadata per product type of the model
+	private final MpgProductTypeTable productTypes;
+	private final MpgTypeObjectCache typeCache = new MpgTypeObjectCache();
+	// resolved material layer sets and layers of the model
+	private final Map<IfcMaterialSelect, MpgMaterialLayerSet> layerSetCache = new ConcurrentHashMap<>();
+	// flag per classification source whether it is an NLsfb source
+	private final Map<IfcClassification, Boolean> nlsfbSources = new ConcurrentHashMap<>();
+	// storey guid per spatial structure of the model, empty when not in a storey
+	private final Map<IfcSpatialStructureElement, String> structureStoreys = new ConcurrentHashMap<>();
+	// resolved relations of the model when collecting relation centric
+	private MpgRelationIndex relationIndex;
+
+	/**
+	 * @param ifcModel the model to collect
+	 * @param settings copy of the collector settings, not changed afterwards
+	 * @param pId      id of the project the model belongs to
+	 */
+	MpgCollectionContext(IfcModelInterface ifcModel, MpgCollectorSettings settings, String pId) {
+		this.settings = settings;
+		this.objectStore = new MpgObjectStoreImpl();
+		this.objectStore.setUnits(MpgGeometryParser.getVolumeUnit(), MpgGeometryParser.getAreaUnit(),
+				MpgGeometryParser.GetLengthUnit());
+		this.objectStore.setProjectId(pId);
+		this.geometryParser = new MpgGeometryParser(ifcModel);
+		this.productTypes = new MpgProductTypeTable(ifcModel, settings);
+	}
+
+	MpgCollectorSettings getSettings() {
+		return settings;
+	}
+
+	MpgObjectStoreImpl getObjectStore() {
+		return objectStore;
+	}
+
+	MpgGeometryParser getGeometryParser() {
+		return geometryParser;
+	}
+
+	MpgProductTypeTable getProductTypes() {
+		return productTypes;
+	}
+
+	MpgTypeObjectCache getTypeCache() {
+		return typeCache;
+	}
+
+	Map<IfcMaterialSelect, MpgMaterialLayerSet> getLayerSetCache() {
+		return layerSetCache;
+	}
+
+	Map<IfcClassification, Boolean> getNlsfbSources() {
+		return nlsfbSources;
+	}
+
+	Map<IfcSpatialStructureElement, String> getStructureStoreys() {
+		return structureStoreys;
+	}
+
+	/**
+	 * @return the relation index or null when the products are collected product
+	 *         centric
+	 */
+	MpgRelationIndex getRelationIndex() {
+		return relationIndex;
+	}
+
+	void setRelationIndex(MpgRelationIndex relationIndex) {
+		this.relationIndex = relationIndex;
+	}
+}
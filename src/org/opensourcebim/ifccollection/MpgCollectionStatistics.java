@@ -0,0 +1,99 @@
+package org.opensourcebim.ifccollection;
+
+/**
+ * Counters of a single collection of an IfcModel. The counters are copied from
+ * the collection context when the collection is finished, such that the store
+ * does not keep the caches or the model alive.
+ */
+public final class MpgCollectionStatistics {
+
+	private final long typeCacheHitCount;
+	private final long typeCacheMissCount;
+	private final int cachedTypeCount;
+	private final int geometryCount;
+	private final int parsedGeometryCount;
+	private final int distinctStringCount;
+	private final long duplicateStringCount;
+
+	public MpgCollectionStatistics(long typeCacheHitCount, long typeCacheMissCount, int cachedTypeCount,
+			int geometryCount, int parsedGeometryCount, int distinctStringCount, long duplicateStringCount) {
+		this.typeCacheHitCount = typeCacheHitCount;
+		this.typeCacheMissCount = typeCacheMissCount;
+		this.cachedTypeCount = cachedTypeCount;
+		this.geometryCount = geometryCount;
+		this.parsedGeometryCount = parsedGeometryCount;
+		this.distinctStringCount = distinctStringCount;
+		this.duplicateStringCount = duplicateStringCount;
+	}
+
+	/**
+	 * @param typeCache      type cache of the collection
+	 * @param geometryParser geometry parser of the collection
+	 * @param strings        string dictionary of the collected store
+	 * @return the current counters of the cache, the parser and the dictionary
+	 */
+	static MpgCollectionStatistics of(MpgTypeObjectCache typeCache, MpgGeometryParser geometryParser,
+			MpgStringDictionary strings) {
+		return new MpgCollectionStatistics(typeCache.getHitCount(), typeCache.getMissCount(), typeCache.size(),
+				geometryParser.getGeometryCount(), geometryParser.getParsedGeometryCount(), strings.size(),
+				strings.getDuplicateCount());
+	}
+
+	/**
+	 * @return number of type lookups that could be served from the cache
+	 */
+	public long getTypeCacheHitCount() {
+		return typeCacheHitCount;
+	}
+
+	/**
+	 * @return number of type lookups that required the type to be resolved
+	 */
+	public long getTypeCacheMissCount() {
+		return typeCacheMissCount;
+	}
+
+	/**
+	 * @return number of distinct types that have been resolved
+	 */
+	public int getCachedTypeCount() {
+		return cachedTypeCount;
+	}
+
+	/**
+	 * @return number of products with a geometry that have been evaluated
+	 */
+	public int getGeometryCount() {
+		return geometryCount;
+	}
+
+	/**
+	 * @return number of geometries that had to be parsed for the evaluated products
+	 */
+	public int getParsedGeometryCount() {
+		return parsedGeometryCount;
+	}
+
+	/**
+	 * @return the average number of products per parsed geometry. 1 when no
+	 *         geometry is shared between products
+	 */
+	public double getInstancingRatio() {
+		return parsedGeometryCount == 0 ? 1.0 : (double) geometryCount / parsedGeometryCount;
+	}
+
+	/**
+	 * @return number of distinct strings kept by the dictionary of the store
+	 */
+	public int getDistinctStringCount() {
+		return distinctStringCount;
+	}
+
+	/**
+	 * @return number of collected strings that were replaced by an equal instance
+	 *         of the dictionary of the store
+	 */
+	public long getDuplicateStringCount() {
+		return duplicateStringCount;
+	}
+}
@@ -0,0 +1,232 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.opensourcebim.services.FloorAreaClient;
+
+/**
+ * Settings that determine how the MpgIfcObjectCollector traverses an IfcModel
+ */
+public class MpgCollectorSettings {
+
+	/**
+	 * properties that are used to determine the geometry of objects without a
+	 * geometry from the geometry server
+	 */
+	public static final Set<String> GEOMETRY_PROPERTIES = Collections.unmodifiableSet(
+			new HashSet<>(Arrays.asList("volume", "netvolume", "area", "netarea", "grosssidearea")));
+
+	// number of threads used to collect the products. 1 or less collects on the calling thread.
+	private int parallelism;
+
+	// number of products below which a batch of products is no longer split up over threads
+	private int parallelThreshold;
+
+	// resolve relations once for the whole model instead of walking the relations of every product
+	private boolean relationCentricCollection;
+
+	// skip the geometry from the geometry server and only use quantity set geometry
+	private boolean geometryFreeCollection;
+
+	// load only the collected parts of the model with a query instead of the complete model
+	private boolean queryModelLoading;
+
+	// method to determine the floor area of the model
+	private MpgFloorAreaStrategy floorAreaStrategy;
+
+	// size in meters of the raster cells when rasterizing the floor area
+	private double floorAreaCellSize;
+
+	// client of the voxel service for models without spaces
+	private FloorAreaClient floorAreaClient;
+
+	// lower case names of the properties that are collected. null collects all properties
+	private Set<String> propertyWhitelist;
+
+	// IFC types of products that are not included in the material calculations.
+	private Set<String> ignoredProductTypes;
+
+	// IFC types of products of which the geometry is only taken from the property sets
+	private Set<String> productTypesWithoutGeometry;
+
+	// IFC types of products of which the materials are not collected
+	private Set<String> productTypesWithoutMaterials;
+
+	public MpgCollectorSettings() {
+		setParallelism(1);
+		setParallelThreshold(500);
+		setRelationCentricCollection(false);
+		setGeometryFreeCollection(false);
+		setQueryModelLoading(false);
+		setFloorAreaStrategy(MpgFloorAreaStrategy.spacesOrVoxelService);
+		setFloorAreaCellSize(0.1);
+		setFloorAreaClient(new FloorAreaClient());
+		setPropertyWhitelist(null);
+		setIgnoredProductTypes(new HashSet<>(Arrays.asList("IfcSite", "IfcBuilding", "IfcBuildingStorey",
+				"IfcFurnishingElement", "IfcOpeningElement", "IfcVirtualElement", "IfcSpace", "IfcAnnotation",
+				"IfcGrid")));
+		setProductTypesWithoutGeometry(new HashSet<>());
+		setProductTypesWithoutMaterials(new HashSet<>());
+	}
+
+	/**
+	 * Copy the settings. A collection works on a copy of the settings of the
+	 * collector, such that changing the settings does not affect collections that
+	 * are already running.
+	 * 
+	 * @param other settings to copy
+	 */
+	public MpgCollectorSettings(MpgCollectorSettings other) {
+		this.parallelism = other.parallelism;
+		this.parallelThreshold = other.parallelThreshold;
+		this.relationCentricCollection = other.relationCentricCollection;
+		this.geometryFreeCollection = other.geometryFreeCollection;
+		this.queryModelLoading = other.queryModelLoading;
+		this.floorAreaStrategy = other.floorAreaStrategy;
+		this.floorAreaCellSize = other.floorAreaCellSize;
+		this.floorAreaClient = other.floorAreaClient;
+		this.propertyWhitelist = copyOf(other.propertyWhitelist);
+		this.ignoredProductTypes = copyOf(other.ignoredProductTypes);
+		this.productTypesWithoutGeometry = copyOf(other.productTypesWithoutGeometry);
+		this.productTypesWithoutMaterials = copyOf(other.productTypesWithoutMaterials);
+	}
+
+	private static Set<String> copyOf(Set<String> set) {
+		return set == null ? null : Collections.unmodifiableSet(new HashSet<>(set));
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = Math.max(1, parallelThreshold);
+	}
+
+	/**
+	 * @param numberOfProducts total products that will be evaluated
+	 * @return flag to indicate that the products should be collected in parallel.
+	 *         Always false with query model loading, as objects that are not
+	 *         part of the query are lazy loaded from the session of the model,
+	 *         which is not thread safe.
+	 */
+	public boolean collectInParallel(int numberOfProducts) {
+		return this.getParallelism() > 1 && numberOfProducts > this.getParallelThreshold()
+				&& !this.isQueryModelLoading();
+	}
+
+	public boolean isRelationCentricCollection() {
+		return relationCentricCollection;
+	}
+
+	public void setRelationCentricCollection(boolean relationCentricCollection) {
+		this.relationCentricCollection = relationCentricCollection;
+	}
+
+	public boolean isGeometryFreeCollection() {
+		return geometryFreeCollection;
+	}
+
+	/**
+	 * @param geometryFreeCollection flag to collect without the geometry generated
+	 *                               by the server. Volumes and areas are then taken
+	 *                               from the quantity and property sets only.
+	 */
+	public void setGeometryFreeCollection(boolean geometryFreeCollection) {
+		this.geometryFreeCollection = geometryFreeCollection;
+	}
+
+	public boolean isQueryModelLoading() {
+		return queryModelLoading;
+	}
+
+	/**
+	 * @param queryModelLoading flag to query the server for the products,
+	 *                          relations, materials, property sets and units that
+	 *                          are collected before the collection starts. This
+	 *                          requires a model that is not preloaded completely.
+	 *                          Products are then collected on the calling thread,
+	 *                          regardless of the parallelism.
+	 */
+	public void setQueryModelLoading(boolean queryModelLoading) {
+		this.queryModelLoading = queryModelLoading;
+	}
+
+	public MpgFloorAreaStrategy getFloorAreaStrategy() {
+		return floorAreaStrategy;
+	}
+
+	public void setFloorAreaStrategy(MpgFloorAreaStrategy floorAreaStrategy) {
+		this.floorAreaStrategy = floorAreaStrategy;
+	}
+
+	public double getFloorAreaCellSize() {
+		return floorAreaCellSize;
+	}
+
+	public void setFloorAreaCellSize(double floorAreaCellSize) {
+		this.floorAreaCellSize = floorAreaCellSize;
+	}
+
+	public FloorAreaClient getFloorAreaClient() {
+		return floorAreaClient;
+	}
+
+	/**
+	 * @param floorAreaClient client of the voxel service that is asked for the
+	 *                        floor area of models without spaces
+	 */
+	public void setFloorAreaClient(FloorAreaClient floorAreaClient) {
+		this.floorAreaClient = floorAreaClient;
+	}
+
+	public Set<String> getPropertyWhitelist() {
+		return propertyWhitelist;
+	}
+
+	/**
+	 * @param propertyWhitelist names of the properties to collect up front. Other
+	 *                          properties are only read from the model on request.
+	 *                          null to collect all properties.
+	 */
+	public void setPropertyWhitelist(Set<String> propertyWhitelist) {
+		this.propertyWhitelist = propertyWhitelist == null ? null
+				: propertyWhitelist.stream().map(String::toLowerCase).collect(Collectors.toSet());
+	}
+
+	public Set<String> getIgnoredProductTypes() {
+		return ignoredProductTypes;
+	}
+
+	public void setIgnoredProductTypes(Set<String> ignoredProductTypes) {
+		this.ignoredProductTypes = ignoredProductTypes;
+	}
+
+	public Set<String> getProductTypesWithoutGeometry() {
+		return productTypesWithoutGeometry;
+	}
+
+	public void setProductTypesWithoutGeometry(Set<String> productTypesWithoutGeometry) {
+		this.productTypesWithoutGeometry = productTypesWithoutGeometry;
+	}
+
+	public Set<String> getProductTypesWithoutMaterials() {
+		return productTypesWithoutMaterials;
+	}
+
+	public void setProductTypesWithoutMaterials(Set<String> productTypesWithoutMaterials) {
+		this.productTypesWithoutMaterials = productTypesWithoutMaterials;
+	}
+}
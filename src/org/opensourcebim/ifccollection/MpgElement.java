@@ -1,6 +1,6 @@
 package org.opensourcebim.ifccollection;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -22,6 +22,9 @@ public class MpgElement {
 	private MpgObject mpgObject;
 	private MpgObjectStore store;
 	private NmdMappingType mappingMethod;
+	// ids of the mapped product cards, determined on first request
+	@JsonIgnore
+	private int[] productIds;
 
 	public MpgElement(String name, MpgObjectStore store) {
 		ifcName = name;
@@ -30,7 +33,12 @@ public class MpgElement {
 	}
 
 	public void setMpgObject(MpgObject mpgObject) {
+		MpgObject oldObject = this.mpgObject;
 		this.mpgObject = mpgObject;
+		this.productIds = null;
+		if (store instanceof MpgObjectStoreImpl) {
+			((MpgObjectStoreImpl) store).updateElementIndex(this, oldObject);
+		}
 	}
 
 	public MpgObject getMpgObject() {
@@ -53,7 +61,11 @@ public class MpgElement {
 
 	public void setMappingMethod(NmdMappingType mapping) {
 		if (mapping != this.mappingMethod) {
+			boolean wasMapped = this.hasMapping();
 			this.mappingMethod = mapping;
+			if (store instanceof MpgObjectStoreImpl) {
+				((MpgObjectStoreImpl) store).updateMappingState(this, wasMapped);
+			}
 			if (mapping == NmdMappingType.None) {
 				// remove any mappings that were added through hierarchical constraints
 				store.toggleMappingDependencies(this.getMpgObject().getGlobalId(), false);
@@ -75,24 +87,36 @@ public class MpgElement {
 	}
 
 	public List<Integer> getProductIds() {
+		return Arrays.stream(this.getProductIdArray()).boxed().collect(Collectors.toList());
+	}
 
-		return this.getMpgObject() == null ? new ArrayList<Integer>()
-				: this.getMpgObject().getListedMaterials().stream().filter(m -> m.getMapId() > 0).map(m -> m.getMapId())
-						.collect(Collectors.toList());
+	/**
+	 * @return the ids of the mapped materials, kept until the mapping changes
+	 */
+	private int[] getProductIdArray() {
+		int[] ids = this.productIds;
+		if (ids == null) {
+			ids = this.getMpgObject() == null ? new int[0]
+					: this.getMpgObject().getListedMaterials().stream().filter(m -> m.getMapId() > 0)
+							.mapToInt(m -> m.getMapId()).toArray();
+			this.productIds = ids;
+		}
+		return ids;
 	}
 
 	@JsonIgnore
 	public List<NmdProductCard> getNmdProductCards() {
-		return this.getStore().getProductCards(this.getProductIds());
+		return this.getStore().getProductCards(this.getProductIdArray());
 	}
 
 	private void addProductCard(NmdProductCard productCard) {
-		this.getProductIds().add(productCard.getProductId());
+		this.productIds = null;
 		this.getStore().addProductCard(productCard);
 	}
 
 	public void removeProductCards() {
 		this.getMpgObject().getListedMaterials().forEach(mat -> mat.clearMap());
+		this.productIds = null;
 	}
 
 	public void mapProductCard(MaterialSource mat, NmdProductCard card) {
@@ -141,8 +165,9 @@ public class MpgElement {
 	}
 
 	public boolean copyMappingFromElement(MpgElement element) {
-		if (this.getValueHash().equals(element.getValueHash())) {
+		if (this.getMpgObject().hasEqualValueHash(element.getMpgObject())) {
 			this.setMappingMethod(element.getMappingMethod());
+			this.productIds = null;
 
 			return this.getMpgObject().copyMappingFromObject(element.getMpgObject());
 		}
@@ -0,0 +1,197 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Groups of elements with equal object value hashes. Groups are found by the
+ * 64-bit structural hash of the objects and verified on the value hash itself.
+ * The store reports elements that get another object and objects of which the
+ * value hash has changed; only those elements are moved to another group.
+ */
+final class MpgElementGroupIndex {
+
+	/**
+	 * Elements with the same value hash
+	 */
+	private static final class Group {
+		private final String valueHash;
+		private final long structuralHash;
+		private final Set<MpgElement> elements = new LinkedHashSet<MpgElement>();
+
+		Group(String valueHash, long structuralHash) {
+			this.valueHash = valueHash;
+			this.structuralHash = structuralHash;
+		}
+	}
+
+	private final Map<Long, List<Group>> groupsByHash = new HashMap<Long, List<Group>>();
+	private final Map<MpgElement, Group> groupByElement = new IdentityHashMap<MpgElement, Group>();
+	// elements per object, to find the elements of an object with a changed value hash
+	private final Map<MpgObject, List<MpgElement>> elementsByObject = new IdentityHashMap<MpgObject, List<MpgElement>>();
+	// elements that have to be grouped again, in the order they were reported
+	private final Set<MpgElement> dirtyElements = new LinkedHashSet<MpgElement>();
+
+	// groups by value hash, determined on first request after the groups changed
+	private Map<String, List<MpgElement>> groups;
+	private Map<String, List<MpgElement>> cleanedGroups;
+
+	/**
+	 * @param elements all elements of the store
+	 * @param cleaned  flag to indicate that elements without an object name should
+	 *                 be left out
+	 * @return the elements grouped by the value hash of their object
+	 */
+	Map<String, List<MpgElement>> getGroups(Set<MpgElement> elements, boolean cleaned) {
+		regroupDirtyElements(elements);
+		if (cleaned) {
+			if (cleanedGroups == null) {
+				cleanedGroups = collectGroups(true);
+			}
+			return cleanedGroups;
+		} else {
+			if (groups == null) {
+				groups = collectGroups(false);
+			}
+			return groups;
+		}
+	}
+
+	/**
+	 * @param element   element of which the object has been set
+	 * @param oldObject the previous object of the element, if any
+	 */
+	void elementChanged(MpgElement element, MpgObject oldObject) {
+		if (oldObject != null) {
+			List<MpgElement> objectElements = elementsByObject.get(oldObject);
+			if (objectElements != null) {
+				objectElements.remove(element);
+				if (objectElements.isEmpty()) {
+					elementsByObject.remove(oldObject);
+				}
+			}
+		}
+		MpgObject mpgObject = element.getMpgObject();
+		if (mpgObject != null) {
+			elementsByObject.computeIfAbsent(mpgObject, o -> new ArrayList<MpgElement>(1)).add(element);
+		}
+		dirtyElements.add(element);
+	}
+
+	/**
+	 * @param element element that has been removed from the store
+	 */
+	void elementRemoved(MpgElement element) {
+		dirtyElements.remove(element);
+		MpgObject mpgObject = element.getMpgObject();
+		List<MpgElement> objectElements = mpgObject == null ? null : elementsByObject.get(mpgObject);
+		if (objectElements != null) {
+			objectElements.remove(element);
+			if (objectElements.isEmpty()) {
+				elementsByObject.remove(mpgObject);
+			}
+		}
+		Group group = groupByElement.remove(element);
+		if (group != null) {
+			removeFromGroup(element, group);
+		}
+	}
+
+	/**
+	 * @param mpgObject object of which the value hash has changed
+	 */
+	void valueHashChanged(MpgObject mpgObject) {
+		List<MpgElement> objectElements = elementsByObject.get(mpgObject);
+		if (objectElements != null) {
+			dirtyElements.addAll(objectElements);
+		}
+	}
+
+	/**
+	 * @return true when an element of the index has the object
+	 */
+	boolean hasElements(MpgObject mpgObject) {
+		return elementsByObject.containsKey(mpgObject);
+	}
+
+	/**
+	 * Move the reported elements to the group of the current value hash of their
+	 * object.
+	 */
+	private void regroupDirtyElements(Set<MpgElement> elements) {
+		for (MpgElement el : dirtyElements) {
+			MpgObject mpgObject = el.getMpgObject();
+			String valueHash = mpgObject != null && elements.contains(el) ? mpgObject.getValueHash() : null;
+			Group group = groupByElement.get(el);
+			if (group != null && group.valueHash.equals(valueHash)) {
+				continue;
+			}
+			if (group != null) {
+				groupByElement.remove(el);
+				removeFromGroup(el, group);
+			}
+			if (valueHash != null) {
+				add(el, valueHash, mpgObject.getStructuralHash());
+			}
+		}
+		dirtyElements.clear();
+	}
+
+	private void add(MpgElement el, String valueHash, long structuralHash) {
+		List<Group> candidates = groupsByHash.computeIfAbsent(structuralHash, h -> new ArrayList<Group>(1));
+		Group group = null;
+		for (Group candidate : candidates) {
+			// different value hashes can have the same structural hash
+			if (candidate.valueHash.equals(valueHash)) {
+				group = candidate;
+				break;
+			}
+		}
+		if (group == null) {
+			group = new Group(valueHash, structuralHash);
+			candidates.add(group);
+		}
+		group.elements.add(el);
+		groupByElement.put(el, group);
+		clearGroups();
+	}
+
+	private void removeFromGroup(MpgElement el, Group group) {
+		group.elements.remove(el);
+		if (group.elements.isEmpty()) {
+			List<Group> candidates = groupsByHash.get(group.structuralHash);
+			candidates.remove(group);
+			if (candidates.isEmpty()) {
+				groupsByHash.remove(group.structuralHash);
+			}
+		}
+		clearGroups();
+	}
+
+	private void clearGroups() {
+		groups = null;
+		cleanedGroups = null;
+	}
+
+	private Map<String, List<MpgElement>> collectGroups(boolean cleaned) {
+		Map<String, List<MpgElement>> res = new HashMap<String, List<MpgElement>>();
+		for (List<Group> candidates : groupsByHash.values()) {
+			for (Group group : candidates) {
+				List<MpgElement> elements = group.elements.stream()
+						.filter(el -> !cleaned || !el.getMpgObject().getObjectName().isEmpty())
+						.collect(Collectors.toList());
+				if (!elements.isEmpty()) {
+					res.put(group.valueHash, Collections.unmodifiableList(elements));
+				}
+			}
+		}
+		return Collections.unmodifiableMap(res);
+	}
+}
@@ -0,0 +1,170 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.models.geometry.GeometryInfo;
+import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.models.ifc2x3tc1.IfcRelContainedInSpatialStructure;
+import org.bimserver.models.ifc2x3tc1.IfcRelDecomposes;
+import org.bimserver.models.ifc2x3tc1.IfcSlab;
+import org.bimserver.models.ifc2x3tc1.IfcSlabTypeEnum;
+import org.bimserver.models.ifc2x3tc1.IfcSpace;
+
+/**
+ * Local determination of the gross floor area of a model. The triangles of the
+ * slabs and spaces of every storey are projected on a 2D raster and the area of
+ * the covered cells is the floor area of the storey. Overlapping slabs and
+ * spaces are therefore only counted once. Storeys are rasterized in parallel.
+ */
+class MpgFloorAreaRasterizer {
+
+	// upper limit of the raster size per storey. larger storeys get larger cells.
+	private static final long MAX_CELLS = 1L << 26;
+
+	private final double lengthFactor;
+	private final double cellSize;
+
+	/**
+	 * @param cellSize     size of the raster cells in meters
+	 * @param lengthFactor factor to convert model lengths to meters
+	 */
+	MpgFloorAreaRasterizer(double cellSize, double lengthFactor) {
+		this.lengthFactor = lengthFactor;
+		this.cellSize = cellSize / lengthFactor;
+	}
+
+	/**
+	 * @param ifcModel model with storeys
+	 * @return a space per storey with a floor area in square meters
+	 */
+	List<MpgSpaceImpl> getStoreyFloorAreas(IfcModelInterface ifcModel) {
+		return ifcModel.getAllWithSubTypes(IfcBuildingStorey.class).parallelStream()
+				.map(storey -> {
+					double area = getFloorArea(getStoreyGeometries(storey));
+					return area > 0 ? new MpgSpaceImpl(storey.getGlobalId(), 0.0, area) : null;
+				})
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the geometries of the slabs contained in the storey and the spaces
+	 *         the storey is decomposed in. Roof slabs do not add a floor.
+	 */
+	private static List<GeometryInfo> getStoreyGeometries(IfcBuildingStorey storey) {
+		List<GeometryInfo> geometries = new ArrayList<>();
+		if (storey.getContainsElements() != null) {
+			for (IfcRelContainedInSpatialStructure rel : storey.getContainsElements()) {
+				rel.getRelatedElements().stream().filter(el -> el instanceof IfcSlab)
+						.filter(el -> ((IfcSlab) el).getPredefinedType() != IfcSlabTypeEnum.ROOF)
+						.map(el -> el.getGeometry()).filter(Objects::nonNull).forEach(geometries::add);
+			}
+		}
+		if (storey.getIsDecomposedBy() != null) {
+			for (IfcRelDecomposes rel : storey.getIsDecomposedBy()) {
+				rel.getRelatedObjects().stream().filter(o -> o instanceof IfcSpace)
+						.map(o -> ((IfcSpace) o).getGeometry()).filter(Objects::nonNull).forEach(geometries::add);
+			}
+		}
+		return geometries;
+	}
+
+	/**
+	 * @param geometries the geometries on a single level
+	 * @return the area covered by the geometries projected on the xy plane in
+	 *         square meters
+	 */
+	double getFloorArea(List<GeometryInfo> geometries) {
+		// determine the extent of the raster
+		double[] bounds = { Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (GeometryInfo geometry : geometries) {
+			MpgTriangleGeometry.forEachTriangle(geometry, p -> {
+				for (int i = 0; i < 9; i += 3) {
+					bounds[0] = Math.min(bounds[0], p[i]);
+					bounds[1] = Math.min(bounds[1], p[i + 1]);
+					bounds[2] = Math.max(bounds[2], p[i]);
+					bounds[3] = Math.max(bounds[3], p[i + 1]);
+				}
+			});
+		}
+		if (bounds[2] <= bounds[0] || bounds[3] <= bounds[1]) {
+			return 0.0;
+		}
+
+		double cell = cellSize;
+		double cellCount = Math.ceil((bounds[2] - bounds[0]) / cell) * Math.ceil((bounds[3] - bounds[1]) / cell);
+		if (cellCount > MAX_CELLS) {
+			cell *= Math.sqrt(cellCount / MAX_CELLS) * 1.01;
+		}
+		Raster raster = new Raster(bounds[0], bounds[1], cell, (int) Math.ceil((bounds[2] - bounds[0]) / cell),
+				(int) Math.ceil((bounds[3] - bounds[1]) / cell));
+		for (GeometryInfo geometry : geometries) {
+			MpgTriangleGeometry.forEachTriangle(geometry, raster::fill);
+		}
+
+		double cellInMeters = cell * lengthFactor;
+		return raster.getFilledCellCount() * cellInMeters * cellInMeters;
+	}
+
+	/**
+	 * Raster of cells that are filled when their center lies within a triangle
+	 */
+	private static final class Raster {
+		private final double x0;
+		private final double y0;
+		private final double cell;
+		private final int width;
+		private final int height;
+		private final BitSet cells;
+
+		Raster(double x0, double y0, double cell, int width, int height) {
+			this.x0 = x0;
+			this.y0 = y0;
+			this.cell = cell;
+			this.width = width;
+			this.height = height;
+			this.cells = new BitSet(width * height);
+		}
+
+		int getFilledCellCount() {
+			return cells.cardinality();
+		}
+
+		/**
+		 * @param p x, y and z of the three corners of a triangle
+		 */
+		void fill(double[] p) {
+			double ax = p[0], ay = p[1], bx = p[3], by = p[4], cx = p[6], cy = p[7];
+			double area2 = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+			if (area2 == 0.0) {
+				// vertical faces do not cover any floor area
+				return;
+			}
+			double sign = Math.signum(area2);
+
+			int minI = Math.max(0, (int) Math.floor((Math.min(ax, Math.min(bx, cx)) - x0) / cell));
+			int maxI = Math.min(width - 1, (int) Math.floor((Math.max(ax, Math.max(bx, cx)) - x0) / cell));
+			int minJ = Math.max(0, (int) Math.floor((Math.min(ay, Math.min(by, cy)) - y0) / cell));
+			int maxJ = Math.min(height - 1, (int) Math.floor((Math.max(ay, Math.max(by, cy)) - y0) / cell));
+
+			for (int j = minJ; j <= maxJ; j++) {
+				double py = y0 + (j + 0.5) * cell;
+				for (int i = minI; i <= maxI; i++) {
+					double px = x0 + (i + 0.5) * cell;
+					// the center is inside when it is on the same side of all edges
+					double w0 = ((bx - ax) * (py - ay) - (by - ay) * (px - ax)) * sign;
+					double w1 = ((cx - bx) * (py - by) - (cy - by) * (px - bx)) * sign;
+					double w2 = ((ax - cx) * (py - cy) - (ay - cy) * (px - cx)) * sign;
+					if (w0 >= 0 && w1 >= 0 && w2 >= 0) {
+						cells.set(j * width + i);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package org.opensourcebim.ifccollection;
+
+// method to determine the floor area of a model
+public enum MpgFloorAreaStrategy {
+	// sum the internal IfcSpaces, or ask the remote voxel service when there are none
+	spacesOrVoxelService,
+	// rasterize the slabs and spaces of every storey locally
+	storeyRasterization,
+}
@@ -1,6 +1,4 @@
 package org.opensourcebim.ifccollection;
-import java.util.Arrays;
-import java.util.Collections;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -10,8 +8,17 @@ public class MpgGeometry {
 
 	private Boolean isComplete;
 	
-	private Double[] principalDimensions;
-	private Double[] sortedDims;
+	// dimensions in x, y and z direction and the same dimensions from large to small
+	private double[] principalDimensions;
+	private double[] sortedDims;
+	// scaling orientations for products defined in length and area units.
+	private MpgScalingOrientation lengthScaler;
+	private MpgScalingOrientation areaScaler;
+	// flag for geometries that are shared by multiple objects
+	private boolean immutable = false;
+	// object that is notified of changes, such that its store can revalidate it
+	@JsonIgnore
+	private MpgObjectImpl owner;
 
 	public MpgGeometry() {
 		volume = Double.NaN;
@@ -25,6 +32,7 @@ public class MpgGeometry {
 	}
 
 	public void setVolume(Double volume) {
+		checkMutable();
 		this.volume = volume;
 	}
 
@@ -33,18 +41,22 @@ public class MpgGeometry {
 	}
 
 	public void setFloorArea(Double floorArea) {
+		checkMutable();
 		this.floorArea = floorArea;
 	}
 
 	@JsonIgnore
 	public Double getFaceArea() {
+		if (this.sortedDims == null) {
+			return Double.NaN;
+		}
 		return this.sortedDims[0] * this.sortedDims[1];
 	}
 
 	// return the largest axis
 	@JsonIgnore
 	public Double getPrincipalDimension() {
-		if (this.sortedDims.length == 0) {
+		if (this.sortedDims == null) {
 			return Double.NaN;
 		}
 	    return this.sortedDims[0];
@@ -56,29 +68,108 @@ public class MpgGeometry {
 	}
 
 	public void setIsComplete(Boolean isComplete) {
+		checkMutable();
 		this.isComplete = isComplete;
 	}
 
+	/**
+	 * @return a new array with the dimensions or null when they are not set. Use
+	 *         getDimension to read a dimension without allocating.
+	 */
 	public Double[] getDimensions() {
-		return this.principalDimensions;
+		if (this.principalDimensions == null) {
+			return null;
+		}
+		return new Double[] {principalDimensions[0], principalDimensions[1], principalDimensions[2]};
+	}
+
+	/**
+	 * @param index 0, 1 or 2 for the x, y or z direction
+	 * @return the dimension in the given direction, NaN when the dimensions are not set
+	 */
+	@JsonIgnore
+	public double getDimension(int index) {
+		return this.principalDimensions == null ? Double.NaN : this.principalDimensions[index];
+	}
+
+	@JsonIgnore
+	public boolean hasDimensions() {
+		return this.principalDimensions != null;
 	}
 
 	public void setDimensions(double x_dir, double y_dir, double z_dir) {
-		this.principalDimensions = new Double[] {x_dir, y_dir, z_dir};
-		this.sortedDims = new Double[] {x_dir, y_dir, z_dir};
-		Arrays.sort(sortedDims, Collections.reverseOrder());
+		checkMutable();
+		this.principalDimensions = new double[] {x_dir, y_dir, z_dir};
+
+		// sort the three dimensions from large to small. Double.compare gives a
+		// total order, which places NaN before infinite and finite values.
+		double large = x_dir;
+		double mid = y_dir;
+		double small = z_dir;
+		double swap;
+		if (Double.compare(large, mid) < 0) {
+			swap = large;
+			large = mid;
+			mid = swap;
+		}
+		if (Double.compare(mid, small) < 0) {
+			swap = mid;
+			mid = small;
+			small = swap;
+		}
+		if (Double.compare(large, mid) < 0) {
+			swap = large;
+			large = mid;
+			mid = swap;
+		}
+		this.sortedDims = new double[] {large, mid, small};
+
+		this.lengthScaler = new MpgScalingOrientation(new Double[] {large}, new Double[] {mid, small});
+		this.areaScaler = new MpgScalingOrientation(new Double[] {large, mid}, new Double[] {small});
 	}
 	
+	/**
+	 * @param numProductDimenions 1 for products defined per length, 2 for
+	 *                            products defined per area
+	 * @return the unit and scale dimensions of the geometry. The orientation can
+	 *         not be changed and is shared by all callers.
+	 */
 	public MpgScalingOrientation getScalerOrientation(int numProductDimenions) {
-		MpgScalingOrientation scaler = new MpgScalingOrientation();
-		if (numProductDimenions == 1) {
-			scaler.setUnitDims(new Double[] {sortedDims[0]});
-			scaler.setScaleDims(new Double[] {sortedDims[1], sortedDims[2]});
-		} else {
-			scaler.setUnitDims(new Double[] {sortedDims[0], sortedDims[1]});
-			scaler.setScaleDims(new Double[] {sortedDims[2]});
+		return numProductDimenions == 1 ? lengthScaler : areaScaler;
+	}
+
+	/**
+	 * Prevent any further changes, for geometries that are shared by multiple
+	 * objects.
+	 */
+	void setImmutable() {
+		this.immutable = true;
+	}
+
+	@JsonIgnore
+	public boolean isImmutable() {
+		return immutable;
+	}
+
+	/**
+	 * @param owner object that is notified when the geometry changes
+	 */
+	void setOwner(MpgObjectImpl owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Check that the geometry can be changed and notify the owner of the change.
+	 * The owner only marks its validation as outdated, so it can be notified
+	 * before the values are set.
+	 */
+	private void checkMutable() {
+		if (immutable) {
+			throw new UnsupportedOperationException("shared geometry can not be changed");
+		}
+		if (owner != null) {
+			owner.changed();
 		}
-		return scaler;
 	}
 
 	/*
@@ -86,13 +177,13 @@ public class MpgGeometry {
 	 * the input geometry.
 	 */
 	public void setDimensionsByVolumeRatio(MpgGeometry geom) {
-		if (geom.getDimensions().length != 3) {
+		if (!geom.hasDimensions()) {
 			this.setDimensions(Double.NaN, Double.NaN, Double.NaN);
 			return;
 		}
-		Double lengthRatio = Math.pow(this.getVolume() / geom.getVolume(), 1.0/3.0);
-		this.setDimensions(geom.getDimensions()[0] * lengthRatio,
-				geom.getDimensions()[1] * lengthRatio,
-				geom.getDimensions()[2] * lengthRatio);
+		double lengthRatio = Math.pow(this.getVolume() / geom.getVolume(), 1.0/3.0);
+		this.setDimensions(geom.getDimension(0) * lengthRatio,
+				geom.getDimension(1) * lengthRatio,
+				geom.getDimension(2) * lengthRatio);
 	}
 }
@@ -0,0 +1,56 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.bimserver.models.geometry.Bounds;
+import org.bimserver.models.geometry.GeometryData;
+import org.bimserver.models.geometry.GeometryInfo;
+
+/**
+ * Key to recognise GeometryInfo objects of instances of the same mapped
+ * representation. Two keys are equal when they refer to the same GeometryData
+ * object and have equal untransformed bounds, volume and additional data.
+ */
+final class MpgGeometryKey {
+
+	private final GeometryData data;
+	private final double volume;
+	private final double[] bounds;
+	private final String additionalData;
+	private final int hash;
+
+	MpgGeometryKey(GeometryInfo geometry) {
+		this.data = geometry.getData();
+		this.volume = geometry.getVolume();
+		this.bounds = toArray(geometry.getBoundsUntransformed());
+		this.additionalData = geometry.getAdditionalData();
+		this.hash = 31 * System.identityHashCode(data) + Double.hashCode(volume);
+	}
+
+	private static double[] toArray(Bounds bounds) {
+		if (bounds == null || bounds.getMin() == null || bounds.getMax() == null) {
+			return new double[0];
+		}
+		return new double[] { bounds.getMin().getX(), bounds.getMin().getY(), bounds.getMin().getZ(),
+				bounds.getMax().getX(), bounds.getMax().getY(), bounds.getMax().getZ() };
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MpgGeometryKey)) {
+			return false;
+		}
+		MpgGeometryKey other = (MpgGeometryKey) obj;
+		return data == other.data && Double.compare(volume, other.volume) == 0
+				&& Arrays.equals(bounds, other.bounds) && Objects.equals(additionalData, other.additionalData);
+	}
+}
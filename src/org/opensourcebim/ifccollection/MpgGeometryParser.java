@@ -1,23 +1,25 @@
 package org.opensourcebim.ifccollection;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.models.geometry.Bounds;
 import org.bimserver.models.geometry.GeometryInfo;
 import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.models.ifc2x3tc1.IfcRelDecomposes;
+import org.bimserver.models.ifc2x3tc1.IfcSlab;
+import org.bimserver.models.ifc2x3tc1.IfcSlabTypeEnum;
 import org.bimserver.models.ifc2x3tc1.IfcSpace;
 import org.bimserver.utils.AreaUnit;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.utils.LengthUnit;
 import org.bimserver.utils.VolumeUnit;
 import org.eclipse.emf.common.util.EList;
-import org.opensourcebim.services.FloorAreaService;
-
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Utility class to determine dimensions from IfcProduct classes
@@ -30,18 +32,25 @@ public class MpgGeometryParser {
 	private static AreaUnit areaUnit = AreaUnit.SQUARED_METER;
 	private static VolumeUnit volumeUnit = VolumeUnit.CUBIC_METER;
 	private static LengthUnit lengthUnit = LengthUnit.METER;
-	private AreaUnit modelAreaUnit;
-	private VolumeUnit modelVolumeUnit;
-	private LengthUnit modelLengthUnit;
+	// factors to convert model units to the reporting units
+	private final double volumeFactor;
+	private final double areaFactor;
+	private final double lengthFactor;
+	// parsed geometries of instances of the same mapped representation
+	private final Map<MpgGeometryKey, MpgGeometry> instancedGeometries = new ConcurrentHashMap<>();
+	private final AtomicInteger geometryCount = new AtomicInteger();
+	private final AtomicInteger parsedGeometryCount = new AtomicInteger();
 
-	private ObjectMapper mapper = new ObjectMapper();
-	
 	public MpgGeometryParser(IfcModelInterface ifcModel) {
 		// get project wide parameters
-		modelVolumeUnit = IfcUtils.getVolumeUnit(ifcModel);
-		modelAreaUnit = IfcUtils.getAreaUnit(ifcModel);
-		modelLengthUnit = IfcUtils.getLengthUnit(ifcModel);
-		
+		VolumeUnit modelVolumeUnit = IfcUtils.getVolumeUnit(ifcModel);
+		AreaUnit modelAreaUnit = IfcUtils.getAreaUnit(ifcModel);
+		LengthUnit modelLengthUnit = IfcUtils.getLengthUnit(ifcModel);
+
+		// all unit conversions are linear, so determine the conversion factors once per model
+		volumeFactor = modelVolumeUnit == null ? 1.0 : volumeUnit.convert(1.0, modelVolumeUnit);
+		areaFactor = modelAreaUnit == null ? 1.0 : areaUnit.convert(1.0, modelAreaUnit);
+		lengthFactor = modelLengthUnit == null ? 1.0 : lengthUnit.convert(1.0, modelLengthUnit);
 	}
 	
 	// ---------- Standard getters and setters -------------
@@ -58,52 +67,112 @@ public class MpgGeometryParser {
 	}
 	
 	/**
-	 * retrieve the geometric properties of an ifcProduct
+	 * @return number of products with a geometry that have been evaluated
+	 */
+	public int getGeometryCount() {
+		return geometryCount.get();
+	}
+
+	/**
+	 * @return number of geometries that had to be parsed for the evaluated products
+	 */
+	public int getParsedGeometryCount() {
+		return parsedGeometryCount.get();
+	}
+
+	/**
+	 * @return the average number of products per parsed geometry. 1 when no
+	 *         geometry is shared between products
+	 */
+	public double getInstancingRatio() {
+		int parsed = getParsedGeometryCount();
+		return parsed == 0 ? 1.0 : (double) getGeometryCount() / parsed;
+	}
+
+	/**
+	 * retrieve the geometric properties of an ifcProduct. Products that are
+	 * instances of the same representation share one immutable geometry object.
 	 * 
 	 * @param prod the product to evaluate
 	 * @return a MpgGeometry object with relevant data stored
 	 */
 	public MpgGeometry getGeometryFromProduct(IfcProduct prod) {
 		GeometryInfo geometry = prod.getGeometry();
+		if (geometry == null) {
+			return new MpgGeometry();
+		}
 
+		geometryCount.incrementAndGet();
+		if (geometry.getData() == null) {
+			return parseGeometry(geometry);
+		}
+
+		MpgGeometryKey key = new MpgGeometryKey(geometry);
+		MpgGeometry geom = instancedGeometries.get(key);
+		if (geom == null) {
+			geom = parseGeometry(geometry);
+			// incomplete geometries can still be completed later on and are not shared
+			if (geom.getIsComplete()) {
+				geom.setImmutable();
+				MpgGeometry existing = instancedGeometries.putIfAbsent(key, geom);
+				geom = existing != null ? existing : geom;
+			}
+		}
+		return geom;
+	}
+
+	private MpgGeometry parseGeometry(GeometryInfo geometry) {
+		parsedGeometryCount.incrementAndGet();
 		MpgGeometry geom = new MpgGeometry();
 
-		if (geometry != null) {
-
-			geom.setVolume(this.convertVolume(geometry.getVolume()));
-
-			try {
-				JsonNode geomData = mapper.readTree(geometry.getAdditionalData());
-				if (geomData != null && geomData.size() > 0) {
-					geom.setIsComplete(true);
-					Bounds bounds = geometry.getBoundsUntransformed();
-					double x_dir = this.convertLength(bounds.getMax().getX() - bounds.getMin().getX());
-					double y_dir = this.convertLength(bounds.getMax().getY() - bounds.getMin().getY());
-					double z_dir = this.convertLength(bounds.getMax().getZ() - bounds.getMin().getZ());
-					
-					//double largest_face_area = geomData.get("LARGEST_FACE_AREA").asDouble();
-										
-					geom.setFloorArea(this.convertArea(geomData.get("SURFACE_AREA_ALONG_Z").asDouble()));
-					geom.setDimensions(x_dir, y_dir, z_dir);
-				}
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+		double volume = geometry.getVolume();
+		if (Double.isNaN(volume)) {
+			// no volume reported by the geometry server, try to determine it from the triangles
+			MpgTriangleGeometry triangles = MpgTriangleGeometry.fromGeometry(geometry);
+			if (triangles != null && triangles.getTriangleCount() > 0) {
+				return getGeometryFromTriangles(triangles);
 			}
 		}
+		geom.setVolume(this.convertVolume(volume));
+
+		MpgAdditionalData geomData = MpgAdditionalData.parse(geometry.getAdditionalData());
+		if (!geomData.isEmpty()) {
+			geom.setIsComplete(true);
+			Bounds bounds = geometry.getBoundsUntransformed();
+			double x_dir = this.convertLength(bounds.getMax().getX() - bounds.getMin().getX());
+			double y_dir = this.convertLength(bounds.getMax().getY() - bounds.getMin().getY());
+			double z_dir = this.convertLength(bounds.getMax().getZ() - bounds.getMin().getZ());
+
+			geom.setFloorArea(this.convertArea(geomData.getSurfaceAreaAlongZ()));
+			geom.setDimensions(x_dir, y_dir, z_dir);
+		}
+		return geom;
+	}
+
+	/**
+	 * @param triangles the triangulated geometry in model length units
+	 * @return a complete geometry with the dimensions of the oriented bounding box
+	 */
+	private MpgGeometry getGeometryFromTriangles(MpgTriangleGeometry triangles) {
+		MpgGeometry geom = new MpgGeometry();
+		geom.setVolume(triangles.getVolume() * lengthFactor * lengthFactor * lengthFactor);
+		geom.setFloorArea(triangles.getSurfaceAreaAlongZ() * lengthFactor * lengthFactor);
+		double[] dims = triangles.getDimensions();
+		geom.setDimensions(this.convertLength(dims[0]), this.convertLength(dims[1]), this.convertLength(dims[2]));
+		geom.setIsComplete(true);
 		return geom;
 	}
 
-	private Double convertVolume(Double value) {
-		return MpgGeometryParser.getVolumeUnit().convert(value, modelVolumeUnit);
+	private double convertVolume(double value) {
+		return value * volumeFactor;
 	}
 
-	private Double convertArea(Double value) {
-		return MpgGeometryParser.getAreaUnit().convert(value, modelAreaUnit);
+	private double convertArea(double value) {
+		return value * areaFactor;
 	}
 
-	private Double convertLength(Double value) {
-		return MpgGeometryParser.lengthUnit.convert(value, modelLengthUnit);
+	private double convertLength(double value) {
+		return value * lengthFactor;
 	}
 	
 	
@@ -116,6 +185,64 @@ public class MpgGeometryParser {
 	 * @param objectStore container to store the floor area data.
 	 */
 	public void tryParseFloorArea(IfcModelInterface ifcModel, MpgObjectStoreImpl objectStore, byte[] data) {
+		tryParseFloorArea(ifcModel, objectStore, data, this::getGeometryFromProduct);
+	}
+
+	/**
+	 * Try parse the floor area with a custom method to determine the geometry of
+	 * the IfcSpaces, for instance when the model has no generated geometry.
+	 * 
+	 * @param ifcModel        the ifc data to parse
+	 * @param objectStore     container to store the floor area data.
+	 * @param productGeometry method to determine the volume and floor area of a
+	 *                        space or slab
+	 */
+	public void tryParseFloorArea(IfcModelInterface ifcModel, MpgObjectStoreImpl objectStore, byte[] data,
+			Function<IfcProduct, MpgGeometry> productGeometry) {
+		tryParseFloorArea(ifcModel, objectStore, data, productGeometry, new MpgCollectorSettings());
+	}
+
+	/**
+	 * Try parse the floor area with the floor area strategy of the settings
+	 * 
+	 * @param ifcModel        the ifc data to parse
+	 * @param objectStore     container to store the floor area data.
+	 * @param productGeometry method to determine the volume and floor area of a
+	 *                        space or slab
+	 * @param settings        settings with the floor area strategy
+	 */
+	public void tryParseFloorArea(IfcModelInterface ifcModel, MpgObjectStoreImpl objectStore, byte[] data,
+			Function<IfcProduct, MpgGeometry> productGeometry, MpgCollectorSettings settings) {
+		tryParseFloorAreaAsync(ifcModel, objectStore, data, productGeometry, settings).join();
+	}
+
+	/**
+	 * Try parse the floor area with the floor area strategy of the settings. A
+	 * request to the voxel service runs in the background, all other strategies
+	 * are finished when the method returns. A geometry free collection does not
+	 * send the model to the voxel service, but sums the areas of the slabs.
+	 * 
+	 * @param ifcModel        the ifc data to parse
+	 * @param objectStore     container to store the floor area data.
+	 * @param productGeometry method to determine the volume and floor area of a
+	 *                        space or slab
+	 * @param settings        settings with the floor area strategy
+	 * @return a future that completes when the floor area has been added to the
+	 *         store
+	 */
+	public CompletableFuture<Void> tryParseFloorAreaAsync(IfcModelInterface ifcModel,
+			MpgObjectStoreImpl objectStore, byte[] data, Function<IfcProduct, MpgGeometry> productGeometry,
+			MpgCollectorSettings settings) {
+
+		if (settings.getFloorAreaStrategy() == MpgFloorAreaStrategy.storeyRasterization) {
+			MpgFloorAreaRasterizer rasterizer = new MpgFloorAreaRasterizer(settings.getFloorAreaCellSize(),
+					lengthFactor);
+			objectStore.getSpaces().addAll(rasterizer.getStoreyFloorAreas(ifcModel));
+			if (objectStore.getSpaces().isEmpty()) {
+				objectStore.getSpaces().add(new MpgSpaceImpl("no floor area found", 0.0, -1));
+			}
+			return CompletableFuture.completedFuture(null);
+		}
 
 		// first loop through IfcSpaces
 		List<IfcSpace> allSpaces = ifcModel.getAllWithSubTypes(IfcSpace.class);
@@ -137,7 +264,7 @@ public class MpgGeometryParser {
 							.filter(relation -> relation.getRelatingObject() instanceof IfcSpace).count() > 0;
 				}
 
-				MpgGeometry geom = getGeometryFromProduct(space);
+				MpgGeometry geom = productGeometry.apply(space);
 
 				// ToDo: also include geometric check?
 				if (!isIncludedSemantically) {
@@ -145,24 +272,53 @@ public class MpgGeometryParser {
 							.add(new MpgSpaceImpl(space.getGlobalId(), geom.getVolume(), geom.getFloorArea()));
 				}
 			}
+		} else if (settings.isGeometryFreeCollection()) {
+			addFloorAreaFromSlabs(ifcModel, objectStore, productGeometry);
 		} else if (data != null){
-			JsonNode res;
-			try {
-				res = FloorAreaService.getJsonFromBinaryData(data);
-				objectStore.getSpaces()
-				.add(new MpgSpaceImpl("area from floor area voxel service", 0.0, res.get("floor_area").asDouble()));
-		
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			return settings.getFloorAreaClient().getJsonFromBinaryDataAsync(data).handle((res, e) -> {
+				if (e != null) {
+					objectStore.addWarning("could not get floor area from voxel service: " + e.getMessage());
+				} else if (res == null || !res.has("floor_area")) {
+					objectStore.addWarning("voxel service did not return a floor area");
+				} else {
+					objectStore.getSpaces()
+					.add(new MpgSpaceImpl("area from floor area voxel service", 0.0, res.get("floor_area").asDouble()));
+				}
+				return null;
+			});
 		} else {
 			objectStore.getSpaces()
 			.add(new MpgSpaceImpl("no floor area found", 0.0, -1));
 		}
-		
-		// if nothing else helped do something else
-		
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Estimate the floor area of a model without spaces as the sum of the areas of
+	 * the slabs that are not a roof, taken from their quantity sets.
+	 * 
+	 * @param ifcModel      the ifc data to parse
+	 * @param objectStore   container to store the floor area data.
+	 * @param slabGeometry  method to determine the floor area of a slab
+	 */
+	private void addFloorAreaFromSlabs(IfcModelInterface ifcModel, MpgObjectStoreImpl objectStore,
+			Function<IfcProduct, MpgGeometry> slabGeometry) {
+		double floorArea = 0.0;
+		for (IfcSlab slab : ifcModel.getAllWithSubTypes(IfcSlab.class)) {
+			if (slab.getPredefinedType() == IfcSlabTypeEnum.ROOF) {
+				continue;
+			}
+			Double area = slabGeometry.apply(slab).getFloorArea();
+			if (area != null && !area.isNaN()) {
+				floorArea += area;
+			}
+		}
 
+		if (floorArea > 0) {
+			objectStore.getSpaces().add(new MpgSpaceImpl("area from slab quantities", 0.0, floorArea));
+		} else {
+			objectStore.getSpaces().add(new MpgSpaceImpl("no floor area found", 0.0, -1));
+		}
 	}
 
 }
@@ -0,0 +1,123 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Adjacency index of the decomposition relations between objects: the children
+ * per parent guid and the parent per child guid. All traversals are iterative
+ * and visit every guid at most once, such that cyclic relations in a model do
+ * not lead to endless recursion.
+ */
+class MpgHierarchyIndex {
+
+	private static final MpgObject[] NO_CHILDREN = new MpgObject[0];
+
+	private final Map<String, MpgObject[]> childrenByParent;
+	private final Map<String, String> parentByChild;
+
+	/**
+	 * An index without any relations
+	 */
+	MpgHierarchyIndex() {
+		childrenByParent = Collections.emptyMap();
+		parentByChild = Collections.emptyMap();
+	}
+
+	/**
+	 * @param objects objects with their parent guid set
+	 */
+	MpgHierarchyIndex(List<MpgObject> objects) {
+		Map<String, List<MpgObject>> children = new LinkedHashMap<String, List<MpgObject>>();
+		parentByChild = new HashMap<String, String>();
+		for (MpgObject o : objects) {
+			if (!StringUtils.isBlank(o.getParentId())) {
+				children.computeIfAbsent(o.getParentId(), p -> new ArrayList<MpgObject>()).add(o);
+				if (o.getGlobalId() != null) {
+					parentByChild.putIfAbsent(o.getGlobalId(), o.getParentId());
+				}
+			}
+		}
+		childrenByParent = new HashMap<String, MpgObject[]>();
+		children.forEach((parent, list) -> childrenByParent.put(parent, list.toArray(NO_CHILDREN)));
+	}
+
+	/**
+	 * @param guid guid of the parent object
+	 * @return the direct children of the object, not to be modified
+	 */
+	MpgObject[] getChildren(String guid) {
+		MpgObject[] children = guid == null ? null : childrenByParent.get(guid);
+		return children == null ? NO_CHILDREN : children;
+	}
+
+	/**
+	 * @return the guids of all objects with children
+	 */
+	Set<String> getParents() {
+		return Collections.unmodifiableSet(childrenByParent.keySet());
+	}
+
+	boolean hasChildren(String guid) {
+		return getChildren(guid).length > 0;
+	}
+
+	/**
+	 * @param guid guid of the child object
+	 * @return guid of the parent or null when the object has no parent
+	 */
+	String getParentId(String guid) {
+		return guid == null ? null : parentByChild.get(guid);
+	}
+
+	/**
+	 * @param guid guid to start from
+	 * @return the guids of the parent, grandparent etc. of the object, nearest
+	 *         first
+	 */
+	List<String> getAncestors(String guid) {
+		List<String> ancestors = new ArrayList<String>();
+		Set<String> visited = new HashSet<String>();
+		visited.add(guid);
+		String parent = getParentId(guid);
+		while (parent != null && visited.add(parent)) {
+			ancestors.add(parent);
+			parent = getParentId(parent);
+		}
+		return ancestors;
+	}
+
+	/**
+	 * @param guid guid to start from
+	 * @return all direct and indirect children of the object in breadth first
+	 *         order
+	 */
+	List<MpgObject> getDescendants(String guid) {
+		List<MpgObject> descendants = new ArrayList<MpgObject>();
+		Set<String> visited = new HashSet<String>();
+		visited.add(guid);
+		Deque<String> queue = new ArrayDeque<String>();
+		queue.add(guid);
+		while (!queue.isEmpty()) {
+			for (MpgObject child : getChildren(queue.poll())) {
+				if (child.getGlobalId() == null || visited.add(child.getGlobalId())) {
+					descendants.add(child);
+					if (child.getGlobalId() != null) {
+						queue.add(child.getGlobalId());
+					}
+				}
+			}
+		}
+		return descendants;
+	}
+}
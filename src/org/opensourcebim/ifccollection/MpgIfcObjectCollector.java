@@ -1,26 +1,26 @@
 package org.opensourcebim.ifccollection;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.MutableTriple;
-import org.apache.commons.lang3.tuple.Triple;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.bimserver.bimbots.BimBotsInput;
 import org.bimserver.emf.IfcModelInterface;
-import org.bimserver.models.ifc2x3tc1.IfcAnnotation;
 import org.bimserver.models.ifc2x3tc1.IfcBoolean;
 import org.bimserver.models.ifc2x3tc1.IfcBuilding;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.models.ifc2x3tc1.IfcClassification;
 import org.bimserver.models.ifc2x3tc1.IfcClassificationNotationSelect;
 import org.bimserver.models.ifc2x3tc1.IfcClassificationReference;
+import org.bimserver.models.ifc2x3tc1.IfcElement;
 import org.bimserver.models.ifc2x3tc1.IfcElementQuantity;
-import org.bimserver.models.ifc2x3tc1.IfcFurnishingElement;
-import org.bimserver.models.ifc2x3tc1.IfcGrid;
 import org.bimserver.models.ifc2x3tc1.IfcIdentifier;
 import org.bimserver.models.ifc2x3tc1.IfcLabel;
 import org.bimserver.models.ifc2x3tc1.IfcMaterial;
@@ -30,7 +30,6 @@ import org.bimserver.models.ifc2x3tc1.IfcMaterialLayerSetUsage;
 import org.bimserver.models.ifc2x3tc1.IfcMaterialList;
 import org.bimserver.models.ifc2x3tc1.IfcMaterialSelect;
 import org.bimserver.models.ifc2x3tc1.IfcObjectDefinition;
-import org.bimserver.models.ifc2x3tc1.IfcOpeningElement;
 import org.bimserver.models.ifc2x3tc1.IfcPhysicalQuantity;
 import org.bimserver.models.ifc2x3tc1.IfcPhysicalSimpleQuantity;
 import org.bimserver.models.ifc2x3tc1.IfcProduct;
@@ -44,26 +43,18 @@ import org.bimserver.models.ifc2x3tc1.IfcQuantityVolume;
 import org.bimserver.models.ifc2x3tc1.IfcRelAssociates;
 import org.bimserver.models.ifc2x3tc1.IfcRelAssociatesClassification;
 import org.bimserver.models.ifc2x3tc1.IfcRelAssociatesMaterial;
+import org.bimserver.models.ifc2x3tc1.IfcRelContainedInSpatialStructure;
+import org.bimserver.models.ifc2x3tc1.IfcRelDecomposes;
 import org.bimserver.models.ifc2x3tc1.IfcRelDefines;
 import org.bimserver.models.ifc2x3tc1.IfcRelDefinesByProperties;
 import org.bimserver.models.ifc2x3tc1.IfcRelDefinesByType;
-import org.bimserver.models.ifc2x3tc1.IfcSite;
-import org.bimserver.models.ifc2x3tc1.IfcSpace;
+import org.bimserver.models.ifc2x3tc1.IfcSpatialStructureElement;
 import org.bimserver.models.ifc2x3tc1.IfcTypeObject;
 import org.bimserver.models.ifc2x3tc1.IfcTypeProduct;
 import org.bimserver.models.ifc2x3tc1.IfcValue;
-import org.bimserver.models.ifc2x3tc1.IfcVirtualElement;
-import org.bimserver.models.ifc2x3tc1.impl.IfcAnnotationImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcBuildingImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcBuildingStoreyImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcFurnishingElementImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcGridImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcOpeningElementImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcSiteImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcSpaceImpl;
-import org.bimserver.models.ifc2x3tc1.impl.IfcVirtualElementImpl;
 
 import org.eclipse.emf.common.util.EList;
+import org.opensourcebim.ifccollection.MpgProductCollectionTask.ProductBatch;
 
 /**
  * Class to retrieve the material properties from the IfcModel
@@ -72,27 +63,22 @@ import org.eclipse.emf.common.util.EList;
  */
 public class MpgIfcObjectCollector {
 
-	private MpgObjectStoreImpl objectStore;
-	private MpgGeometryParser geometryParser;
-	// products that should not be included in the material calculations.
-	private List<Class<? extends IfcProduct>> ignoredProducts;
+	private final MpgCollectorSettings settings;
 
 	public MpgIfcObjectCollector() {
-		objectStore = new MpgObjectStoreImpl();
-		objectStore.setUnits(MpgGeometryParser.getVolumeUnit(),
-				MpgGeometryParser.getAreaUnit(),
-				MpgGeometryParser.GetLengthUnit());	
-				
-		// List products that are not going to be analyzed for material mappings
-		ignoredProducts = Arrays.asList(IfcSite.class, IfcSiteImpl.class, IfcBuilding.class, IfcBuildingImpl.class,
-				IfcBuildingStorey.class, IfcBuildingStoreyImpl.class, IfcFurnishingElement.class,
-				IfcFurnishingElementImpl.class, IfcOpeningElement.class, IfcOpeningElementImpl.class,
-				IfcVirtualElement.class, IfcVirtualElementImpl.class, IfcSpace.class, IfcSpaceImpl.class,
-				IfcAnnotation.class, IfcAnnotationImpl.class, IfcGrid.class, IfcGridImpl.class);
+		this(new MpgCollectorSettings());
 	}
 
-	public MpgObjectStore results() {
-		return this.objectStore;
+	public MpgIfcObjectCollector(MpgCollectorSettings settings) {
+		this.settings = settings;
+	}
+
+	/**
+	 * @return the settings of the collector. Changes apply to collections that
+	 *         are started afterwards.
+	 */
+	public MpgCollectorSettings getSettings() {
+		return this.settings;
 	}
 
 	public MpgObjectStore collectIfcModelObjects(IfcModelInterface model, String pId) {
@@ -105,119 +91,359 @@ public class MpgIfcObjectCollector {
 	
 	/**
 	 * method to read in a IfcModel and retrieve material properties for MPG
-	 * calculations using different types of data retrieval availabel for the IFC standard
+	 * calculations using different types of data retrieval availabel for the IFC standard.
+	 * Can be called for several models at the same time, every call returns its own store.
+	 * The collector does not keep any state of the collection once it is finished, the
+	 * statistics of the collection are part of the returned store.
 	 * 
 	 * @param ifcModel for now only a ifc2x3tc1 IfcModel object
 	 */
 	public MpgObjectStore collectIfcModelObjects(IfcModelInterface ifcModel, String pId, byte[] data) {		
-		objectStore.reset();
-		geometryParser = new MpgGeometryParser(ifcModel);
-		objectStore.setProjectId(pId);
+		MpgCollectorSettings settings = new MpgCollectorSettings(this.settings);
+		String queryWarning = settings.isQueryModelLoading() ? loadCollectedModelParts(ifcModel, settings) : null;
+
+		MpgCollectionContext context = new MpgCollectionContext(ifcModel, settings, pId);
+		MpgObjectStoreImpl objectStore = context.getObjectStore();
+		if (queryWarning != null) {
+			objectStore.addWarning(queryWarning);
+		}
+
+		MpgGeometryParser geometryParser = context.getGeometryParser();
+		if (settings.isRelationCentricCollection()) {
+			context.setRelationIndex(createRelationIndex(context, ifcModel));
+		}
+
+		// a request to the floor area service runs while the products are collected
+		CompletableFuture<Void> floorArea;
+		if (settings.isGeometryFreeCollection()) {
+			floorArea = geometryParser.tryParseFloorAreaAsync(ifcModel, objectStore, data,
+					product -> getGeometryFromQuantities(context, product), settings);
+		} else {
+			floorArea = geometryParser.tryParseFloorAreaAsync(ifcModel, objectStore, data,
+					geometryParser::getGeometryFromProduct, settings);
+		}
+
+		try {
+			// storeys are not collected as objects, but are used to partition the objects
+			for (IfcBuildingStorey storey : ifcModel.getAllWithSubTypes(IfcBuildingStorey.class)) {
+				if (!StringUtils.isBlank(storey.getGlobalId())) {
+					objectStore.addStorey(new MpgStorey(storey.getGlobalId(), storey.getName(), storey.getElevation(),
+							getBuildingId(storey)));
+				}
+			}
+
+			// loop through IfcProducts that constitute the physical building.
+			List<IfcProduct> products = ifcModel.getAllWithSubTypes(IfcProduct.class);
+			ProductBatch batch = collectProducts(context, products);
+
+			// all properties are set. add the objects to the store.
+			// create the mpg element and link it to the object
+			batch.getPropertyTables().forEach(objectStore.getPropertyTable()::append);
+			for (ImmutablePair<String, MpgObjectImpl> collected : batch.getObjects()) {
+				MpgElement newMpgElement = objectStore.addElement(collected.getLeft());
+				objectStore.addObject(collected.getRight());
+				newMpgElement.setMpgObject(collected.getRight());
+			}
+
+			// set all parent child relations for elements
+			objectStore.reloadParentChildRelationShips(batch.getChildToParentMap());
+			objectStore.reloadSpatialContainment(batch.getObjectToStoreyMap());
+
+			objectStore.resolveParentNLsfbCodes();
+
+			floorArea.join();
+		} finally {
+			// do not add a floor area to a store of which the collection failed
+			floorArea.cancel(true);
+		}
+
+		objectStore.setCollectionStatistics(MpgCollectionStatistics.of(context.getTypeCache(),
+				context.getGeometryParser(), objectStore.getStringDictionary()));
+		return objectStore;
+	}
+
+	/**
+	 * Load the parts of the model that are collected in one query. Any other
+	 * objects that are requested during collection are lazy loaded, also when
+	 * the query fails.
+	 * 
+	 * @param ifcModel a model that is not preloaded completely
+	 * @param settings settings of the collection
+	 * @return a warning for the store when the query failed, otherwise null
+	 */
+	private String loadCollectedModelParts(IfcModelInterface ifcModel, MpgCollectorSettings settings) {
+		boolean includeGeometry = !settings.isGeometryFreeCollection();
+		boolean includeTriangles = includeGeometry
+				&& settings.getFloorAreaStrategy() == MpgFloorAreaStrategy.storeyRasterization;
+		try {
+			ifcModel.query(MpgModelQuery.create(includeGeometry, includeTriangles), false);
+			return null;
+		} catch (Exception e) {
+			return "could not query the collected model parts, falling back on lazy loading: " + e.getMessage();
+		}
+	}
+
+	/**
+	 * Collect the products either on the calling thread or split up in fork join
+	 * tasks, depending on the collector settings and the number of products
+	 * 
+	 * @param context  context of the collection
+	 * @param products products to collect
+	 * @return a batch with the collected objects in product order
+	 */
+	private ProductBatch collectProducts(MpgCollectionContext context, List<IfcProduct> products) {
+		MpgCollectorSettings settings = context.getSettings();
+		if (!settings.collectInParallel(products.size())) {
+			return new MpgProductCollectionTask(this, context, products, 0, products.size(), products.size())
+					.compute();
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(settings.getParallelism());
+		try {
+			return pool.invoke(new MpgProductCollectionTask(this, context, products, 0, products.size(),
+					settings.getParallelThreshold()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Collect the data of a single IfcProduct and add it to a (partial) batch of
+	 * collected objects. Can be called from multiple threads at once.
+	 * 
+	 * @param product the product to collect
+	 * @param context context of the collection the product is part of
+	 * @param batch   the batch to add the object and its relations to
+	 */
+	void collectProduct(IfcProduct product, MpgCollectionContext context, ProductBatch batch) {
 
-		this.geometryParser.tryParseFloorArea(ifcModel, this.objectStore, data);
+		// ignore any elements that are irrelevant for the mpg calculations
+		MpgProductType productType = context.getProductTypes().get(product);
+		if (productType.isIgnored()) {
+			return;
+		}
 
-		Map<String, String> childToParentMap = new HashMap<String, String>();
+		if (StringUtils.isBlank(product.getGlobalId())) {
+			return;
+		}
+
+		// collect child to parent relations
+		Map<String, String> childToParentMap = batch.getChildToParentMap();
+		product.getDecomposes().stream()
+			.map(rel -> rel.getRelatingObject())
+			.filter(o -> o instanceof IfcProduct).map(o -> (IfcProduct) o)
+			.filter(o -> !product.getGlobalId().equals(o.getGlobalId()))
+			.forEach(o -> childToParentMap.putIfAbsent(product.getGlobalId(), o.getGlobalId()));
+
+		// collect the storey the product is contained in
+		String storeyId = getContainingStoreyId(context, product);
+		if (storeyId != null) {
+			batch.getObjectToStoreyMap().putIfAbsent(product.getGlobalId(), storeyId);
+		}
+		
+		MpgObjectImpl mpgObject = new MpgObjectImpl(product.getOid(), 
+				product.getGlobalId(), 
+				product.getName(),
+				productType.getTypeName(), "");
+		mpgObject.setPropertyTable(batch.getPropertyTable());
+
+		MpgRelationIndex relationIndex = context.getRelationIndex();
+		if (relationIndex != null) {
+			relationIndex.addPropertiesTo(product.getOid(), mpgObject);
+		} else {
+			this.getPropertySetsFromIfcProduct(context, product, mpgObject);
+		}
+		if (context.getSettings().getPropertyWhitelist() != null) {
+			mpgObject.setPropertyResolver(name -> getPropertyFromIfcProduct(product, name));
+		}
+		MpgGeometry geom = productType.parseGeometry()
+				? context.getGeometryParser().getGeometryFromProduct(product)
+				: new MpgGeometry();
+		if (geom.getVolume().isNaN()) {
+			// if the geomServer does not return a volume we have to try it through properties.
+			mpgObject.addTag(MpgInfoTagType.geometrySourceType, "Geometry from property set");
+			mpgObject.setGeometry(getGeometryFromPropertySet(mpgObject));
+		} else {
+			mpgObject.addTag(MpgInfoTagType.geometrySourceType, "Geometry from ifcopenShell");
+			mpgObject.setGeometry(geom);
+		}
 
-		// loop through IfcProducts that constitute the physical building.
-		for (IfcProduct product : ifcModel.getAllWithSubTypes(IfcProduct.class)) {
+		// set Pset materials
+//		if (mpgObject.getProperties().containsKey("material")) {
+//			String mat = (String) (mpgObject.getProperties().get("material"));
+//			mpgObject.addMaterialSource(mat, null, "P_Set");
+//		}
 
-			// ignore any elements that are irrelevant for the mpg calculations
-			if (!this.ignoredProducts.contains(product.getClass())) {
+		// retrieve information and add found values to the various data objects
+		if (relationIndex != null) {
+			if (productType.parseMaterials()) {
+				relationIndex.addMaterialsTo(product.getOid(), mpgObject);
+			}
+			String nlsfbCode = relationIndex.getNLsfbCode(product.getOid());
+			if (nlsfbCode != null) {
+				mpgObject.setNLsfbCode(nlsfbCode);
+			}
+		} else {
+			if (productType.parseMaterials()) {
+				this.getMaterialsFromIfcProduct(context, product, mpgObject);
+			}
+			this.getProductClassications(context, product, mpgObject);
+		}
+		
+		batch.addObject(product.getName() + "-" + product.getGlobalId(), mpgObject);
+	}
 
-				if (StringUtils.isBlank(product.getGlobalId())) {
-					continue;
+	/**
+	 * @param context context of the collection
+	 * @param product product to find the storey of
+	 * @return the guid of the storey the product is contained in, directly or
+	 *         through a space, or null when it is not contained in a storey
+	 */
+	private String getContainingStoreyId(MpgCollectionContext context, IfcProduct product) {
+		if (!(product instanceof IfcElement)) {
+			return null;
+		}
+		EList<IfcRelContainedInSpatialStructure> containments = ((IfcElement) product).getContainedInStructure();
+		if (containments != null) {
+			for (IfcRelContainedInSpatialStructure rel : containments) {
+				IfcSpatialStructureElement structure = rel.getRelatingStructure();
+				if (structure != null) {
+					String storeyId = context.getStructureStoreys().computeIfAbsent(structure,
+							MpgIfcObjectCollector::findStoreyId);
+					if (!storeyId.isEmpty()) {
+						return storeyId;
+					}
 				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Walk up the spatial decomposition until a storey is found. A space is
+	 * decomposing a storey, a storey can be decomposed into partial storeys.
+	 * 
+	 * @param structure spatial structure element to start from
+	 * @return the guid of the storey or an empty string when there is none
+	 */
+	private static String findStoreyId(IfcSpatialStructureElement structure) {
+		Set<IfcObjectDefinition> visited = new HashSet<>();
+		IfcObjectDefinition current = structure;
+		while (current != null && visited.add(current)) {
+			if (current instanceof IfcBuildingStorey) {
+				String guid = current.getGlobalId();
+				return guid == null ? "" : guid;
+			}
+			current = getRelatingObject(current);
+		}
+		return "";
+	}
+
+	/**
+	 * @param storey the storey to find the building of
+	 * @return guid of the building the storey is (indirectly) part of or null
+	 */
+	private static String getBuildingId(IfcBuildingStorey storey) {
+		Set<IfcObjectDefinition> visited = new HashSet<>();
+		IfcObjectDefinition current = getRelatingObject(storey);
+		while (current != null && visited.add(current)) {
+			if (current instanceof IfcBuilding) {
+				return current.getGlobalId();
+			}
+			current = getRelatingObject(current);
+		}
+		return null;
+	}
 
-				// collect child to parent relations
-				product.getDecomposes().stream()
-					.map(rel -> rel.getRelatingObject())
-					.filter(o -> o instanceof IfcProduct).map(o -> (IfcProduct) o).forEach(o -> {
-						if (!childToParentMap.containsKey(product.getGlobalId())
-								&& o.getGlobalId() != product.getGlobalId()) {
-
-							childToParentMap.put(product.getGlobalId(), o.getGlobalId());
-
-						} else {
-							if (o.getGlobalId() != product.getGlobalId()) {
-								System.out.println(">> " + product.getGlobalId() + ", " + o.getGlobalId());
-							}
-						}
-					});
-				
-				MpgObjectImpl mpgObject = new MpgObjectImpl(product.getOid(), 
-						product.getGlobalId(), 
-						product.getName(),
-						product.getClass().getSimpleName(), "");
-
-				this.getPropertySetsFromIfcProduct(product, mpgObject);
-				MpgGeometry geom = geometryParser.getGeometryFromProduct(product);
-				if (geom.getVolume().isNaN()) {
-					// if the geomServer does not return a volume we have to try it through properties.
-					mpgObject.addTag(MpgInfoTagType.geometrySourceType, "Geometry from property set");
-					mpgObject.setGeometry(this.getGeometryFromPropertySet(product, mpgObject));
-				} else {
-					mpgObject.addTag(MpgInfoTagType.geometrySourceType, "Geometry from ifcopenShell");
-					mpgObject.setGeometry(geom);
+	/**
+	 * @return the object the input object decomposes or null
+	 */
+	private static IfcObjectDefinition getRelatingObject(IfcObjectDefinition object) {
+		EList<IfcRelDecomposes> decomposes = object.getDecomposes();
+		if (decomposes != null) {
+			for (IfcRelDecomposes rel : decomposes) {
+				if (rel.getRelatingObject() != null) {
+					return rel.getRelatingObject();
 				}
+			}
+		}
+		return null;
+	}
 
-				// set Pset materials
-//				if (mpgObject.getProperties().containsKey("material")) {
-//					String mat = (String) (mpgObject.getProperties().get("material"));
-//					mpgObject.addMaterialSource(mat, null, "P_Set");
-//				}
-
-				// retrieve information and add found values to the various data objects
-				this.getMaterialsFromIfcProduct(product, mpgObject);
-				this.getProductClassications(product, mpgObject);
-				
-				// all properties are set. add it to the store.
-				// create the mpg element and link it to the object
-				String newMpgElementId = product.getName() + "-" + product.getGlobalId();
-				MpgElement newMpgElement = this.objectStore.addElement(newMpgElementId);
-				objectStore.getObjects().add(mpgObject);
-				newMpgElement.setMpgObject(mpgObject);
+	/**
+	 * Iterate once over all property, type, material and classification relations
+	 * of the model. Every relating object is resolved once and the result is
+	 * linked to all related objects.
+	 * 
+	 * @param context  context of the collection
+	 * @param ifcModel model to index
+	 * @return index with the resolved relations per object
+	 */
+	private MpgRelationIndex createRelationIndex(MpgCollectionContext context, IfcModelInterface ifcModel) {
+		MpgRelationIndex index = new MpgRelationIndex();
+
+		for (IfcRelDefinesByType rel : ifcModel.getAllWithSubTypes(IfcRelDefinesByType.class)) {
+			IfcTypeObject type = rel.getRelatingType();
+			if (type != null) {
+				List<ImmutablePair<String, Object>> properties = context.getTypeCache().getProperties(type,
+						t -> getPropertySetFromTypeObject(context, t));
+				rel.getRelatedObjects().forEach(o -> {
+					index.addType(o.getOid(), type.getOid(), type instanceof IfcTypeProduct ? "type" : null);
+					index.addTypeProperties(o.getOid(), properties);
+				});
 			}
 		}
 
-		// set all parent child relations for elements
-		objectStore.reloadParentChildRelationShips(childToParentMap);
+		for (IfcRelDefinesByProperties rel : ifcModel.getAllWithSubTypes(IfcRelDefinesByProperties.class)) {
+			List<ImmutablePair<String, Object>> properties = new ArrayList<ImmutablePair<String, Object>>();
+			resolvePropertySetAndAddProperties(rel.getRelatingPropertyDefinition(), collectedProperties(context,
+					(name, value) -> properties.add(new ImmutablePair<String, Object>(name, value))));
+			if (!properties.isEmpty()) {
+				rel.getRelatedObjects().forEach(o -> index.addInstanceProperties(o.getOid(), properties));
+			}
+		}
 
-		objectStore.resolveParentNLsfbCodes();
-		
-		return objectStore;
+		for (IfcRelAssociatesMaterial rel : ifcModel.getAllWithSubTypes(IfcRelAssociatesMaterial.class)) {
+			MpgMaterialAssociations materials = new MpgMaterialAssociations(null);
+			addRelatingMaterial(context, rel.getRelatingMaterial(), materials);
+			rel.getRelatedObjects().forEach(o -> index.addMaterials(o.getOid(), materials));
+		}
+
+		for (IfcRelAssociatesClassification rel : ifcModel
+				.getAllWithSubTypes(IfcRelAssociatesClassification.class)) {
+			String nlsfbCode = getNLsfbCode(context, rel.getRelatingClassification());
+			if (nlsfbCode != null) {
+				rel.getRelatedObjects().forEach(o -> index.setNLsfbCode(o.getOid(), nlsfbCode));
+			}
+		}
+
+		return index;
 	}
 
 	/**
 	 * Alternative method to get geometry parameters based on the property sets. Should be discarded!
 	 * 
-	 * @param product   IfcProduct object
-	 * @param mpgObject mpgObject to add parsed properties to.
+	 * @param mpgObject mpgObject with parsed properties.
 	 * @return mpgGeometry object
 	 */
-	private MpgGeometry getGeometryFromPropertySet(IfcProduct product, MpgObjectImpl mpgObject) {
+	static MpgGeometry getGeometryFromPropertySet(MpgObject mpgObject) {
 		MpgGeometry geom = new MpgGeometry();
 
 		// first try to set the geometry by properties
-		Double vol = null;
-		if (mpgObject.getProperties().containsKey("volume")) {
-			vol = ((double) mpgObject.getProperties().get("volume"));
-		}
-		if (mpgObject.getProperties().containsKey("netvolume") && vol == null) {
-			vol = ((double) mpgObject.getProperties().get("netvolume"));
+		Double vol = (Double) mpgObject.getProperty("volume");
+		if (vol == null) {
+			vol = (Double) mpgObject.getProperty("netvolume");
 		}
 		if (vol != null) {
 			geom.setVolume(vol);
 		}
 
-		Double area = null;
-		if (mpgObject.getProperties().containsKey("grosssidearea")) {
-			area = ((double) mpgObject.getProperties().get("grosssidearea"));
-		}
-		if (mpgObject.getProperties().containsKey("area")) {
-			area = ((double) mpgObject.getProperties().get("area"));
+		Double area = (Double) mpgObject.getProperty("area");
+		if (area == null) {
+			area = (Double) mpgObject.getProperty("grosssidearea");
 		}
-		if (mpgObject.getProperties().containsKey("netarea") && area == null) {
-			area = ((double) mpgObject.getProperties().get("netarea"));
+		if (area == null) {
+			area = (Double) mpgObject.getProperty("netarea");
 		}
 		if (area != null) {
 			geom.setFloorArea(area);
@@ -226,45 +452,149 @@ public class MpgIfcObjectCollector {
 		return geom;
 	}
 
+	/**
+	 * Determine the volume and floor area of a space or slab from its quantity and
+	 * property sets when there is no generated geometry available.
+	 * 
+	 * @param context context of the collection
+	 * @param product space or slab to evaluate
+	 * @return a MpgGeometry with the volume and area found in the property sets
+	 */
+	private MpgGeometry getGeometryFromQuantities(MpgCollectionContext context, IfcProduct product) {
+		MpgObjectImpl productObject = new MpgObjectImpl(product.getOid(), product.getGlobalId(),
+				product.getName(), context.getProductTypes().get(product).getTypeName(), "");
+		MpgRelationIndex relationIndex = context.getRelationIndex();
+		if (relationIndex != null) {
+			relationIndex.addPropertiesTo(product.getOid(), productObject);
+		} else {
+			this.getPropertySetsFromIfcProduct(context, product, productObject);
+		}
+		if (context.getSettings().getPropertyWhitelist() != null) {
+			productObject.setPropertyResolver(name -> getPropertyFromIfcProduct(product, name));
+		}
+		return getSpaceGeometryFromPropertySet(productObject);
+	}
+
+	/**
+	 * @param spaceObject object with the properties of an IfcSpace or IfcSlab
+	 * @return the geometry from the property sets with the net or gross floor area
+	 *         of the space as floor area when present
+	 */
+	static MpgGeometry getSpaceGeometryFromPropertySet(MpgObject spaceObject) {
+		MpgGeometry geom = getGeometryFromPropertySet(spaceObject);
+		Object floorArea = spaceObject.getProperty("netfloorarea");
+		if (floorArea == null) {
+			floorArea = spaceObject.getProperty("grossfloorarea");
+		}
+		if (floorArea instanceof Double) {
+			geom.setFloorArea((Double) floorArea);
+		}
+		return geom;
+	}
+
 	/**
 	 * retrieve the property sets from the ifc product and any present templates
 	 * 
+	 * @param context
 	 * @param product
 	 * @param mpgObject
 	 */
-	private void getPropertySetsFromIfcProduct(IfcProduct product, MpgObjectImpl mpgObject) {
+	private void getPropertySetsFromIfcProduct(MpgCollectionContext context, IfcProduct product,
+			MpgObjectImpl mpgObject) {
 		// try get the materials from the relating type
 		for (IfcRelDefines def : product.getIsDefinedBy()) {
 			if (def instanceof IfcRelDefinesByType) {
 				IfcRelDefinesByType typeDefRel = (IfcRelDefinesByType) def;
 				IfcTypeObject relatingType = typeDefRel.getRelatingType();
-				getPropertySetFromTypeObject(relatingType, mpgObject);
+				context.getTypeCache().addProperties(relatingType, mpgObject,
+						type -> getPropertySetFromTypeObject(context, type));
 			}
 			if (def instanceof IfcRelDefinesByProperties) {
 				IfcRelDefinesByProperties props = (IfcRelDefinesByProperties) def;
 				IfcPropertySetDefinition propSet = props.getRelatingPropertyDefinition();
-				resolvePropertySetAndAddProperties(propSet, mpgObject);
+				resolvePropertySetAndAddProperties(propSet, collectedProperties(context, mpgObject::addProperty));
+			}
+		}
+	}
+
+	/**
+	 * Find a single property of the product or its type without collecting any
+	 * other properties. Used for properties that are not in the whitelist.
+	 * 
+	 * @param product IfcProduct object
+	 * @param name    lower case name of the property
+	 * @return the value of the property or null when not found
+	 */
+	private Object getPropertyFromIfcProduct(IfcProduct product, String name) {
+		Object[] res = new Object[1];
+		BiConsumer<String, Object> match = (propName, value) -> {
+			if (propName.equalsIgnoreCase(name)) {
+				res[0] = value;
+			}
+		};
+		for (IfcRelDefines def : product.getIsDefinedBy()) {
+			if (def instanceof IfcRelDefinesByType) {
+				IfcTypeObject relatingType = ((IfcRelDefinesByType) def).getRelatingType();
+				for (IfcPropertySetDefinition propSet : relatingType.getHasPropertySets()) {
+					resolvePropertySetAndAddProperties(propSet, match);
+				}
+			}
+			if (def instanceof IfcRelDefinesByProperties) {
+				IfcPropertySetDefinition propSet = ((IfcRelDefinesByProperties) def).getRelatingPropertyDefinition();
+				resolvePropertySetAndAddProperties(propSet, match);
 			}
 		}
+		return res[0];
+	}
+
+	/**
+	 * Wrap a property consumer such that only the properties in the property
+	 * whitelist are passed on, if any. Property names are passed on in lower case.
+	 * 
+	 * @param context context of the collection
+	 * @param target  consumer of the collected properties
+	 * @return consumer that takes properties as they are read from the model
+	 */
+	private static BiConsumer<String, Object> collectedProperties(MpgCollectionContext context,
+			BiConsumer<String, Object> target) {
+		Set<String> whitelist = context.getSettings().getPropertyWhitelist();
+		// property names repeat for many objects, the dictionary keeps their lower case form
+		MpgStringDictionary strings = context.getObjectStore().getStringDictionary();
+		if (whitelist == null) {
+			return (name, value) -> target.accept(strings.toLowerCase(strings.intern(name)), value);
+		}
+		// the whitelist is stored in lower case
+		return (name, value) -> {
+			String key = strings.toLowerCase(strings.intern(name));
+			if (whitelist.contains(key)) {
+				target.accept(key, value);
+			}
+		};
 	}
 
 	/**
 	 * Retrieve the Property sets from any linked IfcTypeObject and pass this on to
 	 * the Property collection method
 	 * 
-	 * @param typeObjecttemplate type to retrieve
-	 * @param mpgObject          mpgObject to add properties to
+	 * @param context    context of the collection
+	 * @param typeObject template type to retrieve
+	 * @return the properties of the type in order of appearance
 	 */
-	private void getPropertySetFromTypeObject(IfcTypeObject typeObject, MpgObjectImpl mpgObject) {
+	private List<ImmutablePair<String, Object>> getPropertySetFromTypeObject(MpgCollectionContext context,
+			IfcTypeObject typeObject) {
+		List<ImmutablePair<String, Object>> properties = new ArrayList<ImmutablePair<String, Object>>();
 		EList<IfcPropertySetDefinition> propertySets = typeObject.getHasPropertySets();
 		if (!propertySets.isEmpty()) {
 			for (IfcPropertySetDefinition propSet : propertySets) {
-				resolvePropertySetAndAddProperties(propSet, mpgObject);
+				resolvePropertySetAndAddProperties(propSet, collectedProperties(context,
+						(name, value) -> properties.add(new ImmutablePair<String, Object>(name, value))));
 			}
 		}
+		return properties;
 	}
 
-	private void resolvePropertySetAndAddProperties(IfcPropertySetDefinition propSet, MpgObjectImpl mpgObject) {
+	private void resolvePropertySetAndAddProperties(IfcPropertySetDefinition propSet,
+			BiConsumer<String, Object> mpgObject) {
 		if (propSet instanceof IfcElementQuantity) {
 			addPropertiesFromPropertySetDefinition((IfcElementQuantity) propSet, mpgObject);
 		} else if (propSet instanceof IfcPropertySet) {
@@ -274,11 +604,12 @@ public class MpgIfcObjectCollector {
 		}
 	}
 
-	private void addPropertiesFromPropertySetDefinition(IfcElementQuantity quantities, MpgObjectImpl mpgObject) {
+	private void addPropertiesFromPropertySetDefinition(IfcElementQuantity quantities,
+			BiConsumer<String, Object> mpgObject) {
 		for (IfcPhysicalQuantity physQuant : quantities.getQuantities()) {
 			if (physQuant instanceof IfcPhysicalSimpleQuantity) {
 				IfcPhysicalSimpleQuantity simpleQuant = (IfcPhysicalSimpleQuantity) physQuant;
-				String name = simpleQuant.getName().toLowerCase();
+				String name = simpleQuant.getName();
 				Object value = null;
 
 				if (simpleQuant instanceof IfcQuantityVolume) {
@@ -290,18 +621,18 @@ public class MpgIfcObjectCollector {
 				}
 
 				if (value != null) {
-					mpgObject.addProperty(name, value);
+					mpgObject.accept(name, value);
 				}
 			}
 		}
 	}
 
-	private void addPropertiesFromPropertySetDefinition(IfcPropertySet defs, MpgObjectImpl mpgObject) {
+	private void addPropertiesFromPropertySetDefinition(IfcPropertySet defs, BiConsumer<String, Object> mpgObject) {
 
 		for (IfcProperty prop : defs.getHasProperties()) {
 			if (prop instanceof IfcPropertySingleValue) {
 				IfcPropertySingleValue valProp = (IfcPropertySingleValue) prop;
-				String name = valProp.getName().toLowerCase();
+				String name = valProp.getName();
 
 				IfcValue ifcValue = (valProp.getNominalValue());
 				Object value = null;
@@ -315,7 +646,7 @@ public class MpgIfcObjectCollector {
 				}
 
 				if (value != null) {
-					mpgObject.addProperty(name, value);
+					mpgObject.accept(name, value);
 				}
 			}
 		}
@@ -325,148 +656,176 @@ public class MpgIfcObjectCollector {
 	 * Retrieve the materials and layers from the IfcProduct object and store these
 	 * as MpgMaterial objects
 	 * 
+	 * @param context    context of the collection
 	 * @param ifcProduct The ifcProduct object to retrieve the material names from
 	 * @param mpgObject  The object to add the found materials to.
 	 */
-	private void getMaterialsFromIfcProduct(IfcProduct ifcProduct, MpgObjectImpl mpgObject) {
+	private void getMaterialsFromIfcProduct(MpgCollectionContext context, IfcProduct ifcProduct,
+			MpgObjectImpl mpgObject) {
 
 		// try get the materials directly from the product
-		getMaterialsFromObject(ifcProduct, mpgObject);
+		getMaterialsFromObject(context, ifcProduct).addTo(mpgObject);
 
 		// try get the materials from the relating type
 		for (IfcRelDefines def : ifcProduct.getIsDefinedBy()) {
 			if (def instanceof IfcRelDefinesByType) {
 				IfcRelDefinesByType typeDefRel = (IfcRelDefinesByType) def;
 				IfcTypeObject relatingType = typeDefRel.getRelatingType();
-				getMaterialsFromObject(relatingType, mpgObject);
+				context.getTypeCache().addMaterials(relatingType, mpgObject,
+						type -> getMaterialsFromObject(context, type));
 			}
 		}
 	}
 
 	/**
 	 * Try find the NLsfb classification of an object and add it to the MpgObject
+	 * @param context      context of the collection
 	 * @param sourceObject IfcObjectDefinition from ifc file
 	 * @param targetObject MpgObject to add the NLsfb code to
 	 */
-	private void getProductClassications(IfcObjectDefinition sourceObject, MpgObjectImpl targetObject) {
+	private void getProductClassications(MpgCollectionContext context, IfcObjectDefinition sourceObject,
+			MpgObjectImpl targetObject) {
 
 		EList<IfcRelAssociates> associates = sourceObject.getHasAssociations();
 		if (associates != null && !associates.isEmpty()) {
 			for (IfcRelAssociates ifcRelAssociates : associates) {
 				if (ifcRelAssociates instanceof IfcRelAssociatesClassification) {
 					IfcRelAssociatesClassification classes = (IfcRelAssociatesClassification) ifcRelAssociates;
-					IfcClassificationNotationSelect relClass = classes.getRelatingClassification();
-
-					if (relClass instanceof IfcClassificationReference) {
-						IfcClassificationReference relRef = (IfcClassificationReference) relClass;
-						if (relRef.getReferencedSource().getName().toLowerCase().contains("sfb")) {
-							targetObject.setNLsfbCode(relRef.getItemReference());
-						}
+					String nlsfbCode = getNLsfbCode(context, classes.getRelatingClassification());
+					if (nlsfbCode != null) {
+						targetObject.setNLsfbCode(nlsfbCode);
 					}
-
 				}
 			}
 		}
 	}
 
-	private void getMaterialsFromObject(IfcObjectDefinition sourceObject, MpgObjectImpl targetObject) {
-
-		EList<IfcRelAssociates> associates = sourceObject.getHasAssociations();
-		if (associates != null && !associates.isEmpty()) {
-
-			String matSource = null;
-			if (sourceObject instanceof IfcTypeProduct) {
-				matSource = "type";
+	/**
+	 * @param context  context of the collection
+	 * @param relClass classification of an object
+	 * @return the referenced item when the classification refers to an NLsfb
+	 *         source, otherwise null
+	 */
+	private static String getNLsfbCode(MpgCollectionContext context, IfcClassificationNotationSelect relClass) {
+		if (relClass instanceof IfcClassificationReference) {
+			IfcClassificationReference relRef = (IfcClassificationReference) relClass;
+			IfcClassification source = relRef.getReferencedSource();
+			if (source != null && context.getNlsfbSources().computeIfAbsent(source,
+					src -> src.getName() != null && src.getName().toLowerCase().contains("sfb"))) {
+				return relRef.getItemReference();
 			}
+		}
+		return null;
+	}
+
+	/**
+	 * Collect the materials and material layers that are associated with an object
+	 * 
+	 * @param context      context of the collection
+	 * @param sourceObject IfcObjectDefinition from ifc file
+	 * @return the found associations, to be added to one or more MpgObjects
+	 */
+	private MpgMaterialAssociations getMaterialsFromObject(MpgCollectionContext context,
+			IfcObjectDefinition sourceObject) {
 
-			List<Triple<String, String, Double>> productLayers = new ArrayList<Triple<String, String, Double>>();
-			Map<String, String> productMaterials = new HashMap<String, String>();
+		String matSource = null;
+		if (sourceObject instanceof IfcTypeProduct) {
+			matSource = "type";
+		}
+		MpgMaterialAssociations productMaterials = new MpgMaterialAssociations(matSource);
 
+		EList<IfcRelAssociates> associates = sourceObject.getHasAssociations();
+		if (associates != null && !associates.isEmpty()) {
 			for (IfcRelAssociates ifcRelAssociates : associates) {
 
 				if (ifcRelAssociates instanceof IfcRelAssociatesMaterial) {
 					IfcRelAssociatesMaterial matRelation = (IfcRelAssociatesMaterial) ifcRelAssociates;
-					IfcMaterialSelect relatingMaterial = matRelation.getRelatingMaterial();
-
-					// try determine what the derived interface of the IfcMaterialSelect is
-					if (relatingMaterial instanceof IfcMaterial) {
-						IfcMaterial mat = (IfcMaterial) relatingMaterial;
-						productMaterials.put(Long.toString(mat.getOid()), mat.getName());
-					} else if (relatingMaterial instanceof IfcMaterialList) {
-						IfcMaterialList mats = (IfcMaterialList) relatingMaterial;
-						mats.getMaterials()
-								.forEach((mat) -> productMaterials.put(Long.toString(mat.getOid()), mat.getName()));
-					} else if (relatingMaterial instanceof IfcMaterialLayerSetUsage) {
-						productLayers.addAll(getMaterialLayerList((IfcMaterialLayerSetUsage) relatingMaterial));
-					} else if (relatingMaterial instanceof IfcMaterialLayerSet) {
-						productLayers.addAll(getMaterialLayerList((IfcMaterialLayerSet) relatingMaterial));
-					} else if (relatingMaterial instanceof IfcMaterialLayer) {
-						productLayers.addAll(getMaterialLayer((IfcMaterialLayer) relatingMaterial));
-					}
+					addRelatingMaterial(context, matRelation.getRelatingMaterial(), productMaterials);
 				}
 			}
+		}
+		return productMaterials;
+	}
 
-			// check total volume matches up with found materials and thickness sums and
-			// adjust accordingly.
-			double totalThickness = productLayers.stream().collect(Collectors.summingDouble(o -> o.getRight()));
-
-			String matSourceDirect = (matSource != null) ? matSource : "direct";
-			// add separately listed materials
-			productMaterials.forEach((key, value) -> {
-				targetObject.addMaterialSource(value, key, matSourceDirect);
-			});
-
-			String matSourceLayer = (matSource != null) ? matSource : "layer";
-			// add layers and any materials that have been found with those layers
-			productLayers.forEach(layer -> {
-				String materialName = layer.getLeft();
-				String materialGuid = layer.getMiddle();
-				double vol = targetObject.getGeometry().getVolume();
-				double volumeRatio = layer.getRight() / totalThickness * vol;
-				double area = vol * volumeRatio / layer.getRight();
-				targetObject.addLayer(new MpgLayerImpl(volumeRatio, area, materialName, materialGuid));
-				targetObject.addMaterialSource(materialName, materialGuid, matSourceLayer);
-			});
+	/**
+	 * Add the materials or material layers of a material association
+	 * 
+	 * @param context          context of the collection
+	 * @param relatingMaterial material select of the association
+	 * @param productMaterials materials to add the found materials to
+	 */
+	private static void addRelatingMaterial(MpgCollectionContext context, IfcMaterialSelect relatingMaterial,
+			MpgMaterialAssociations productMaterials) {
+		// try determine what the derived interface of the IfcMaterialSelect is
+		if (relatingMaterial instanceof IfcMaterial) {
+			IfcMaterial mat = (IfcMaterial) relatingMaterial;
+			productMaterials.addMaterial(Long.toString(mat.getOid()), mat.getName());
+		} else if (relatingMaterial instanceof IfcMaterialList) {
+			IfcMaterialList mats = (IfcMaterialList) relatingMaterial;
+			mats.getMaterials()
+					.forEach((mat) -> productMaterials.addMaterial(Long.toString(mat.getOid()), mat.getName()));
+		} else if (relatingMaterial instanceof IfcMaterialLayerSetUsage) {
+			productMaterials.addLayers(getMaterialLayerList(context, (IfcMaterialLayerSetUsage) relatingMaterial));
+		} else if (relatingMaterial instanceof IfcMaterialLayerSet) {
+			productMaterials.addLayers(getMaterialLayerList(context, (IfcMaterialLayerSet) relatingMaterial));
+		} else if (relatingMaterial instanceof IfcMaterialLayer) {
+			productMaterials.addLayers(getMaterialLayer(context, (IfcMaterialLayer) relatingMaterial));
 		}
 	}
 
 	/**
 	 * get the relevant data from a material layer object
 	 * 
-	 * @param layer the material layer object to parse
-	 * @return an object with material layer information. 
+	 * @param context context of the collection
+	 * @param layer   the material layer object to parse
+	 * @return a layer set with a single layer. 
 	 * return empty values for matname and matid when no material is defined
 	 */
-	private List<Triple<String, String, Double>> getMaterialLayer(IfcMaterialLayer layer) {
-		IfcMaterial material = layer.getMaterial();
-		List<Triple<String, String, Double>> res = new ArrayList<Triple<String, String, Double>>();
-		MutableTriple<String, String, Double> triple = new MutableTriple<String, String, Double>(
-				material != null ? material.getName() : "",
-				material != null ? Long.toString(material.getOid()) : "",
-				layer.getLayerThickness());
-
-		res.add(triple);
-		return res;
+	private static MpgMaterialLayerSet getMaterialLayer(MpgCollectionContext context, IfcMaterialLayer layer) {
+		return context.getLayerSetCache().computeIfAbsent(layer, l -> {
+			IfcMaterial material = layer.getMaterial();
+			return new MpgMaterialLayerSet(
+					new String[] { material != null ? material.getName() : "" },
+					new String[] { material != null ? Long.toString(material.getOid()) : "" },
+					new double[] { layer.getLayerThickness() });
+		});
 	}
 
 	/**
-	 * Get the material names from a generic ifcMaterialLayerSet
+	 * Get the material names from a generic ifcMaterialLayerSet. Every layer set is
+	 * only resolved once per model.
 	 * 
+	 * @param context  context of the collection
 	 * @param layerSet ifcLayerSet object
-	 * @return a list of material names and matching thickness.
+	 * @return the material names and matching thickness of all layers
 	 */
-	private List<Triple<String, String, Double>> getMaterialLayerList(IfcMaterialLayerSet layerSet) {
-		return layerSet.getMaterialLayers().stream().flatMap((layer) -> getMaterialLayer(layer).stream())
-				.collect(Collectors.toList());
+	private static MpgMaterialLayerSet getMaterialLayerList(MpgCollectionContext context,
+			IfcMaterialLayerSet layerSet) {
+		return context.getLayerSetCache().computeIfAbsent(layerSet, s -> {
+			EList<IfcMaterialLayer> layers = layerSet.getMaterialLayers();
+			String[] names = new String[layers.size()];
+			String[] ids = new String[layers.size()];
+			double[] thicknesses = new double[layers.size()];
+			for (int i = 0; i < layers.size(); i++) {
+				IfcMaterialLayer layer = layers.get(i);
+				IfcMaterial material = layer.getMaterial();
+				names[i] = material != null ? material.getName() : "";
+				ids[i] = material != null ? Long.toString(material.getOid()) : "";
+				thicknesses[i] = layer.getLayerThickness();
+			}
+			return new MpgMaterialLayerSet(names, ids, thicknesses);
+		});
 	}
 
 	/**
 	 * polymorphic method of the MaterialLayerSet implementation.
 	 * 
+	 * @param context       context of the collection
 	 * @param layerSetUsage ifcLayerSetUsage object
-	 * @return a list of material names
+	 * @return the material names and matching thickness of all layers
 	 */
-	private List<Triple<String, String, Double>> getMaterialLayerList(IfcMaterialLayerSetUsage layerSetUsage) {
-		return getMaterialLayerList(layerSetUsage.getForLayerSet());
+	private static MpgMaterialLayerSet getMaterialLayerList(MpgCollectionContext context,
+			IfcMaterialLayerSetUsage layerSetUsage) {
+		return getMaterialLayerList(context, layerSetUsage.getForLayerSet());
 	}
 }
@@ -26,6 +26,14 @@ public class MpgLayerImpl extends MpgSpaceImpl implements MpgLayer {
 	protected void setMaterialName(String mpgMaterial) {
 		this.materialName = mpgMaterial;
 	}
+
+	/**
+	 * Replace the material name and guid by the instances of the store dictionary
+	 */
+	void internStrings(MpgStringDictionary strings) {
+		this.materialName = strings.intern(this.materialName);
+		this.id = strings.intern(this.id);
+	}
 	
 	@Override
 	public String print() {		
@@ -0,0 +1,78 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Materials and material layers that are associated with a single
+ * IfcObjectDefinition. The associations are independent of the object they are
+ * added to, which allows them to be reused for every occurrence of a type.
+ */
+class MpgMaterialAssociations {
+
+	private final String materialSource;
+	private final Map<String, String> materials = new HashMap<String, String>();
+	private final List<MpgMaterialLayerSet> layerSets = new ArrayList<MpgMaterialLayerSet>();
+
+	/**
+	 * @param materialSource source description to use for all materials, or null
+	 *                       to distinguish between direct and layer materials
+	 */
+	MpgMaterialAssociations(String materialSource) {
+		this.materialSource = materialSource;
+	}
+
+	void addMaterial(String oid, String name) {
+		materials.put(oid, name);
+	}
+
+	void addLayers(MpgMaterialLayerSet layerSet) {
+		layerSets.add(layerSet);
+	}
+
+	void addAll(MpgMaterialAssociations other) {
+		materials.putAll(other.materials);
+		layerSets.addAll(other.layerSets);
+	}
+
+	/**
+	 * Add the materials and layers to an object. The layer volumes are based on
+	 * the geometry of the target object, so its geometry should be set first.
+	 * 
+	 * @param targetObject object to add the materials and layers to
+	 */
+	void addTo(MpgObjectImpl targetObject) {
+		// check total volume matches up with found materials and thickness sums and
+		// adjust accordingly.
+		double totalThickness = 0.0;
+		for (MpgMaterialLayerSet layerSet : layerSets) {
+			totalThickness += layerSet.getTotalThickness();
+		}
+
+		String matSourceDirect = (materialSource != null) ? materialSource : "direct";
+		// add separately listed materials
+		materials.forEach((key, value) -> {
+			targetObject.addMaterialSource(value, key, matSourceDirect);
+		});
+
+		String matSourceLayer = (materialSource != null) ? materialSource : "layer";
+		// add layers and any materials that have been found with those layers
+		if (layerSets.isEmpty()) {
+			return;
+		}
+		double vol = targetObject.getGeometry().getVolume();
+		for (MpgMaterialLayerSet layerSet : layerSets) {
+			for (int i = 0; i < layerSet.size(); i++) {
+				String materialName = layerSet.getMaterialName(i);
+				String materialGuid = layerSet.getMaterialId(i);
+				double thickness = layerSet.getThickness(i);
+				double volumeRatio = thickness / totalThickness * vol;
+				double area = vol * volumeRatio / thickness;
+				targetObject.addLayer(new MpgLayerImpl(volumeRatio, area, materialName, materialGuid));
+				targetObject.addMaterialSource(materialName, materialGuid, matSourceLayer);
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.opensourcebim.ifccollection;
+
+/**
+ * Immutable representation of a resolved IfcMaterialLayerSet (or single
+ * IfcMaterialLayer). Layer sets are shared by many products, so they are
+ * resolved once per model and only scaled by the volume of each product.
+ */
+final class MpgMaterialLayerSet {
+
+	private final String[] materialNames;
+	private final String[] materialIds;
+	private final double[] thicknesses;
+	private final double totalThickness;
+
+	/**
+	 * @param materialNames material name per layer, empty when no material is
+	 *                      defined
+	 * @param materialIds   material oid per layer, empty when no material is
+	 *                      defined
+	 * @param thicknesses   thickness per layer
+	 */
+	MpgMaterialLayerSet(String[] materialNames, String[] materialIds, double[] thicknesses) {
+		this.materialNames = materialNames.clone();
+		this.materialIds = materialIds.clone();
+		this.thicknesses = thicknesses.clone();
+
+		double total = 0.0;
+		for (double thickness : this.thicknesses) {
+			total += thickness;
+		}
+		this.totalThickness = total;
+	}
+
+	int size() {
+		return thicknesses.length;
+	}
+
+	String getMaterialName(int layer) {
+		return materialNames[layer];
+	}
+
+	String getMaterialId(int layer) {
+		return materialIds[layer];
+	}
+
+	double getThickness(int layer) {
+		return thicknesses[layer];
+	}
+
+	double getTotalThickness() {
+		return totalThickness;
+	}
+}
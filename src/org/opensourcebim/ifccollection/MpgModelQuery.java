@@ -0,0 +1,128 @@
+package org.opensourcebim.ifccollection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builds the BIMserver json query for the parts of an ifc model that are read
+ * by the MpgIfcObjectCollector: the products, their property sets, types,
+ * materials, classifications, decompositions and spatial containment, their
+ * geometry and the units of the project. Anything else is left to be lazy
+ * loaded. Defines are added before the defines that include them.
+ */
+public final class MpgModelQuery {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private MpgModelQuery() {
+	}
+
+	/**
+	 * @param includeGeometry flag to also load the geometry info of the products
+	 * @return the query to load the collected model data with
+	 */
+	public static ObjectNode create(boolean includeGeometry) {
+		return create(includeGeometry, false);
+	}
+
+	/**
+	 * @param includeGeometry  flag to also load the geometry info of the products
+	 * @param includeTriangles flag to also load the index and vertex buffers of
+	 *                         the geometry, for instance to rasterize the floor
+	 *                         area. Only used when the geometry is included
+	 * @return the query to load the collected model data with
+	 */
+	public static ObjectNode create(boolean includeGeometry, boolean includeTriangles) {
+		ObjectNode query = MAPPER.createObjectNode();
+
+		ObjectNode defines = query.putObject("defines");
+		defines.set("propertySets", include("IfcPropertySet", "HasProperties"));
+		defines.set("quantitySets", include("IfcElementQuantity", "Quantities"));
+		defines.set("layer", include("IfcMaterialLayer", "Material"));
+		defines.set("layerSet", include("IfcMaterialLayerSet", "MaterialLayers", "layer"));
+		defines.set("layerSetUsage", include("IfcMaterialLayerSetUsage", "ForLayerSet", "layerSet"));
+		defines.set("materialList", include("IfcMaterialList", "Materials"));
+		defines.set("materials", include("IfcRelAssociatesMaterial", "RelatingMaterial", "layer", "layerSet",
+				"layerSetUsage", "materialList"));
+		defines.set("classificationSource", include("IfcClassificationReference", "ReferencedSource"));
+		defines.set("classifications", include("IfcRelAssociatesClassification", "RelatingClassification",
+				"classificationSource"));
+		defines.set("associations", include("IfcObjectDefinition", "HasAssociations", "materials",
+				"classifications"));
+		defines.set("typePropertySets", include("IfcTypeObject", "HasPropertySets", "propertySets",
+				"quantitySets"));
+		defines.set("types", include("IfcRelDefinesByType", "RelatingType", "typePropertySets", "associations"));
+		defines.set("properties", include("IfcRelDefinesByProperties", "RelatingPropertyDefinition",
+				"propertySets", "quantitySets"));
+		defines.set("definitions", include("IfcObject", "IsDefinedBy", "properties", "types"));
+		defines.set("relatingObject", include("IfcRelDecomposes", "RelatingObject"));
+		defines.set("decomposes", include("IfcObjectDefinition", "Decomposes", "relatingObject"));
+		defines.set("decomposedBy", include("IfcObjectDefinition", "IsDecomposedBy", "relatingObject"));
+		defines.set("spaceBoundaries", include("IfcSpace", "BoundedBy"));
+		defines.set("relatingStructure", include("IfcRelContainedInSpatialStructure", "RelatingStructure"));
+		defines.set("containedIn", include("IfcElement", "ContainedInStructure", "relatingStructure"));
+		defines.set("relatedElements", include("IfcRelContainedInSpatialStructure", "RelatedElements"));
+		defines.set("containsElements", include("IfcSpatialStructureElement", "ContainsElements",
+				"relatedElements"));
+		defines.set("unitAssignment", include("IfcUnitAssignment", "Units"));
+		defines.set("units", include("IfcProject", "UnitsInContext", "unitAssignment"));
+
+		ArrayNode queries = query.putArray("queries");
+
+		ObjectNode products = queries.addObject();
+		ObjectNode productType = products.putObject("type");
+		productType.put("name", "IfcProduct");
+		productType.put("includeAllSubTypes", true);
+		ArrayNode productIncludes = products.putArray("includes");
+		productIncludes.add("definitions");
+		productIncludes.add("associations");
+		productIncludes.add("decomposes");
+		productIncludes.add("decomposedBy");
+		productIncludes.add("spaceBoundaries");
+		productIncludes.add("containedIn");
+		productIncludes.add("containsElements");
+		if (includeGeometry) {
+			ObjectNode vectors = defines.putObject("boundsVectors");
+			vectors.put("type", "Bounds");
+			vectors.putArray("fields").add("min").add("max");
+			defines.set("bounds", include("GeometryInfo", "boundsUntransformed", "boundsVectors"));
+			// the geometry data identifies instances of the same representation
+			if (includeTriangles) {
+				ObjectNode buffers = defines.putObject("buffers");
+				buffers.put("type", "GeometryData");
+				buffers.putArray("fields").add("indices").add("vertices");
+				defines.set("geometryData", include("GeometryInfo", "data", "buffers"));
+			} else {
+				defines.set("geometryData", include("GeometryInfo", "data"));
+			}
+			defines.set("geometry", include("IfcProduct", "geometry", "bounds", "geometryData"));
+			productIncludes.add("geometry");
+		}
+
+		ObjectNode project = queries.addObject();
+		project.put("type", "IfcProject");
+		project.putArray("includes").add("units");
+
+		return query;
+	}
+
+	/**
+	 * @param type     the type that has the field
+	 * @param field    the field to load the referenced objects of
+	 * @param includes names of the defines to apply to the referenced objects
+	 * @return a single include of the query
+	 */
+	private static ObjectNode include(String type, String field, String... includes) {
+		ObjectNode include = MAPPER.createObjectNode();
+		include.put("type", type);
+		include.put("field", field);
+		if (includes.length > 0) {
+			ArrayNode names = include.putArray("includes");
+			for (String name : includes) {
+				names.add(name);
+			}
+		}
+		return include;
+	}
+}
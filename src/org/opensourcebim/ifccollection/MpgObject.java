@@ -16,6 +16,8 @@ public interface MpgObject {
 	String getGlobalId();
 	String getParentId();
 	void setParentId(String value);
+	String getStoreyId();
+	void setStoreyId(String value);
 	
 	NlsfbCode getNLsfbCode();	
 	void setNLsfbCode(String code);
@@ -34,6 +36,7 @@ public interface MpgObject {
 	List<String> getMaterialNamesBySource(String source);
 
 	Map<String, Object> getProperties();
+	Object getProperty(String name);
 	
 	List<MpgInfoTag> getAllTags();
 	List<MpgInfoTag> getTagsByType(MpgInfoTagType type);
@@ -46,6 +49,9 @@ public interface MpgObject {
 	void clearTagsOfType(MpgInfoTagType nmdproductcardwarning);
 	
 	String getValueHash();
+	@JsonIgnore
+	long getStructuralHash();
+	boolean hasEqualValueHash(MpgObject mpgObject);
 	boolean copyMappingFromObject(MpgObject mpgObject);
 
 
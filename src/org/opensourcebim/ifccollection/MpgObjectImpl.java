@@ -1,11 +1,13 @@
 package org.opensourcebim.ifccollection;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,25 +23,46 @@ public class MpgObjectImpl implements MpgObject {
 	private String globalId;
 	private String objectName;
 	private List<MpgLayer> mpgLayers;
+	@JsonIgnore
+	private List<MpgLayer> layersView;
 	private String objectType;
 	private String parentId;
+	private String storeyId;
 
 	@JsonIgnore
 	private Map<String, Object> properties;
+	@JsonIgnore
+	private Function<String, Object> propertyResolver;
 	private List<MaterialSource> listedMaterials;
+	@JsonIgnore
+	private List<MaterialSource> listedMaterialsView;
 
 	private MpgGeometry geometry;
 	private NlsfbCode nlsfb;
 	private List<MpgInfoTag> tags;
 	private Set<NlsfbCode> nlsfbAlternatives;
 
+	// value hash and its 64-bit hash, determined on first request after the name,
+	// type, materials or NLsfb code have changed
+	@JsonIgnore
+	private String cachedValueHash;
+	@JsonIgnore
+	private long cachedStructuralHash;
+
+	// store the object has been added to, notified of changes that affect the
+	// validation and the value hash
+	@JsonIgnore
+	private MpgObjectStoreImpl store;
+
 	public MpgObjectImpl(long objectId, String globalId, String objectName, String objectType, String parentId) {
 
 		this.objectId = objectId;
 		this.setGlobalId(globalId);
 		this.setObjectName(objectName);
 		if (objectType != null) {
-			objectType = objectType.replaceAll("Impl$", "");
+			if (objectType.endsWith("Impl")) {
+				objectType = objectType.substring(0, objectType.length() - 4);
+			}
 			this.setObjectType(objectType);
 		}
 		this.parentId = parentId;
@@ -53,20 +76,26 @@ public class MpgObjectImpl implements MpgObject {
 	
 	private void initializeCollections() {
 		mpgLayers = new BasicEList<MpgLayer>();
+		layersView = Collections.unmodifiableList(mpgLayers);
 		properties = new HashMap<String, Object>();
 		tags = new ArrayList<MpgInfoTag>();
 		this.listedMaterials = new BasicEList<MaterialSource>();
+		this.listedMaterialsView = Collections.unmodifiableList(listedMaterials);
 		this.nlsfbAlternatives = new HashSet<NlsfbCode>();
 	}
 
 	@Override
 	public void addLayer(MpgLayer mpgLayer) {
 		mpgLayers.add(mpgLayer);
+		changed();
 	}
 
+	/**
+	 * @return a read only view on the layers, use addLayer to add a layer
+	 */
 	@Override
 	public List<MpgLayer> getLayers() {
-		return mpgLayers;
+		return layersView;
 	}
 
 	@Override
@@ -81,6 +110,7 @@ public class MpgObjectImpl implements MpgObject {
 
 	public void setObjectType(String objectType) {
 		this.objectType = objectType == null ? "undefined type" : objectType;
+		valueHashChanged();
 	}
 
 	@Override
@@ -90,6 +120,7 @@ public class MpgObjectImpl implements MpgObject {
 
 	public void setObjectName(String objectName) {
 		this.objectName = objectName == null ? "undefined name" : objectName;
+		valueHashChanged();
 	}
 
 	@Override
@@ -99,6 +130,7 @@ public class MpgObjectImpl implements MpgObject {
 
 	public void setGlobalId(String globalId) {
 		this.globalId = globalId;
+		changed();
 	}
 
 	@Override
@@ -108,6 +140,10 @@ public class MpgObjectImpl implements MpgObject {
 
 	public void setGeometry(MpgGeometry geom) {
 		this.geometry = geom;
+		if (geom != null && !geom.isImmutable()) {
+			geom.setOwner(this);
+		}
+		changed();
 	}
 
 	@Override
@@ -119,12 +155,14 @@ public class MpgObjectImpl implements MpgObject {
 	public void setNLsfbCode(String code) {
 		if (NlsfbCode.isNlsfbCode(code)) {
 			this.nlsfb = new NlsfbCode(code);
+			valueHashChanged();
 		}
 	}
 	
 	@Override
 	public void setNLsfbCode(NlsfbCode code) {
 		this.nlsfb = code;
+		valueHashChanged();
 	}
 
 	@Override
@@ -157,6 +195,20 @@ public class MpgObjectImpl implements MpgObject {
 
 	}
 
+	/**
+	 * @return guid of the building storey the object is (indirectly) contained in,
+	 *         or null when not contained in a storey
+	 */
+	@Override
+	public String getStoreyId() {
+		return this.storeyId;
+	}
+
+	@Override
+	public void setStoreyId(String value) {
+		this.storeyId = value;
+	}
+
 	@JsonIgnore
 	@Override
 	public Map<String, Object> getProperties() {
@@ -167,6 +219,46 @@ public class MpgObjectImpl implements MpgObject {
 		this.properties.put(name, value);
 	}
 
+	/**
+	 * Get a single property. Properties that have not been collected up front are
+	 * retrieved with the property resolver (if any) on first request.
+	 * 
+	 * @param name case insensitive name of the property
+	 * @return the property value or null when not present
+	 */
+	@Override
+	public Object getProperty(String name) {
+		String key = name.toLowerCase();
+		Object value = this.properties.get(key);
+		if (value == null && propertyResolver != null) {
+			value = propertyResolver.apply(key);
+			if (value != null) {
+				this.properties.put(key, value);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Move the properties of this object to a row in a store wide property table.
+	 * Any properties added afterwards are stored in the table as well.
+	 * 
+	 * @param table the property table of the store this object belongs to
+	 */
+	public void setPropertyTable(MpgPropertyTable table) {
+		Map<String, Object> row = table.getRowView(table.addRow());
+		row.putAll(this.properties);
+		this.properties = row;
+	}
+
+	/**
+	 * @param resolver function to retrieve properties by (lower case) name that
+	 *                 have not been added to the object
+	 */
+	public void setPropertyResolver(Function<String, Object> resolver) {
+		this.propertyResolver = resolver;
+	}
+
 	@Override
 	public List<MpgInfoTag> getAllTags() {
 		return this.tags;
@@ -192,12 +284,18 @@ public class MpgObjectImpl implements MpgObject {
 
 	@Override
 	public void addMaterialSource(String materialName, String materialGuid, String source) {
-		this.getListedMaterials().add(new MaterialSource(materialGuid, materialName, source));
+		this.listedMaterials.add(new MaterialSource(materialGuid, materialName, source));
+		valueHashChanged();
+		changed();
 	}
 
+	/**
+	 * @return a read only view on the materials, use addMaterialSource to add a
+	 *         material
+	 */
 	@Override
 	public List<MaterialSource> getListedMaterials() {
-		return listedMaterials;
+		return listedMaterialsView;
 	}
 
 	@Override
@@ -216,25 +314,119 @@ public class MpgObjectImpl implements MpgObject {
 	public void addMaterialSource(MaterialSource source) {
 		if (!source.getName().isEmpty()) {
 			this.listedMaterials.add(source);
+			valueHashChanged();
+			changed();
 		}
 	}
 
+	/**
+	 * @return a description of the name, type, materials and NLsfb code of the
+	 *         object, kept until any of these change
+	 */
 	@Override
 	public String getValueHash() {
-		String nlsfbToText = this.nlsfb == null ? "" : this.getNLsfbCode().print();
-		
-		return this.getObjectName() + this.getObjectType()
-		+ String.join("-", this.getMaterialNamesBySource(null))
-		+ nlsfbToText;
+		String valueHash = this.cachedValueHash;
+		if (valueHash == null) {
+			String nlsfbToText = this.nlsfb == null ? "" : this.getNLsfbCode().print();
+
+			valueHash = this.getObjectName() + this.getObjectType()
+					+ String.join("-", this.getMaterialNamesBySource(null))
+					+ nlsfbToText;
+			this.cachedStructuralHash = hash64(valueHash);
+			this.cachedValueHash = valueHash;
+		}
+		return valueHash;
+	}
+
+	/**
+	 * @return 64-bit hash of the value hash
+	 */
+	@JsonIgnore
+	@Override
+	public long getStructuralHash() {
+		this.getValueHash();
+		return this.cachedStructuralHash;
+	}
+
+	@Override
+	public boolean hasEqualValueHash(MpgObject mpgObject) {
+		return this.getStructuralHash() == mpgObject.getStructuralHash()
+				&& this.getValueHash().equals(mpgObject.getValueHash());
+	}
+
+	/**
+	 * FNV-1a hash of the characters of a text
+	 */
+	private static long hash64(String text) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			hash ^= text.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the store that is notified of changes to the object, if any
+	 */
+	MpgObjectStoreImpl getStore() {
+		return store;
+	}
+
+	/**
+	 * @param store the store the object has been added to or of which an element
+	 *              has the object, null when it has been removed
+	 */
+	void setStore(MpgObjectStoreImpl store) {
+		this.store = store;
+	}
+
+	/**
+	 * Reset the cached value hash and notify the store, such that the elements of
+	 * the object are grouped again
+	 */
+	private void valueHashChanged() {
+		this.cachedValueHash = null;
+		if (store != null) {
+			store.objectValueHashChanged(this);
+		}
+	}
+
+	/**
+	 * Notify the store of a change that can change the validation of the object,
+	 * also called by a geometry of which this object is the owner
+	 */
+	void changed() {
+		if (store != null) {
+			store.objectChanged();
+		}
+	}
+
+	/**
+	 * Replace the names, types and materials of the object by the instances of the
+	 * store dictionary. The values do not change, so the value hash is kept.
+	 */
+	void internStrings(MpgStringDictionary strings) {
+		this.objectName = strings.intern(this.objectName);
+		this.objectType = strings.intern(this.objectType);
+		this.parentId = strings.intern(this.parentId);
+		this.storeyId = strings.intern(this.storeyId);
+		this.listedMaterials.forEach(m -> m.internStrings(strings));
+		this.mpgLayers.forEach(l -> {
+			if (l instanceof MpgLayerImpl) {
+				((MpgLayerImpl) l).internStrings(strings);
+			}
+		});
 	}
 
 	@Override
 	public boolean copyMappingFromObject(MpgObject mpgObject) {
-		if (this.getValueHash().equals(mpgObject.getValueHash())) {
+		if (this.hasEqualValueHash(mpgObject)) {
 			// the value hash should already confirm that the two lists are equals so no need to do another check
 			for (int i = 0; i < this.getListedMaterials().size(); i++) {
-				this.getListedMaterials().set(i, mpgObject.getListedMaterials().get(i).copy());
-			}	
+				this.listedMaterials.set(i, mpgObject.getListedMaterials().get(i).copy());
+			}
+			changed();
 			return true;
 		}
 		return false;	
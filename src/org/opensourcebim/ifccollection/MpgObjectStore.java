@@ -5,6 +5,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import org.bimserver.utils.AreaUnit;
@@ -18,19 +19,33 @@ import nl.tno.bim.nmd.domain.NmdProductCard;
 
 public interface MpgObjectStore {
 
+	// partition key of the elements that are not contained in a storey
+	String NO_STOREY = "no storey";
+
 	void reset();
 	
-	HashSet<MpgElement> getElements();
+	Set<MpgElement> getElements();
 	boolean isElementDataComplete();
 	
 	@JsonIgnore
 	List<MpgObject> getObjects();
+	@JsonIgnore
+	MpgPropertyTable getPropertyTable();
+	@JsonIgnore
+	MpgStringDictionary getStringDictionary();
+	@JsonIgnore
+	MpgCollectionStatistics getCollectionStatistics();
 	List<MpgSpace> getSpaces();
+	List<MpgStorey> getStoreys();
+	void addStorey(MpgStorey storey);
+	@JsonIgnore
+	Map<String, List<MpgElement>> getStoreyPartitions();
 	
 	Stream<String> getAllMaterialNames();
 	
 	void setObjectForElement(String name, MpgObject mpgObject);
 	void addObject(MpgObject mpgObject);
+	boolean removeObject(MpgObject mpgObject);
 	List<MpgObject> getObjectsByGuids(HashSet<String> guids);
 	Optional<MpgObject> getObjectByGuid(String guid);
 	Stream<MpgObject> getChildren(String parentGuid);
@@ -40,6 +55,7 @@ public interface MpgObjectStore {
 	VolumeUnit getVolumeUnit();
 	
 	MpgElement addElement(String string);
+	boolean removeElement(MpgElement element);
 	MpgElement getElementByName(String name);
 	List<MpgElement> getElementsByProductType(String productType);
 	MpgElement getElementByObjectGuid(String guid);
@@ -49,6 +65,7 @@ public interface MpgObjectStore {
 	void addProductCard(NmdProductCard card);
 	NmdProductCard getProductCard(Integer id);
 	List<NmdProductCard> getProductCards(Collection<Integer> ids);
+	List<NmdProductCard> getProductCards(int[] ids);
 	Map<Integer, NmdProductCard> getProductCards();
 	
 	void addSpace(MpgSpace space);
@@ -56,6 +73,8 @@ public interface MpgObjectStore {
 	double getTotalFloorArea();
 	
 	boolean isIfcDataComplete();
+	@JsonIgnore
+	MpgValidationReport getValidationReport();
 	
 	void toggleMappingDependencies(String globalId, boolean flag);
 	
@@ -83,4 +102,12 @@ public interface MpgObjectStore {
 	boolean hasUndefinedMaterials(MpgObject obj, boolean includeChildren);
 
 	String getProjectId();
+
+	/**
+	 * @return messages about parts of the collection that failed or fell back
+	 *         on a less accurate method, in the order they occurred
+	 */
+	List<String> getWarnings();
+
+	void addWarning(String warning);
 }
\ No newline at end of file
@@ -1,17 +1,25 @@
 package org.opensourcebim.ifccollection;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.bimserver.utils.AreaUnit;
 import org.bimserver.utils.LengthUnit;
 import org.bimserver.utils.VolumeUnit;
@@ -32,42 +40,125 @@ import nl.tno.bim.nmd.domain.NmdProductCard;
  */
 public class MpgObjectStoreImpl implements MpgObjectStore {
 
-	private HashSet<MpgElement> mpgElements;
+	private Set<MpgElement> mpgElements;
 
 	@JsonIgnore
 	private List<MpgObject> mpgObjects;
+
+	// read only views on the elements and objects, changes go through the store
+	@JsonIgnore
+	private Set<MpgElement> elementsView;
+	@JsonIgnore
+	private List<MpgObject> objectsView;
+
+	// indexes to find objects and elements by guid or name in constant time, updated
+	// by every method of the store that adds or removes objects or elements
+	@JsonIgnore
+	private Map<String, MpgObject> objectsByGuid = new HashMap<String, MpgObject>();
+	@JsonIgnore
+	private Map<String, MpgElement> elementsByObjectGuid = new HashMap<String, MpgElement>();
+	@JsonIgnore
+	private Map<String, MpgElement> elementsByName = new HashMap<String, MpgElement>();
 	
-	private HashMap<Integer, NmdProductCard> productCards;
+	private MpgProductCardMap productCards;
 
 	private List<MpgSpace> spaces;
+
+	private List<MpgStorey> storeys;
+
+	/**
+	 * elements per storey guid, determined on first request after the elements or
+	 * the spatial containment have changed
+	 */
+	@JsonIgnore
+	private Map<String, List<MpgElement>> storeyPartitions;
+
+	@JsonIgnore
+	private MpgPropertyTable propertyTable;
+
+	// shared instances of the strings of the objects
+	@JsonIgnore
+	private MpgStringDictionary strings;
+
+	// counters of the collection that filled the store, if any
+	@JsonIgnore
+	private MpgCollectionStatistics collectionStatistics;
 	
 	private String projectId;
 
+	// collection warnings, can be added from the thread of a floor area request
+	private List<String> warnings;
+
+	/**
+	 * index of the decomposition relations between the objects
+	 */
+	@JsonIgnore
+	private MpgHierarchyIndex hierarchy;
+
 	/**
-	 * list to store the guids with any MpgObjects that the object linked to that
-	 * guid decomposes
+	 * validation of the objects, determined on first request after the store has
+	 * changed
 	 */
 	@JsonIgnore
-	private List<ImmutablePair<String, MpgObject>> decomposedRelations;
+	private MpgValidationReport validationReport;
+
+	// number of changes to the objects of the store and their relations
+	@JsonIgnore
+	private final AtomicLong modificationCount = new AtomicLong();
+
+	// elements grouped by the value hash of their objects
+	@JsonIgnore
+	private MpgElementGroupIndex elementGroups;
+
+	/**
+	 * number of direct children per parent guid that are not mapped, neither
+	 * themselves nor through all of their own children. Determined on first
+	 * request and updated when the mapping of an element changes.
+	 */
+	@JsonIgnore
+	private Map<String, Integer> unmappedChildren;
+
+	// flag to indicate the mapping dependencies of an element are being set
+	@JsonIgnore
+	private boolean togglingDependencies = false;
 
 	private VolumeUnit volumeUnit;
 	private AreaUnit areaUnit;
 	private LengthUnit lengthUnit;
 
 	public MpgObjectStoreImpl() {
-		productCards = new HashMap<Integer, NmdProductCard>();
-		setElements(new HashSet<>());
+		productCards = new MpgProductCardMap();
+		// elements are kept in the order they are added, such that partitions and
+		// groups of elements do not depend on hash codes
+		setElements(new LinkedHashSet<>());
 		setObjects(new BasicEList<MpgObject>());
 		setSpaces(new BasicEList<MpgSpace>());
+		storeys = new ArrayList<MpgStorey>();
 		setUnits(VolumeUnit.CUBIC_METER, AreaUnit.SQUARED_METER, LengthUnit.METER);
-		decomposedRelations = new ArrayList<ImmutablePair<String, MpgObject>>();
+		hierarchy = new MpgHierarchyIndex();
+		elementGroups = new MpgElementGroupIndex();
+		propertyTable = new MpgPropertyTable();
+		strings = new MpgStringDictionary();
+		warnings = new CopyOnWriteArrayList<String>();
 	}
 
 	public void reset() {
-		decomposedRelations.clear();
+		hierarchy = new MpgHierarchyIndex();
+		validationReport = null;
+		unmappedChildren = null;
+		elementGroups = new MpgElementGroupIndex();
 		mpgObjects.clear();
 		mpgElements.clear();
+		objectsByGuid.clear();
+		elementsByObjectGuid.clear();
+		elementsByName.clear();
 		spaces.clear();
+		storeys.clear();
+		storeyPartitions = null;
+		propertyTable = new MpgPropertyTable();
+		strings = new MpgStringDictionary();
+		collectionStatistics = null;
+		warnings.clear();
 	}
 
 	@Override
@@ -75,6 +166,16 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 		return projectId;
 	}
 
+	@Override
+	public List<String> getWarnings() {
+		return Collections.unmodifiableList(warnings);
+	}
+
+	@Override
+	public void addWarning(String warning) {
+		warnings.add(warning);
+	}
+
 	public void setProjectId(String projectId) {
 		this.projectId = projectId;
 	}
@@ -113,17 +214,46 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 		if (name != null && !name.isEmpty()) {
 			el = new MpgElement(name, this);
 			mpgElements.add(el);
+			elementsByName.putIfAbsent(el.getIfcName().toLowerCase(), el);
+			storeyPartitions = null;
 		}
 		return el;
 	}
 
+	/**
+	 * @return a read only view on the elements, in the order they were added
+	 */
 	@Override
-	public HashSet<MpgElement> getElements() {
-		return mpgElements;
+	public Set<MpgElement> getElements() {
+		return elementsView;
 	}
 
-	private void setElements(HashSet<MpgElement> mpgElements) {
+	private void setElements(Set<MpgElement> mpgElements) {
 		this.mpgElements = mpgElements;
+		this.elementsView = Collections.unmodifiableSet(mpgElements);
+	}
+
+	@Override
+	public boolean removeElement(MpgElement element) {
+		if (element == null || !mpgElements.remove(element)) {
+			return false;
+		}
+		String name = element.getIfcName().toLowerCase();
+		if (elementsByName.remove(name, element)) {
+			mpgElements.stream().filter(el -> el.getIfcName().toLowerCase().equals(name)).findFirst()
+					.ifPresent(el -> elementsByName.put(name, el));
+		}
+		MpgObject mpgObject = element.getMpgObject();
+		if (mpgObject != null && mpgObject.getGlobalId() != null
+				&& elementsByObjectGuid.remove(mpgObject.getGlobalId(), element)) {
+			String guid = mpgObject.getGlobalId();
+			mpgElements.stream().filter(el -> el.getMpgObject() != null && guid.equals(el.getMpgObject().getGlobalId()))
+					.findFirst().ifPresent(el -> elementsByObjectGuid.put(guid, el));
+		}
+		elementGroups.elementRemoved(element);
+		storeyPartitions = null;
+		unmappedChildren = null;
+		return true;
 	}
 
 	@Override
@@ -136,16 +266,157 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 
 	@Override
 	public void addObject(MpgObject mpgObject) {
-		this.getObjects().add(mpgObject);
+		if (mpgObject instanceof MpgObjectImpl) {
+			((MpgObjectImpl) mpgObject).internStrings(strings);
+			((MpgObjectImpl) mpgObject).setStore(this);
+		}
+		mpgObjects.add(mpgObject);
+		objectChanged();
+		indexObject(mpgObject);
+	}
+
+	@Override
+	public boolean removeObject(MpgObject mpgObject) {
+		if (mpgObject == null || !mpgObjects.remove(mpgObject)) {
+			return false;
+		}
+		if (mpgObject instanceof MpgObjectImpl && !elementGroups.hasElements(mpgObject)) {
+			// objects of elements keep reporting changes of their value hash
+			((MpgObjectImpl) mpgObject).setStore(null);
+		}
+		String guid = mpgObject.getGlobalId();
+		if (guid != null && objectsByGuid.remove(guid, mpgObject)) {
+			// another object with the same guid takes its place in the index
+			mpgObjects.stream().filter(o -> guid.equals(o.getGlobalId())).findFirst()
+					.ifPresent(o -> objectsByGuid.put(guid, o));
+		}
+		this.hierarchy = new MpgHierarchyIndex(mpgObjects);
+		objectChanged();
+		unmappedChildren = null;
+		storeyPartitions = null;
+		return true;
+	}
+
+	/**
+	 * Register a change to an object of the store that can change its validation,
+	 * such as its geometry, layers or materials
+	 */
+	void objectChanged() {
+		modificationCount.incrementAndGet();
+	}
+
+	/**
+	 * Register an object of which the value hash has changed, such that its
+	 * elements are grouped again
+	 */
+	void objectValueHashChanged(MpgObject mpgObject) {
+		elementGroups.valueHashChanged(mpgObject);
+	}
+
+	private void indexObject(MpgObject mpgObject) {
+		if (mpgObject != null && mpgObject.getGlobalId() != null) {
+			objectsByGuid.putIfAbsent(mpgObject.getGlobalId(), mpgObject);
+		}
+	}
+
+	/**
+	 * Update the indexes of elements by object guid and by value hash after the
+	 * object of an element has been set.
+	 * 
+	 * @param element   element with a new object
+	 * @param oldObject the previous object of the element, if any
+	 */
+	void updateElementIndex(MpgElement element, MpgObject oldObject) {
+		if (oldObject != null && oldObject.getGlobalId() != null) {
+			elementsByObjectGuid.remove(oldObject.getGlobalId(), element);
+		}
+		MpgObject mpgObject = element.getMpgObject();
+		if (mpgObject != null && mpgObject.getGlobalId() != null) {
+			elementsByObjectGuid.putIfAbsent(mpgObject.getGlobalId(), element);
+		}
+		if (mpgObject instanceof MpgObjectImpl && ((MpgObjectImpl) mpgObject).getStore() == null) {
+			// also objects that are not added to the store report changes of their value hash
+			((MpgObjectImpl) mpgObject).setStore(this);
+		}
+		elementGroups.elementChanged(element, oldObject);
+		storeyPartitions = null;
+		unmappedChildren = null;
+	}
+
+	/**
+	 * Update the unmapped children counters of the ancestors of an element after
+	 * its mapping has changed. Only the ancestors of which the mapped state
+	 * changes are visited.
+	 * 
+	 * @param element   element with a new mapping method
+	 * @param wasMapped flag to indicate the element had a mapping before
+	 */
+	void updateMappingState(MpgElement element, boolean wasMapped) {
+		Map<String, Integer> counts = unmappedChildren;
+		MpgObject mpgObject = element.getMpgObject();
+		if (counts == null || mpgObject == null || wasMapped == element.hasMapping()
+				|| counts.getOrDefault(mpgObject.getGlobalId(), -1) == 0) {
+			// nothing determined yet or the object is mapped through its children anyway
+			return;
+		}
+
+		int delta = element.hasMapping() ? -1 : 1;
+		Set<String> visited = new HashSet<String>();
+		visited.add(mpgObject.getGlobalId());
+		String parent = hierarchy.getParentId(mpgObject.getGlobalId());
+		while (parent != null && visited.add(parent) && counts.containsKey(parent)) {
+			boolean parentWasMapped = isMapped(parent, counts);
+			counts.put(parent, counts.get(parent) + delta);
+			if (isMapped(parent, counts) == parentWasMapped) {
+				break;
+			}
+			parent = hierarchy.getParentId(parent);
+		}
 	}
 	
+	/**
+	 * @return a read only view on the objects, in the order they were added
+	 */
 	@Override
 	public List<MpgObject> getObjects() {
-		return mpgObjects;
+		return objectsView;
 	}
 
 	private void setObjects(List<MpgObject> mpgObjects) {
 		this.mpgObjects = mpgObjects;
+		this.objectsView = Collections.unmodifiableList(mpgObjects);
+	}
+
+	/**
+	 * @return table with the properties of the objects that have been collected
+	 *         for this store
+	 */
+	@Override
+	public MpgPropertyTable getPropertyTable() {
+		return propertyTable;
+	}
+
+	/**
+	 * @return dictionary that the strings of the objects added to the store go
+	 *         through
+	 */
+	@Override
+	public MpgStringDictionary getStringDictionary() {
+		return strings;
+	}
+
+	/**
+	 * @return the counters of the collection that filled the store or null when the
+	 *         store has not been filled by a collector
+	 */
+	@JsonIgnore
+	@Override
+	public MpgCollectionStatistics getCollectionStatistics() {
+		return collectionStatistics;
+	}
+
+	public void setCollectionStatistics(MpgCollectionStatistics collectionStatistics) {
+		this.collectionStatistics = collectionStatistics;
 	}
 
 	@Override
@@ -156,6 +427,50 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	private void setSpaces(List<MpgSpace> spaces) {
 		this.spaces = spaces;
 	}
+
+	@Override
+	public List<MpgStorey> getStoreys() {
+		return storeys;
+	}
+
+	@Override
+	public void addStorey(MpgStorey storey) {
+		storeys.add(storey);
+		storeyPartitions = null;
+	}
+
+	/**
+	 * Partition the elements by the storey their object is contained in. Storeys
+	 * are ordered by elevation and are present even when they contain no elements.
+	 * Elements are in the order they were added to the store. Elements without a
+	 * storey are in the NO_STOREY partition, which comes last.
+	 * 
+	 * The partitions are used to report the results per storey. Validation, NMD
+	 * resolution and the calculation still run over all elements of the store.
+	 * 
+	 * @return the elements per storey guid
+	 */
+	@JsonIgnore
+	@Override
+	public Map<String, List<MpgElement>> getStoreyPartitions() {
+		if (storeyPartitions == null) {
+			Map<String, List<MpgElement>> partitions = new LinkedHashMap<String, List<MpgElement>>();
+			storeys.stream().sorted((a, b) -> Double.compare(a.getElevation(), b.getElevation()))
+					.forEach(storey -> partitions.put(storey.getGlobalId(), new ArrayList<MpgElement>()));
+			for (MpgElement el : mpgElements) {
+				MpgObject o = el.getMpgObject();
+				String storeyId = o == null || o.getStoreyId() == null ? NO_STOREY : o.getStoreyId();
+				partitions.computeIfAbsent(storeyId, id -> new ArrayList<MpgElement>()).add(el);
+			}
+			List<MpgElement> withoutStorey = partitions.remove(NO_STOREY);
+			if (withoutStorey != null) {
+				partitions.put(NO_STOREY, withoutStorey);
+			}
+			partitions.replaceAll((id, elements) -> Collections.unmodifiableList(elements));
+			storeyPartitions = Collections.unmodifiableMap(partitions);
+		}
+		return storeyPartitions;
+	}
 	
 	@Override
 	public void addProductCard(NmdProductCard card) {
@@ -163,23 +478,32 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	}
 	
 	public void removeProductCard(Integer id) {
-		this.productCards.remove(id);
+		if (id != null) {
+			this.productCards.remove(id);
+		}
 	}
 	
 	@Override
 	public NmdProductCard getProductCard(Integer id) {
-		return this.productCards.getOrDefault(id, null);
+		return id == null ? null : this.productCards.get(id);
 	}
 	
+	/**
+	 * @return a copy of the product cards by product id
+	 */
 	@Override
 	public Map<Integer, NmdProductCard> getProductCards() {
-		return this.productCards;
+		return this.productCards.toMap();
 	}
 	
 	@Override
 	public List<NmdProductCard> getProductCards(Collection<Integer> ids) {
-		return this.productCards.entrySet().stream().filter(es -> ids.contains(es.getKey())).map(es -> es.getValue())
-				.collect(Collectors.toList());
+		return this.productCards.getAll(ids.stream().filter(id -> id != null).mapToInt(id -> id).toArray());
+	}
+
+	@Override
+	public List<NmdProductCard> getProductCards(int[] ids) {
+		return this.productCards.getAll(ids);
 	}
 
 	private List<MpgObject> getObjectsByProductType(String productType) {
@@ -193,19 +517,17 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 
 	@Override
 	public Optional<MpgObject> getObjectByGuid(String guidId) {
-		return mpgObjects.stream().filter(o -> guidId.equals(o.getGlobalId())).findFirst();
+		return Optional.ofNullable(guidId == null ? null : objectsByGuid.get(guidId));
 	}
 
 	@Override
 	public List<MpgObject> getObjectsByGuids(HashSet<String> guidIds) {
-		return mpgObjects.stream().filter(o -> guidIds.contains(o.getGlobalId())).collect(Collectors.toList());
+		return guidIds.stream().map(objectsByGuid::get).filter(o -> o != null).collect(Collectors.toList());
 	}
 
 	@Override
 	public MpgElement getElementByName(String name) {
-		Optional<MpgElement> element = getElements().stream().filter(e -> e.getIfcName().equalsIgnoreCase(name))
-				.findFirst();
-		return element.isPresent() ? element.get() : null;
+		return name == null ? null : elementsByName.get(name.toLowerCase());
 	}
 
 	@Override
@@ -219,13 +541,7 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 
 	@Override
 	public MpgElement getElementByObjectGuid(String guid) {
-		Optional<MpgElement> el = this.getElements().stream().filter(e -> e.getMpgObject().getGlobalId().equals(guid))
-				.findFirst();
-		if (el.isPresent()) {
-			return el.get();
-		} else {
-			return null;
-		}
+		return guid == null ? null : elementsByObjectGuid.get(guid);
 	}
 	
 	/**
@@ -234,17 +550,13 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	@JsonIgnore
 	@Override
 	public Map<String, List<MpgElement>> getElementGroups() {
-		return this.mpgElements.stream().collect(Collectors.groupingBy(el -> {
-			return el.getValueHash();
-		}));
+		return elementGroups.getGroups(this.mpgElements, false);
 	}
 	
 	@JsonIgnore
 	@Override
 	public Map<String, List<MpgElement>> getCleanedElementGroups() {
-		return this.mpgElements.stream().filter(el -> !el.getMpgObject().getObjectName().isEmpty()).collect(Collectors.groupingBy(el -> {
-			return el.getValueHash();
-		}));
+		return elementGroups.getGroups(this.mpgElements, true);
 	}
 
 	@Override
@@ -274,23 +586,48 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 
 		this.getObjects().forEach(o -> {
 			if (isDecomposedByrelationMap.containsKey(o.getGlobalId())) {
-				o.setParentId(isDecomposedByrelationMap.get(o.getGlobalId()));
+				o.setParentId(strings.intern(isDecomposedByrelationMap.get(o.getGlobalId())));
 			}
 		});
 
-		// create a list with parent ids linked to child objects
-		this.decomposedRelations = this.getObjects().stream().filter(o -> !StringUtils.isBlank(o.getParentId()))
-				.map(o -> new ImmutablePair<String, MpgObject>(o.getParentId(), o)).collect(Collectors.toList());
+		// index the children per parent and the parent per child
+		this.hierarchy = new MpgHierarchyIndex(this.getObjects());
+		this.objectChanged();
+		this.unmappedChildren = null;
+	}
+
+	/**
+	 * Set the storey of the objects based on the spatial containment. Objects that
+	 * are not contained in a storey themselves take the storey of the nearest
+	 * parent that is.
+	 * 
+	 * @param objectToStoreyMap hashMap with the storey guid per contained object
+	 *                          guid
+	 */
+	public void reloadSpatialContainment(Map<String, String> objectToStoreyMap) {
+		Map<String, MpgObject> objectsByGuid = new HashMap<String, MpgObject>();
+		this.getObjects().forEach(o -> {
+			objectsByGuid.putIfAbsent(o.getGlobalId(), o);
+			o.setStoreyId(strings.intern(objectToStoreyMap.get(o.getGlobalId())));
+		});
+
+		this.getObjects().stream().filter(o -> o.getStoreyId() == null).forEach(o -> {
+			Set<String> visited = new HashSet<String>();
+			MpgObject parent = o;
+			while (parent != null && parent.getStoreyId() == null && !StringUtils.isBlank(parent.getParentId())
+					&& visited.add(parent.getGlobalId())) {
+				parent = objectsByGuid.get(parent.getParentId());
+			}
+			if (parent != null) {
+				o.setStoreyId(parent.getStoreyId());
+			}
+		});
+		storeyPartitions = null;
 	}
 
 	@Override
 	public Stream<MpgObject> getChildren(String parentGuid) {
-		if (this.decomposedRelations != null) {
-			return this.decomposedRelations.parallelStream().filter(p -> p.getLeft() == parentGuid)
-					.map(p -> p.getRight());
-		} else {
-			return (new ArrayList<MpgObject>()).stream();
-		}
+		return Arrays.stream(hierarchy.getChildren(parentGuid));
 	}
 
 	/**
@@ -305,8 +642,26 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 
 	@Override
 	public boolean isIfcDataComplete() {
-		return getGuidsWithoutMaterial().getSize() == 0 && getGuidsWithoutVolume().getSize() == 0
-				&& getGuidsWithRedundantMaterials().getSize() == 0 && getGuidsWithUndefinedLayerMats().getSize() == 0;
+		return getValidationReport().isComplete();
+	}
+
+	/**
+	 * @return the validation of the objects in the store. The report is kept until
+	 *         objects are added or removed, the geometry, layers or materials of an
+	 *         MpgObjectImpl change or the decomposition relations are reloaded.
+	 *         Layers and materials can only be changed through the object itself,
+	 *         a geometry notifies the object it has been set on.
+	 */
+	@JsonIgnore
+	@Override
+	public MpgValidationReport getValidationReport() {
+		MpgValidationReport report = validationReport;
+		long modifications = modificationCount.get();
+		if (report == null || report.getModificationCount() != modifications) {
+			report = new MpgValidationReport(mpgObjects, hierarchy, modifications);
+			validationReport = report;
+		}
+		return report;
 	}
 
 	/**
@@ -319,6 +674,20 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	 */
 	@Override
 	public void toggleMappingDependencies(String globalId, boolean flag) {
+		if (togglingDependencies) {
+			// the elements changed by the outer toggle already include the dependencies
+			// of this element
+			return;
+		}
+		togglingDependencies = true;
+		try {
+			setMappingDependencies(globalId, flag);
+		} finally {
+			togglingDependencies = false;
+		}
+	}
+
+	private void setMappingDependencies(String globalId, boolean flag) {
 		List<MpgElement> children = this.allChildElementsByGuid(globalId);
 		List<MpgElement> parents = this.allParentElementsByGuid(globalId);
 
@@ -353,22 +722,64 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	}
 
 	/**
-	 * Recursively check whether all children are mapped.
+	 * Check whether all children are mapped. A child counts as mapped when its
+	 * element has a mapping or when all of its own children are mapped.
 	 * 
 	 * @param el MpgElement to check hierarchy of
 	 * @return a flag to indicate that all chidren have a mapping
 	 */
 	private boolean allChildrenAreMapped(MpgElement el) {
-		List<MpgElement> childrenOfElement = decomposedRelations.stream()
-				.filter(kvp -> kvp.getKey().equals(el.getMpgObject().getGlobalId()))
-				.map(v -> v.getValue().getGlobalId()).map(guid -> this.getElementByObjectGuid(guid))
-				.collect(Collectors.toList());
+		return getUnmappedChildren().getOrDefault(el.getMpgObject().getGlobalId(), -1) == 0;
+	}
 
-		if (childrenOfElement.size() > 0) {
-			return childrenOfElement.stream().allMatch(ce -> ce.hasMapping() || allChildrenAreMapped(ce));
-		} else {
-			return false;
+	/**
+	 * @return the number of unmapped children per parent guid, counted bottom up
+	 *         when not yet present. Objects on a cyclic relation do not count as
+	 *         mapped.
+	 */
+	private Map<String, Integer> getUnmappedChildren() {
+		if (unmappedChildren == null) {
+			Map<String, Integer> counts = new HashMap<String, Integer>();
+			Set<String> expanded = new HashSet<String>();
+			Deque<String> stack = new ArrayDeque<String>();
+			for (String root : hierarchy.getParents()) {
+				stack.push(root);
+				while (!stack.isEmpty()) {
+					String guid = stack.peek();
+					if (counts.containsKey(guid)) {
+						stack.pop();
+					} else if (expanded.add(guid)) {
+						for (MpgObject child : hierarchy.getChildren(guid)) {
+							String childGuid = child.getGlobalId();
+							if (hierarchy.hasChildren(childGuid) && !expanded.contains(childGuid)) {
+								stack.push(childGuid);
+							}
+						}
+					} else {
+						// all children have been counted
+						stack.pop();
+						int count = 0;
+						for (MpgObject child : hierarchy.getChildren(guid)) {
+							if (!isMapped(child.getGlobalId(), counts)) {
+								count++;
+							}
+						}
+						counts.put(guid, count);
+					}
+				}
+			}
+			unmappedChildren = counts;
 		}
+		return unmappedChildren;
+	}
+
+	/**
+	 * @return true when the element of the object has a mapping or when the object
+	 *         has children that are all mapped
+	 */
+	private boolean isMapped(String guid, Map<String, Integer> counts) {
+		MpgElement element = guid == null ? null : this.getElementByObjectGuid(guid);
+		return (element != null && element.hasMapping()) || (guid != null && counts.getOrDefault(guid, -1) == 0);
 	}
 	
 	/**
@@ -377,18 +788,11 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	 * 
 	 * @param globalId guid to start search
 	 * @return collection of elements that have the input guid as a (recursive)
-	 *         child
+	 *         child, nearest parent first
 	 */
 	private List<MpgElement> allParentElementsByGuid(String globalId) {
-		List<MpgElement> elements = new ArrayList<MpgElement>();
-		Optional<String> parentId = this.decomposedRelations.stream()
-				.filter(v -> v.getValue().getGlobalId().equals(globalId)).map(v -> v.getKey()).findFirst();
-		if (parentId.isPresent() && !parentId.get().isEmpty()) {
-			MpgElement parent = this.getElementByObjectGuid(parentId.get());
-			elements.add(parent);
-			elements.addAll(allParentElementsByGuid(parent.getMpgObject().getGlobalId()));
-		}
-		return elements;
+		return hierarchy.getAncestors(globalId).stream().map(this::getElementByObjectGuid)
+				.filter(el -> el != null).collect(Collectors.toList());
 	}
 
 	/**
@@ -399,14 +803,8 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	 * @return a list of elements that are a (recursive) child of the input guid
 	 */
 	private List<MpgElement> allChildElementsByGuid(String globalId) {
-		List<MpgElement> elements = this.mpgElements.stream()
-				.filter(el -> el.getMpgObject().getParentId().equals(globalId)).collect(Collectors.toList());
-		List<MpgElement> childEl = new ArrayList<MpgElement>();
-		elements.forEach(el -> {
-			childEl.addAll(allChildElementsByGuid(el.getMpgObject().getGlobalId()));
-		});
-		elements.addAll(childEl);
-		return elements;
+		return hierarchy.getDescendants(globalId).stream().map(o -> this.getElementByObjectGuid(o.getGlobalId()))
+				.filter(el -> el != null).collect(Collectors.toList());
 	}
 
 	@Override
@@ -421,58 +819,45 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	@Override
 	@JsonIgnore
 	public GuidCollection getGuidsWithoutMaterial() {
-		GuidCollection coll = new GuidCollection(this, "Object GUIDs that have missing materials");
-		coll.setCollection(mpgObjects.stream().filter(o -> hasUndefinedMaterials(o, false)).map(o -> o.getGlobalId())
-				.collect(Collectors.toList()));
-		return coll;
+		return new GuidCollection(this, "Object GUIDs that have missing materials",
+				getValidationReport().getGuidsWithUndefinedMaterials(false));
 	}
 
 	@Override
 	@JsonIgnore
 	public GuidCollection getGuidsWithoutMaterialAndWithoutFullDecomposedMaterials() {
-
-		GuidCollection coll = new GuidCollection(this,
-				"Object GUIDs without material and any of the decomposed objects without material");
-		coll.setCollection(mpgObjects.stream().filter(o -> hasUndefinedMaterials(o, true)).map(o -> o.getGlobalId())
-				.collect(Collectors.toList()));
-		return coll;
+		return new GuidCollection(this,
+				"Object GUIDs without material and any of the decomposed objects without material",
+				getValidationReport().getGuidsWithUndefinedMaterials(true));
 	}
 
 	@Override
 	@JsonIgnore
 	public GuidCollection getGuidsWithoutVolume() {
-		GuidCollection coll = new GuidCollection(this, "Object GUIDs that have missing volumes");
-		coll.setCollection(mpgObjects.stream().filter(o -> hasUndefinedVolume(o, false)).map(o -> o.getGlobalId())
-				.collect(Collectors.toList()));
-		return coll;
+		return new GuidCollection(this, "Object GUIDs that have missing volumes",
+				getValidationReport().getGuidsWithUndefinedVolume(false));
 	}
 
 	@Override
 	@JsonIgnore
 	public GuidCollection getGuidsWithoutVolumeAndWithoutFullDecomposedVolumes() {
-		GuidCollection coll = new GuidCollection(this,
-				"Object GUIDs without volume and any of the decomposed objects without volume");
-		coll.setCollection(mpgObjects.stream().filter(o -> hasUndefinedVolume(o, true)).map(o -> o.getGlobalId())
-				.collect(Collectors.toList()));
-		return coll;
+		return new GuidCollection(this,
+				"Object GUIDs without volume and any of the decomposed objects without volume",
+				getValidationReport().getGuidsWithUndefinedVolume(true));
 	}
 
 	@Override
 	@JsonIgnore
 	public GuidCollection getGuidsWithRedundantMaterials() {
-		GuidCollection coll = new GuidCollection(this, "Object GUIDs that cannot be linked to materials 1-on-1");
-		coll.setCollection(mpgObjects.stream().filter(o -> hasRedundantMaterials(o, false)).map(o -> o.getGlobalId())
-				.collect(Collectors.toList()));
-		return coll;
+		return new GuidCollection(this, "Object GUIDs that cannot be linked to materials 1-on-1",
+				getValidationReport().getGuidsWithRedundantMaterials(false));
 	}
 
 	@Override
 	@JsonIgnore
 	public GuidCollection getGuidsWithUndefinedLayerMats() {
-		GuidCollection coll = new GuidCollection(this, "Object GUIDsthat have undefined layers");
-		coll.setCollection(mpgObjects.stream().filter(o -> hasUndefinedLayers(o, false)).map(g -> g.getGlobalId())
-				.collect(Collectors.toList()));
-		return coll;
+		return new GuidCollection(this, "Object GUIDsthat have undefined layers",
+				getValidationReport().getGuidsWithUndefinedLayers(false));
 	}
 	
 	@Override
@@ -485,54 +870,27 @@ public class MpgObjectStoreImpl implements MpgObjectStore {
 	}
 	
 	/**
-	 * Recursive check method to validate whether a material or any of its children
-	 * have undefined materials
+	 * Check method to validate whether a material or any of its children
+	 * have undefined materials. Only objects without children are checked.
 	 */
 	@Override
 	public boolean hasUndefinedMaterials(MpgObject obj, boolean includeChildren) {
-		long numLayers = obj.getLayers().size();
-		boolean objIsUndefined = (numLayers + obj.getMaterialNamesBySource(null).size()) == 0;
-
-		// anyMatch returns false on an empty list, so if children should be included,
-		// but no children are present it will still return false
-		boolean hasChildren = getChildren(obj.getGlobalId()).count() > 0;
-		boolean childrenAreUndefined = includeChildren
-				&& getChildren(obj.getGlobalId()).anyMatch(o -> hasUndefinedMaterials(o, includeChildren));
-
-		return objIsUndefined && !hasChildren ? objIsUndefined : childrenAreUndefined;
+		return getValidationReport().hasUndefinedMaterials(obj, includeChildren);
 	}
 
 	@Override
 	public boolean hasUndefinedVolume(MpgObject obj, boolean includeChildren) {
-		boolean ownCheck = obj.getGeometry() == null || obj.getGeometry().getVolume() == 0;
-		boolean hasChildren = getChildren(obj.getGlobalId()).count() > 0;
-		boolean childCheck = includeChildren
-				&& getChildren(obj.getGlobalId()).anyMatch(o -> hasUndefinedVolume(o, includeChildren));
-
-		return ownCheck && !hasChildren ? true : childCheck;
+		return getValidationReport().hasUndefinedVolume(obj, includeChildren);
 	}
 
 	@Override
 	public boolean hasRedundantMaterials(MpgObject obj, boolean includeChildren) {
-		long numLayers = obj.getLayers().size();
-		boolean ownCheck = (numLayers == 0) && (obj.getMaterialNamesBySource(null).size() > 1)
-				|| obj.hasDuplicateMaterialNames();
-		boolean childCheck = includeChildren
-				&& getChildren(obj.getGlobalId()).anyMatch(o -> hasRedundantMaterials(o, includeChildren));
-		return ownCheck || childCheck;
+		return getValidationReport().hasRedundantMaterials(obj, includeChildren);
 	}
 
 	@Override
 	public boolean hasUndefinedLayers(MpgObject obj, boolean includeChildren) {
-		long numLayers = obj.getLayers().size();
-		long unresolvedLayers = obj.getLayers().stream()
-				.filter(l -> l.getMaterialName() == "" || l.getMaterialName() == null).collect(Collectors.toList())
-				.size();
-
-		boolean ownCheck = (numLayers > 0) && (unresolvedLayers > 0);
-		boolean childCheck = includeChildren
-				&& getChildren(obj.getGlobalId()).anyMatch(o -> hasUndefinedLayers(o, includeChildren));
-		return ownCheck || childCheck;
+		return getValidationReport().hasUndefinedLayers(obj, includeChildren);
 	}
 
 	public void resolveParentNLsfbCodes() {
@@ -0,0 +1,151 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.tno.bim.nmd.domain.NmdProductCard;
+
+/**
+ * Product cards by product id in an open addressing table with linear probing,
+ * such that card lookups do not box the ids or walk over all cards.
+ */
+final class MpgProductCardMap {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] keys;
+	// a slot is empty when its value is null
+	private NmdProductCard[] values;
+	private int size;
+
+	MpgProductCardMap() {
+		keys = new int[INITIAL_CAPACITY];
+		values = new NmdProductCard[INITIAL_CAPACITY];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param id product id
+	 * @return the card with the product id or null when not present
+	 */
+	NmdProductCard get(int id) {
+		int mask = keys.length - 1;
+		for (int i = slot(id, mask); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == id) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param ids product ids, possibly with duplicates
+	 * @return the distinct cards of the ids that are present, in order of the ids
+	 */
+	List<NmdProductCard> getAll(int[] ids) {
+		List<NmdProductCard> cards = new ArrayList<NmdProductCard>(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			NmdProductCard card = get(ids[i]);
+			if (card != null && !isDuplicate(ids, i)) {
+				cards.add(card);
+			}
+		}
+		return cards;
+	}
+
+	private static boolean isDuplicate(int[] ids, int index) {
+		// elements only have a few cards, a scan is cheaper than a set
+		for (int i = 0; i < index; i++) {
+			if (ids[i] == ids[index]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add a card when no card with the same product id is present
+	 */
+	void putIfAbsent(int id, NmdProductCard card) {
+		if (get(id) != null) {
+			return;
+		}
+		if (2 * (size + 1) > keys.length) {
+			resize(keys.length * 2);
+		}
+		insert(id, card);
+		size++;
+	}
+
+	void remove(int id) {
+		int mask = keys.length - 1;
+		int i = slot(id, mask);
+		while (values[i] != null && keys[i] != id) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] == null) {
+			return;
+		}
+		values[i] = null;
+		size--;
+
+		// shift back the following cards of the probe sequence that cannot be found
+		// anymore with the slot emptied
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int k = slot(keys[j], mask);
+			boolean inPlace = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+			if (!inPlace) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	/**
+	 * @return a copy of the cards by product id
+	 */
+	Map<Integer, NmdProductCard> toMap() {
+		Map<Integer, NmdProductCard> map = new HashMap<Integer, NmdProductCard>();
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != null) {
+				map.put(keys[i], values[i]);
+			}
+		}
+		return map;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		NmdProductCard[] oldValues = values;
+		keys = new int[capacity];
+		values = new NmdProductCard[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				insert(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private void insert(int id, NmdProductCard card) {
+		int mask = keys.length - 1;
+		int i = slot(id, mask);
+		while (values[i] != null) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = id;
+		values[i] = card;
+	}
+
+	private static int slot(int id, int mask) {
+		// spread consecutive ids over the table
+		int h = id * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
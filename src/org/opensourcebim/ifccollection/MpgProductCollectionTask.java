@@ -0,0 +1,114 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.bimserver.models.ifc2x3tc1.IfcProduct;
+
+/**
+ * Fork join task that collects a range of IfcProducts into a partial result.
+ * Ranges larger than the threshold are split in two halves that are merged in
+ * product order, such that the end result is equal to a sequential collection.
+ */
+class MpgProductCollectionTask extends RecursiveTask<MpgProductCollectionTask.ProductBatch> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final MpgIfcObjectCollector collector;
+	private final MpgCollectionContext context;
+	private final List<IfcProduct> products;
+	private final int start;
+	private final int end;
+	private final int threshold;
+
+	MpgProductCollectionTask(MpgIfcObjectCollector collector, MpgCollectionContext context,
+			List<IfcProduct> products, int start, int end, int threshold) {
+		this.collector = collector;
+		this.context = context;
+		this.products = products;
+		this.start = start;
+		this.end = end;
+		this.threshold = threshold;
+	}
+
+	@Override
+	protected ProductBatch compute() {
+		if (end - start <= threshold) {
+			ProductBatch batch = new ProductBatch();
+			for (int i = start; i < end; i++) {
+				collector.collectProduct(products.get(i), context, batch);
+			}
+			return batch;
+		}
+
+		int mid = start + (end - start) / 2;
+		MpgProductCollectionTask left = new MpgProductCollectionTask(collector, context, products, start,
+				mid, threshold);
+		MpgProductCollectionTask right = new MpgProductCollectionTask(collector, context, products, mid,
+				end, threshold);
+		left.fork();
+		ProductBatch rightBatch = right.compute();
+		ProductBatch leftBatch = left.join();
+		leftBatch.append(rightBatch);
+		return leftBatch;
+	}
+
+	/**
+	 * Partial object store filled by a single task. Elements are only created
+	 * when the batch is added to the actual store. The properties of the objects
+	 * are kept in a property table per task, such that tasks do not share any
+	 * state. The tables of joined batches are appended to the store table once.
+	 */
+	static class ProductBatch {
+		private final List<ImmutablePair<String, MpgObjectImpl>> objects = new ArrayList<>();
+		private final Map<String, String> childToParentMap = new LinkedHashMap<>();
+		private final Map<String, String> objectToStoreyMap = new LinkedHashMap<>();
+		private final List<MpgPropertyTable> propertyTables = new ArrayList<>();
+
+		ProductBatch() {
+			propertyTables.add(new MpgPropertyTable());
+		}
+
+		void addObject(String elementName, MpgObjectImpl mpgObject) {
+			objects.add(new ImmutablePair<String, MpgObjectImpl>(elementName, mpgObject));
+		}
+
+		List<ImmutablePair<String, MpgObjectImpl>> getObjects() {
+			return objects;
+		}
+
+		Map<String, String> getChildToParentMap() {
+			return childToParentMap;
+		}
+
+		Map<String, String> getObjectToStoreyMap() {
+			return objectToStoreyMap;
+		}
+
+		/**
+		 * @return the property table to add the objects of this task to
+		 */
+		MpgPropertyTable getPropertyTable() {
+			return propertyTables.get(propertyTables.size() - 1);
+		}
+
+		/**
+		 * @return the property tables of this batch and the batches appended to it,
+		 *         in object order
+		 */
+		List<MpgPropertyTable> getPropertyTables() {
+			return propertyTables;
+		}
+
+		void append(ProductBatch other) {
+			objects.addAll(other.objects);
+			propertyTables.addAll(other.propertyTables);
+			other.childToParentMap.forEach(childToParentMap::putIfAbsent);
+			other.objectToStoreyMap.forEach(objectToStoreyMap::putIfAbsent);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package org.opensourcebim.ifccollection;
+
+/**
+ * Collection metadata of a single IFC product type (EClass)
+ */
+final class MpgProductType {
+
+	private final String typeName;
+	private final boolean ignored;
+	private final boolean parseGeometry;
+	private final boolean parseMaterials;
+
+	MpgProductType(String typeName, boolean ignored, boolean parseGeometry, boolean parseMaterials) {
+		this.typeName = typeName;
+		this.ignored = ignored;
+		this.parseGeometry = parseGeometry;
+		this.parseMaterials = parseMaterials;
+	}
+
+	/**
+	 * @return IFC entity name of the type without any implementation suffix
+	 */
+	String getTypeName() {
+		return typeName;
+	}
+
+	/**
+	 * @return flag to indicate that products of this type are not relevant for the
+	 *         mpg calculations
+	 */
+	boolean isIgnored() {
+		return ignored;
+	}
+
+	boolean parseGeometry() {
+		return parseGeometry;
+	}
+
+	boolean parseMaterials() {
+		return parseMaterials;
+	}
+}
@@ -0,0 +1,81 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.emf.PackageMetaData;
+import org.bimserver.models.ifc2x3tc1.IfcProduct;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EPackage;
+
+/**
+ * Lookup table with the collection metadata of every product type in a model.
+ * The table is built once per model from the classifiers of the model package
+ * and indexed by classifier id. Products of which the EClass is not part of
+ * that package fall back to a lookup on their EClass or java class.
+ */
+class MpgProductTypeTable {
+
+	private final MpgCollectorSettings settings;
+	private final EClass[] classes;
+	private final MpgProductType[] types;
+	private final Map<Object, MpgProductType> otherTypes = new ConcurrentHashMap<>();
+
+	MpgProductTypeTable(IfcModelInterface ifcModel, MpgCollectorSettings settings) {
+		this.settings = settings;
+
+		PackageMetaData metaData = ifcModel.getPackageMetaData();
+		EPackage ePackage = metaData != null ? metaData.getEPackage() : null;
+		int size = 0;
+		if (ePackage != null) {
+			for (EClassifier classifier : ePackage.getEClassifiers()) {
+				size = Math.max(size, classifier.getClassifierID() + 1);
+			}
+		}
+
+		classes = new EClass[size];
+		types = new MpgProductType[size];
+		if (ePackage != null) {
+			for (EClassifier classifier : ePackage.getEClassifiers()) {
+				if (classifier instanceof EClass && classifier.getClassifierID() >= 0) {
+					classes[classifier.getClassifierID()] = (EClass) classifier;
+					types[classifier.getClassifierID()] = createType(classifier.getName());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param product product to get the metadata for
+	 * @return the collection metadata of the type of the product
+	 */
+	MpgProductType get(IfcProduct product) {
+		EClass eClass = product.eClass();
+		if (eClass != null) {
+			int id = eClass.getClassifierID();
+			if (id >= 0 && id < classes.length && classes[id] == eClass) {
+				return types[id];
+			}
+			return otherTypes.computeIfAbsent(eClass, c -> createType(eClass.getName()));
+		}
+		return otherTypes.computeIfAbsent(product.getClass(), c -> createType(getTypeName(product.getClass())));
+	}
+
+	private MpgProductType createType(String typeName) {
+		return new MpgProductType(typeName,
+				settings.getIgnoredProductTypes().contains(typeName),
+				!settings.isGeometryFreeCollection() && !settings.getProductTypesWithoutGeometry().contains(typeName),
+				!settings.getProductTypesWithoutMaterials().contains(typeName));
+	}
+
+	/**
+	 * @param productClass class of the product object
+	 * @return the class name without the implementation suffix of the EMF model
+	 */
+	static String getTypeName(Class<?> productClass) {
+		String name = productClass.getSimpleName();
+		return name.endsWith("Impl") ? name.substring(0, name.length() - 4) : name;
+	}
+}
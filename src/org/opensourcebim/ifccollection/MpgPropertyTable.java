@@ -0,0 +1,348 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Store wide storage of the properties of collected objects. Every object gets a
+ * row in the table and every property name a column. Property names are stored
+ * once and referred to by id, numeric values are stored in primitive arrays and
+ * string values are interned per table. Columns are sparse: they only hold the
+ * rows for which the property is present, ordered by row.
+ *
+ * A table is not thread safe. Parallel collections fill a table per batch and
+ * append the batch tables to the table of the store when the batches are
+ * joined.
+ */
+public class MpgPropertyTable {
+
+	private final Map<String, Integer> nameIds = new HashMap<>();
+	private final List<String> names = new ArrayList<>();
+	private final List<Column> columns = new ArrayList<>();
+	private final Map<Object, Object> values = new HashMap<>();
+	// view per row, moved along with the row when the table is appended
+	private final List<RowView> rows = new ArrayList<>();
+
+	/**
+	 * @return the id of a new and empty row
+	 */
+	public int addRow() {
+		rows.add(new RowView(this, rows.size()));
+		return rows.size() - 1;
+	}
+
+	public int getRowCount() {
+		return rows.size();
+	}
+
+	/**
+	 * @return the distinct property names in the table
+	 */
+	public List<String> getPropertyNames() {
+		return new ArrayList<>(names);
+	}
+
+	/**
+	 * @param row   row of an object in this table
+	 * @param name  name of the property
+	 * @param value value of the property. a null value removes the property
+	 */
+	public void put(int row, String name, Object value) {
+		if (value == null) {
+			remove(row, name);
+			return;
+		}
+		if (!(value instanceof Double)) {
+			value = values.computeIfAbsent(value, v -> v);
+		}
+		getOrAddColumn(name).put(row, value);
+	}
+
+	public Object get(int row, String name) {
+		Integer id = nameIds.get(name);
+		return id == null ? null : columns.get(id).get(row);
+	}
+
+	public boolean contains(int row, String name) {
+		Integer id = nameIds.get(name);
+		return id != null && columns.get(id).contains(row);
+	}
+
+	public Object remove(int row, String name) {
+		Integer id = nameIds.get(name);
+		return id == null ? null : columns.get(id).remove(row);
+	}
+
+	/**
+	 * @param row row to count the properties of
+	 * @return number of properties present in the row
+	 */
+	public int size(int row) {
+		int size = 0;
+		for (Column column : columns) {
+			if (column.contains(row)) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @param row row to copy
+	 * @return a copy of all properties in the row by name
+	 */
+	public Map<String, Object> getRow(int row) {
+		Map<String, Object> res = new HashMap<>();
+		for (int id = 0; id < columns.size(); id++) {
+			Object value = columns.get(id).get(row);
+			if (value != null) {
+				res.put(names.get(id), value);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Scan a single column for numeric values
+	 *
+	 * @param name name of the property
+	 * @return the numeric values of the property in row order. rows without the
+	 *         property or with a non numeric value are omitted
+	 */
+	public double[] getNumericValues(String name) {
+		Integer id = nameIds.get(name);
+		return id == null ? new double[0] : columns.get(id).numericValues();
+	}
+
+	/**
+	 * Move all rows of another table behind the rows of this table. Objects with
+	 * a row in the other table keep their properties, which are stored in this
+	 * table from then on. The other table should not be used afterwards.
+	 *
+	 * @param other table with rows to move
+	 * @return the row in this table of the first row of the other table
+	 */
+	public int append(MpgPropertyTable other) {
+		int offset = rows.size();
+		for (int id = 0; id < other.columns.size(); id++) {
+			getOrAddColumn(other.names.get(id)).append(other.columns.get(id), offset, values);
+		}
+		for (RowView view : other.rows) {
+			view.table = this;
+			view.row += offset;
+			rows.add(view);
+		}
+		return offset;
+	}
+
+	/**
+	 * @param row row of an object in this table
+	 * @return a map view on the properties in the row
+	 */
+	Map<String, Object> getRowView(int row) {
+		return rows.get(row);
+	}
+
+	private Column getOrAddColumn(String name) {
+		Integer id = nameIds.get(name);
+		if (id == null) {
+			id = names.size();
+			nameIds.put(name, id);
+			names.add(name);
+			columns.add(new Column());
+		}
+		return columns.get(id);
+	}
+
+	/**
+	 * Sparse column with the values of a single property. The rows that have a
+	 * value are marked in a bitset, such that absent rows are found without a
+	 * search. Numeric values are kept in a primitive array. Other values are kept
+	 * in an object array that is only allocated when the first non numeric value
+	 * is added.
+	 */
+	private static final class Column {
+		private final BitSet present = new BitSet();
+		private int[] rows = new int[4];
+		private double[] numbers = new double[4];
+		private Object[] objects = null;
+		private int size = 0;
+
+		boolean contains(int row) {
+			return present.get(row);
+		}
+
+		Object get(int row) {
+			return present.get(row) ? valueAt(indexOf(row)) : null;
+		}
+
+		void put(int row, Object value) {
+			int index;
+			if (present.get(row)) {
+				index = indexOf(row);
+			} else if (size == 0 || rows[size - 1] < row) {
+				// rows are filled in order during collection
+				index = size;
+				ensureCapacity(size + 1);
+				rows[index] = row;
+				size++;
+				present.set(row);
+			} else {
+				// a property added to an earlier row after collection
+				index = -indexOf(row) - 1;
+				ensureCapacity(size + 1);
+				System.arraycopy(rows, index, rows, index + 1, size - index);
+				System.arraycopy(numbers, index, numbers, index + 1, size - index);
+				if (objects != null) {
+					System.arraycopy(objects, index, objects, index + 1, size - index);
+				}
+				rows[index] = row;
+				size++;
+				present.set(row);
+			}
+
+			if (value instanceof Double) {
+				numbers[index] = (Double) value;
+				if (objects != null) {
+					objects[index] = null;
+				}
+			} else {
+				if (objects == null) {
+					objects = new Object[rows.length];
+				}
+				objects[index] = value;
+			}
+		}
+
+		Object remove(int row) {
+			if (!present.get(row)) {
+				return null;
+			}
+			int index = indexOf(row);
+			Object value = valueAt(index);
+			System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+			System.arraycopy(numbers, index + 1, numbers, index, size - index - 1);
+			if (objects != null) {
+				System.arraycopy(objects, index + 1, objects, index, size - index - 1);
+				objects[size - 1] = null;
+			}
+			size--;
+			present.clear(row);
+			return value;
+		}
+
+		/**
+		 * Add the values of a column of another table. All rows of the other
+		 * column follow the rows of this column once they are shifted.
+		 */
+		void append(Column other, int rowOffset, Map<Object, Object> values) {
+			ensureCapacity(size + other.size);
+			for (int i = 0; i < other.size; i++) {
+				int row = other.rows[i] + rowOffset;
+				rows[size + i] = row;
+				present.set(row);
+			}
+			System.arraycopy(other.numbers, 0, numbers, size, other.size);
+			if (other.objects != null) {
+				if (objects == null) {
+					objects = new Object[rows.length];
+				}
+				for (int i = 0; i < other.size; i++) {
+					Object value = other.objects[i];
+					objects[size + i] = value == null ? null : values.computeIfAbsent(value, v -> v);
+				}
+			}
+			size += other.size;
+		}
+
+		double[] numericValues() {
+			if (objects == null) {
+				return Arrays.copyOf(numbers, size);
+			}
+			double[] res = new double[size];
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (objects[i] == null) {
+					res[count++] = numbers[i];
+				}
+			}
+			return Arrays.copyOf(res, count);
+		}
+
+		private int indexOf(int row) {
+			return Arrays.binarySearch(rows, 0, size, row);
+		}
+
+		private Object valueAt(int index) {
+			if (objects != null && objects[index] != null) {
+				return objects[index];
+			}
+			return numbers[index];
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > rows.length) {
+				int newLength = Math.max(capacity, rows.length * 2);
+				rows = Arrays.copyOf(rows, newLength);
+				numbers = Arrays.copyOf(numbers, newLength);
+				if (objects != null) {
+					objects = Arrays.copyOf(objects, newLength);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Map view on a single row of the table. Lookups and updates go directly to
+	 * the table, iterating the entries works on a copy of the row. The view
+	 * follows its row when the table is appended to another table.
+	 */
+	private static final class RowView extends AbstractMap<String, Object> {
+		private MpgPropertyTable table;
+		private int row;
+
+		RowView(MpgPropertyTable table, int row) {
+			this.table = table;
+			this.row = row;
+		}
+
+		@Override
+		public Object get(Object key) {
+			return key instanceof String ? table.get(row, (String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String && table.contains(row, (String) key);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			Object old = table.get(row, key);
+			table.put(row, key, value);
+			return old;
+		}
+
+		@Override
+		public Object remove(Object key) {
+			return key instanceof String ? table.remove(row, (String) key) : null;
+		}
+
+		@Override
+		public int size() {
+			return table.size(row);
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return Collections.unmodifiableMap(table.getRow(row)).entrySet();
+		}
+	}
+}
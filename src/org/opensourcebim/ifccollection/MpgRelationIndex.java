@@ -0,0 +1,94 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+/**
+ * Result of a single pass over the property, type, material and classification
+ * relations of a model. Every relating object is resolved once and the result is
+ * shared by all objects it relates to, so products can be collected without
+ * walking their relations.
+ */
+class MpgRelationIndex {
+
+	private final Map<Long, List<List<ImmutablePair<String, Object>>>> typeProperties = new HashMap<>();
+	private final Map<Long, List<List<ImmutablePair<String, Object>>>> instanceProperties = new HashMap<>();
+	// oid and material source description of the types of an object
+	private final Map<Long, List<ImmutablePair<Long, String>>> types = new HashMap<>();
+	private final Map<Long, List<MpgMaterialAssociations>> materials = new HashMap<>();
+	private final Map<Long, String> nlsfbCodes = new HashMap<>();
+
+	void addTypeProperties(long objectId, List<ImmutablePair<String, Object>> properties) {
+		typeProperties.computeIfAbsent(objectId, id -> new ArrayList<>()).add(properties);
+	}
+
+	void addInstanceProperties(long objectId, List<ImmutablePair<String, Object>> properties) {
+		instanceProperties.computeIfAbsent(objectId, id -> new ArrayList<>()).add(properties);
+	}
+
+	/**
+	 * @param objectId       oid of the ifc object
+	 * @param typeId         oid of the type of the object
+	 * @param materialSource source description for the materials of the type, or
+	 *                       null to distinguish between direct and layer materials
+	 */
+	void addType(long objectId, long typeId, String materialSource) {
+		types.computeIfAbsent(objectId, id -> new ArrayList<>())
+				.add(new ImmutablePair<Long, String>(typeId, materialSource));
+	}
+
+	void addMaterials(long objectId, MpgMaterialAssociations associations) {
+		materials.computeIfAbsent(objectId, id -> new ArrayList<>()).add(associations);
+	}
+
+	void setNLsfbCode(long objectId, String code) {
+		nlsfbCodes.put(objectId, code);
+	}
+
+	/**
+	 * Add the properties of the types of the object and then those of its own
+	 * property sets, such that instance values take precedence.
+	 * 
+	 * @param objectId  oid of the ifc object
+	 * @param mpgObject object to add the properties to
+	 */
+	void addPropertiesTo(long objectId, MpgObjectImpl mpgObject) {
+		typeProperties.getOrDefault(objectId, Collections.emptyList())
+				.forEach(props -> props.forEach(p -> mpgObject.addProperty(p.getLeft(), p.getRight())));
+		instanceProperties.getOrDefault(objectId, Collections.emptyList())
+				.forEach(props -> props.forEach(p -> mpgObject.addProperty(p.getLeft(), p.getRight())));
+	}
+
+	/**
+	 * Add the materials that are directly associated with the object and those of
+	 * its types.
+	 * 
+	 * @param objectId  oid of the ifc object
+	 * @param mpgObject object to add the materials to, with its geometry already set
+	 */
+	void addMaterialsTo(long objectId, MpgObjectImpl mpgObject) {
+		getMaterials(objectId, null).addTo(mpgObject);
+		for (ImmutablePair<Long, String> type : types.getOrDefault(objectId, Collections.emptyList())) {
+			getMaterials(type.getLeft(), type.getRight()).addTo(mpgObject);
+		}
+	}
+
+	/**
+	 * @param objectId oid of the ifc object
+	 * @return the NLsfb code of the object or null when not classified
+	 */
+	String getNLsfbCode(long objectId) {
+		return nlsfbCodes.get(objectId);
+	}
+
+	private MpgMaterialAssociations getMaterials(long objectId, String materialSource) {
+		MpgMaterialAssociations res = new MpgMaterialAssociations(materialSource);
+		materials.getOrDefault(objectId, Collections.emptyList()).forEach(res::addAll);
+		return res;
+	}
+}
@@ -8,33 +8,35 @@ package org.opensourcebim.ifccollection;
  */
 public class MpgScalingOrientation {
 
-	private Double[] unitDims;
-	private Double[] scaleDims;
-	
-	public MpgScalingOrientation() {
-		
+	// orientations are shared by the objects of a geometry and can not be changed
+	private final Double[] unitDims;
+	private final Double[] scaleDims;
+
+	public MpgScalingOrientation(Double[] unitDims, Double[] scaleDims) {
+		this.unitDims = unitDims.clone();
+		this.scaleDims = scaleDims.clone();
 	}
 	
 	public MpgScalingOrientation(MpgScalingOrientation st, double scaleFactor) {
-		this.setUnitDims(applyScale(st.getUnitDims(), scaleFactor));
-		this.setScaleDims(applyScale(st.getScaleDims(), scaleFactor));
+		this.unitDims = applyScale(st.unitDims, scaleFactor);
+		this.scaleDims = applyScale(st.scaleDims, scaleFactor);
 	}
 
+	/**
+	 * @return the dimensions the product is defined in. The array is shared and
+	 *         must be treated as read only.
+	 */
 	public Double[] getUnitDims() {
 		return unitDims;
 	}
 
-	public void setUnitDims(Double[] unitDims) {
-		this.unitDims = unitDims;
-	}
-
+	/**
+	 * @return the dimensions the product is scaled over. The array is shared and
+	 *         must be treated as read only.
+	 */
 	public Double[] getScaleDims() {
 		return scaleDims;
 	}
-
-	public void setScaleDims(Double[] scaleDims) {
-		this.scaleDims = scaleDims;
-	}
 	
 	private Double[] applyScale(Double[] in, Double factor) {
 		Double[] out = in.clone();
@@ -0,0 +1,151 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Single entity instance of an IFC STEP file. The attributes are only parsed
+ * from the underlying file buffer when they are first requested.
+ *
+ * Attribute values are represented as: null for unset ($) and derived (*)
+ * values, Long for integers, Double for reals, String for strings,
+ * {@link Reference} for entity references, {@link Enumeration} for enumeration
+ * values, {@link TypedValue} for typed values such as IFCLABEL('x') and List for
+ * aggregates.
+ */
+public class MpgStepEntity {
+
+	private final long id;
+	private final String type;
+	private final MpgStepReader reader;
+	private final int start;
+	private final int end;
+	private List<Object> attributes = null;
+
+	MpgStepEntity(long id, String type, MpgStepReader reader, int start, int end) {
+		this.id = id;
+		this.type = type;
+		this.reader = reader;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @return the instance number (#id) of the entity
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return the upper case entity type as in the file, e.g. IFCWALL
+	 */
+	public String getType() {
+		return type;
+	}
+
+	public synchronized List<Object> getAttributes() {
+		if (attributes == null) {
+			attributes = Collections.unmodifiableList(reader.parseAttributes(start, end));
+		}
+		return attributes;
+	}
+
+	public Object get(int index) {
+		List<Object> attrs = getAttributes();
+		return index < attrs.size() ? attrs.get(index) : null;
+	}
+
+	public String getString(int index) {
+		Object value = get(index);
+		return value instanceof String ? (String) value : null;
+	}
+
+	public Double getDouble(int index) {
+		Object value = get(index);
+		return value instanceof Number ? ((Number) value).doubleValue() : null;
+	}
+
+	public String getEnumeration(int index) {
+		Object value = get(index);
+		return value instanceof Enumeration ? ((Enumeration) value).getValue() : null;
+	}
+
+	/**
+	 * @param index attribute index
+	 * @return the referenced entity id or -1 when the attribute is not a reference
+	 */
+	public long getReference(int index) {
+		Object value = get(index);
+		return value instanceof Reference ? ((Reference) value).getId() : -1;
+	}
+
+	/**
+	 * @param index attribute index
+	 * @return the entity ids in an aggregate of references
+	 */
+	public List<Long> getReferences(int index) {
+		List<Long> res = new ArrayList<>();
+		Object value = get(index);
+		if (value instanceof List) {
+			for (Object item : (List<?>) value) {
+				if (item instanceof Reference) {
+					res.add(((Reference) item).getId());
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Reference to another entity instance (#id)
+	 */
+	public static final class Reference {
+		private final long id;
+
+		Reference(long id) {
+			this.id = id;
+		}
+
+		public long getId() {
+			return id;
+		}
+	}
+
+	/**
+	 * Enumeration or boolean value (.VALUE.)
+	 */
+	public static final class Enumeration {
+		private final String value;
+
+		Enumeration(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	/**
+	 * Value of a defined type, e.g. IFCLABEL('x')
+	 */
+	public static final class TypedValue {
+		private final String type;
+		private final Object value;
+
+		TypedValue(String type, Object value) {
+			this.type = type;
+			this.value = value;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,392 @@
+package org.opensourcebim.ifccollection;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+
+/**
+ * Headless alternative to the MpgIfcObjectCollector that reads an IFC2x3 STEP
+ * file directly with the MpgStepReader instead of a BIMserver model. Only the
+ * products and the relations, property sets, quantities, materials and
+ * classifications that the collector uses are read. There is no geometry in this
+ * mode: volumes and areas are taken from the property and quantity sets.
+ */
+public class MpgStepObjectCollector {
+
+	// upper case STEP names of product and type entities mapped to their schema name
+	private static final Map<String, String> PRODUCT_TYPES = new HashMap<>();
+	private static final Map<String, String> TYPE_OBJECTS = new HashMap<>();
+	private static final Set<String> TYPE_PRODUCTS = new HashSet<>();
+
+	private static final List<String> RELATION_TYPES = Arrays.asList("IFCRELAGGREGATES", "IFCRELNESTS",
+			"IFCRELDEFINESBYPROPERTIES", "IFCRELDEFINESBYTYPE", "IFCRELASSOCIATESMATERIAL",
+			"IFCRELASSOCIATESCLASSIFICATION", "IFCRELSPACEBOUNDARY");
+	private static final List<String> DATA_TYPES = Arrays.asList("IFCPROPERTYSET", "IFCPROPERTYSINGLEVALUE",
+			"IFCELEMENTQUANTITY", "IFCQUANTITYVOLUME", "IFCQUANTITYAREA", "IFCQUANTITYLENGTH", "IFCMATERIAL",
+			"IFCMATERIALLIST", "IFCMATERIALLAYER", "IFCMATERIALLAYERSET", "IFCMATERIALLAYERSETUSAGE",
+			"IFCCLASSIFICATIONREFERENCE", "IFCCLASSIFICATION");
+
+	static {
+		Ifc2x3tc1Package ifcPackage = Ifc2x3tc1Package.eINSTANCE;
+		for (EClassifier classifier : ifcPackage.getEClassifiers()) {
+			if (classifier instanceof EClass) {
+				EClass eClass = (EClass) classifier;
+				String stepName = eClass.getName().toUpperCase();
+				if (ifcPackage.getIfcProduct().isSuperTypeOf(eClass)) {
+					PRODUCT_TYPES.put(stepName, eClass.getName());
+				} else if (ifcPackage.getIfcTypeObject().isSuperTypeOf(eClass)) {
+					TYPE_OBJECTS.put(stepName, eClass.getName());
+					if (ifcPackage.getIfcTypeProduct().isSuperTypeOf(eClass)) {
+						TYPE_PRODUCTS.add(stepName);
+					}
+				}
+			}
+		}
+	}
+
+	private final MpgCollectorSettings settings;
+
+	public MpgStepObjectCollector() {
+		this(new MpgCollectorSettings());
+	}
+
+	public MpgStepObjectCollector(MpgCollectorSettings settings) {
+		this.settings = settings;
+	}
+
+	/**
+	 * @return the upper case STEP entity types the collector needs from a file
+	 */
+	public static Set<String> getRequiredEntityTypes() {
+		Set<String> types = new HashSet<>();
+		types.addAll(PRODUCT_TYPES.keySet());
+		types.addAll(TYPE_OBJECTS.keySet());
+		types.addAll(RELATION_TYPES);
+		types.addAll(DATA_TYPES);
+		return types;
+	}
+
+	/**
+	 * Read an ifc file and collect the objects for the mpg calculations
+	 *
+	 * @param ifcFile location of an IFC2x3 STEP file
+	 * @param pId     project id
+	 * @return the filled object store
+	 * @throws IOException when the file cannot be read
+	 */
+	public MpgObjectStore collectIfcModelObjects(Path ifcFile, String pId) throws IOException {
+		return collectIfcModelObjects(MpgStepReader.read(ifcFile, getRequiredEntityTypes()), pId);
+	}
+
+	/**
+	 * Collect the objects for the mpg calculations from the entities of a STEP file
+	 *
+	 * @param stepReader reader with at least the required entity types
+	 * @param pId        project id
+	 * @return the filled object store
+	 */
+	public MpgObjectStore collectIfcModelObjects(MpgStepReader stepReader, String pId) {
+		return new StepCollection(stepReader).collect(pId);
+	}
+
+	/**
+	 * State of a single collection. A new store and new caches are used for every
+	 * file, such that the collector can be shared between threads.
+	 */
+	private final class StepCollection {
+
+		private final MpgStepReader reader;
+		private final MpgObjectStoreImpl objectStore = new MpgObjectStoreImpl();
+		private final Map<Long, List<ImmutablePair<String, Object>>> propertySets = new HashMap<>();
+		private final Map<Long, MpgMaterialLayerSet> layerSets = new HashMap<>();
+
+		StepCollection(MpgStepReader reader) {
+			this.reader = reader;
+			objectStore.setUnits(MpgGeometryParser.getVolumeUnit(),
+					MpgGeometryParser.getAreaUnit(),
+					MpgGeometryParser.GetLengthUnit());
+		}
+
+		MpgObjectStore collect(String pId) {
+			objectStore.setProjectId(pId);
+
+			MpgRelationIndex index = createRelationIndex();
+			Map<String, String> childToParentMap = getChildToParentMap();
+
+			for (MpgStepEntity product : reader.getAll()) {
+				String typeName = PRODUCT_TYPES.get(product.getType());
+				if (typeName != null && !settings.getIgnoredProductTypes().contains(typeName)) {
+					collectProduct(product, typeName, index);
+				}
+			}
+
+			collectSpaces(index);
+
+			objectStore.reloadParentChildRelationShips(childToParentMap);
+			objectStore.resolveParentNLsfbCodes();
+
+			return objectStore;
+		}
+
+		private void collectProduct(MpgStepEntity product, String typeName, MpgRelationIndex index) {
+			String guid = product.getString(0);
+			if (StringUtils.isBlank(guid)) {
+				return;
+			}
+
+			String name = product.getString(2);
+			MpgObjectImpl mpgObject = new MpgObjectImpl(product.getId(), guid, name, typeName, "");
+			mpgObject.setPropertyTable(objectStore.getPropertyTable());
+
+			index.addPropertiesTo(product.getId(), mpgObject);
+			mpgObject.addTag(MpgInfoTagType.geometrySourceType, "Geometry from property set");
+			mpgObject.setGeometry(MpgIfcObjectCollector.getGeometryFromPropertySet(mpgObject));
+
+			if (!settings.getProductTypesWithoutMaterials().contains(typeName)) {
+				index.addMaterialsTo(product.getId(), mpgObject);
+			}
+			String nlsfbCode = index.getNLsfbCode(product.getId());
+			if (nlsfbCode != null) {
+				mpgObject.setNLsfbCode(nlsfbCode);
+			}
+
+			MpgElement newMpgElement = objectStore.addElement(name + "-" + guid);
+			objectStore.addObject(mpgObject);
+			newMpgElement.setMpgObject(mpgObject);
+		}
+
+		/**
+		 * Add the internal spaces that are not decomposed in other spaces, with the
+		 * volume and floor area from their quantity sets. The same spaces are
+		 * omitted as in the floor area parsing of the MpgGeometryParser.
+		 */
+		private void collectSpaces(MpgRelationIndex index) {
+			List<MpgStepEntity> allSpaces = reader.getAll("IFCSPACE");
+			if (allSpaces.isEmpty()) {
+				objectStore.getSpaces().add(new MpgSpaceImpl("no floor area found", 0.0, -1));
+				return;
+			}
+
+			Set<Long> boundedSpaces = new HashSet<>();
+			reader.getAll("IFCRELSPACEBOUNDARY").forEach(rel -> boundedSpaces.add(rel.getReference(4)));
+			Set<Long> decomposedObjects = new HashSet<>();
+			for (String relationType : Arrays.asList("IFCRELAGGREGATES", "IFCRELNESTS")) {
+				reader.getAll(relationType).forEach(rel -> decomposedObjects.add(rel.getReference(4)));
+			}
+
+			for (MpgStepEntity space : allSpaces) {
+				if (!boundedSpaces.contains(space.getId()) || decomposedObjects.contains(space.getId())) {
+					continue;
+				}
+
+				MpgObjectImpl properties = new MpgObjectImpl();
+				index.addPropertiesTo(space.getId(), properties);
+				MpgGeometry geom = MpgIfcObjectCollector.getSpaceGeometryFromPropertySet(properties);
+				objectStore.getSpaces()
+						.add(new MpgSpaceImpl(space.getString(0), geom.getVolume(), geom.getFloorArea()));
+			}
+		}
+
+		/**
+		 * @return the guid of the parent product by the guid of the child product
+		 */
+		private Map<String, String> getChildToParentMap() {
+			Map<String, String> childToParentMap = new LinkedHashMap<>();
+			for (String relationType : Arrays.asList("IFCRELAGGREGATES", "IFCRELNESTS")) {
+				for (MpgStepEntity rel : reader.getAll(relationType)) {
+					MpgStepEntity parent = reader.get(rel.getReference(4));
+					if (parent == null || !PRODUCT_TYPES.containsKey(parent.getType())) {
+						continue;
+					}
+					for (Long childId : rel.getReferences(5)) {
+						// only the relations of collected products, as in the product pass
+						MpgStepEntity child = reader.get(childId);
+						String childType = child != null ? PRODUCT_TYPES.get(child.getType()) : null;
+						if (childType != null && !settings.getIgnoredProductTypes().contains(childType)
+								&& !StringUtils.isBlank(child.getString(0))) {
+							childToParentMap.putIfAbsent(child.getString(0), parent.getString(0));
+						}
+					}
+				}
+			}
+			return childToParentMap;
+		}
+
+		/**
+		 * Resolve every property, type, material and classification relation once.
+		 */
+		private MpgRelationIndex createRelationIndex() {
+			MpgRelationIndex index = new MpgRelationIndex();
+
+			for (MpgStepEntity rel : reader.getAll("IFCRELDEFINESBYTYPE")) {
+				MpgStepEntity type = reader.get(rel.getReference(5));
+				if (type == null) {
+					continue;
+				}
+				List<ImmutablePair<String, Object>> properties = new ArrayList<>();
+				type.getReferences(5).forEach(id -> properties.addAll(getPropertySet(id)));
+				String materialSource = TYPE_PRODUCTS.contains(type.getType()) ? "type" : null;
+				for (Long objectId : rel.getReferences(4)) {
+					index.addType(objectId, type.getId(), materialSource);
+					index.addTypeProperties(objectId, properties);
+				}
+			}
+
+			for (MpgStepEntity rel : reader.getAll("IFCRELDEFINESBYPROPERTIES")) {
+				List<ImmutablePair<String, Object>> properties = getPropertySet(rel.getReference(5));
+				if (!properties.isEmpty()) {
+					rel.getReferences(4).forEach(objectId -> index.addInstanceProperties(objectId, properties));
+				}
+			}
+
+			for (MpgStepEntity rel : reader.getAll("IFCRELASSOCIATESMATERIAL")) {
+				MpgMaterialAssociations materials = new MpgMaterialAssociations(null);
+				addRelatingMaterial(reader.get(rel.getReference(5)), materials);
+				rel.getReferences(4).forEach(objectId -> index.addMaterials(objectId, materials));
+			}
+
+			Map<Long, Boolean> nlsfbSources = new HashMap<>();
+			for (MpgStepEntity rel : reader.getAll("IFCRELASSOCIATESCLASSIFICATION")) {
+				MpgStepEntity ref = reader.get(rel.getReference(5));
+				if (ref == null || !"IFCCLASSIFICATIONREFERENCE".equals(ref.getType())) {
+					continue;
+				}
+				boolean isNLsfb = nlsfbSources.computeIfAbsent(ref.getReference(3), id -> {
+					MpgStepEntity source = reader.get(id);
+					String sourceName = source != null ? source.getString(3) : null;
+					return sourceName != null && sourceName.toLowerCase().contains("sfb");
+				});
+				String code = ref.getString(1);
+				if (isNLsfb && code != null) {
+					rel.getReferences(4).forEach(objectId -> index.setNLsfbCode(objectId, code));
+				}
+			}
+
+			return index;
+		}
+
+		/**
+		 * @param id entity id of an IfcPropertySet or IfcElementQuantity
+		 * @return the single value properties and simple quantities with lower case
+		 *         names
+		 */
+		private List<ImmutablePair<String, Object>> getPropertySet(long id) {
+			return propertySets.computeIfAbsent(id, setId -> {
+				List<ImmutablePair<String, Object>> res = new ArrayList<>();
+				MpgStepEntity propertySet = reader.get(setId);
+				if (propertySet == null) {
+					return res;
+				}
+
+				if ("IFCPROPERTYSET".equals(propertySet.getType())) {
+					for (Long propId : propertySet.getReferences(4)) {
+						MpgStepEntity prop = reader.get(propId);
+						if (prop != null && "IFCPROPERTYSINGLEVALUE".equals(prop.getType())) {
+							Object value = getPropertyValue(prop.get(2));
+							if (prop.getString(0) != null && value != null) {
+								res.add(new ImmutablePair<String, Object>(prop.getString(0).toLowerCase(), value));
+							}
+						}
+					}
+				} else if ("IFCELEMENTQUANTITY".equals(propertySet.getType())) {
+					for (Long quantityId : propertySet.getReferences(5)) {
+						MpgStepEntity quantity = reader.get(quantityId);
+						if (quantity != null && quantity.getString(0) != null && quantity.getDouble(3) != null) {
+							res.add(new ImmutablePair<String, Object>(quantity.getString(0).toLowerCase(),
+									quantity.getDouble(3)));
+						}
+					}
+				}
+				return res;
+			});
+		}
+
+		/**
+		 * Convert a nominal value to the same value the MpgIfcObjectCollector would
+		 * store for boolean, label and identifier values.
+		 */
+		private Object getPropertyValue(Object nominalValue) {
+			if (!(nominalValue instanceof MpgStepEntity.TypedValue)) {
+				return null;
+			}
+			MpgStepEntity.TypedValue typedValue = (MpgStepEntity.TypedValue) nominalValue;
+			switch (typedValue.getType()) {
+			case "IFCBOOLEAN":
+				if (typedValue.getValue() instanceof MpgStepEntity.Enumeration) {
+					String value = ((MpgStepEntity.Enumeration) typedValue.getValue()).getValue();
+					return "T".equals(value) ? "TRUE" : "F".equals(value) ? "FALSE" : "UNDEFINED";
+				}
+				return null;
+			case "IFCLABEL":
+			case "IFCIDENTIFIER":
+				return typedValue.getValue() instanceof String ? typedValue.getValue() : null;
+			default:
+				return null;
+			}
+		}
+
+		private void addRelatingMaterial(MpgStepEntity relatingMaterial, MpgMaterialAssociations materials) {
+			if (relatingMaterial == null) {
+				return;
+			}
+			switch (relatingMaterial.getType()) {
+			case "IFCMATERIAL":
+				materials.addMaterial(Long.toString(relatingMaterial.getId()), relatingMaterial.getString(0));
+				break;
+			case "IFCMATERIALLIST":
+				for (Long materialId : relatingMaterial.getReferences(0)) {
+					MpgStepEntity material = reader.get(materialId);
+					if (material != null) {
+						materials.addMaterial(Long.toString(material.getId()), material.getString(0));
+					}
+				}
+				break;
+			case "IFCMATERIALLAYERSETUSAGE":
+				addRelatingMaterial(reader.get(relatingMaterial.getReference(0)), materials);
+				break;
+			case "IFCMATERIALLAYERSET":
+			case "IFCMATERIALLAYER":
+				materials.addLayers(getMaterialLayerSet(relatingMaterial));
+				break;
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * @param layers an IfcMaterialLayerSet or single IfcMaterialLayer entity
+		 * @return the resolved layers, shared by all products that use them
+		 */
+		private MpgMaterialLayerSet getMaterialLayerSet(MpgStepEntity layers) {
+			return layerSets.computeIfAbsent(layers.getId(), id -> {
+				List<Long> layerIds = "IFCMATERIALLAYER".equals(layers.getType()) ? Arrays.asList(layers.getId())
+						: layers.getReferences(0);
+				String[] names = new String[layerIds.size()];
+				String[] ids = new String[layerIds.size()];
+				double[] thicknesses = new double[layerIds.size()];
+				for (int i = 0; i < layerIds.size(); i++) {
+					MpgStepEntity layer = reader.get(layerIds.get(i));
+					MpgStepEntity material = layer != null ? reader.get(layer.getReference(0)) : null;
+					names[i] = material != null ? material.getString(0) : "";
+					ids[i] = material != null ? Long.toString(material.getId()) : "";
+					Double thickness = layer != null ? layer.getDouble(1) : null;
+					thicknesses[i] = thickness != null ? thickness : 0.0;
+				}
+				return new MpgMaterialLayerSet(names, ids, thicknesses);
+			});
+		}
+	}
+}
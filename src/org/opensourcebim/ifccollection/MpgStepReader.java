@@ -0,0 +1,474 @@
+package org.opensourcebim.ifccollection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader for IFC STEP (.ifc) files that does not require a BIMserver.
+ * The file is memory mapped and scanned once. Only entities of the requested
+ * types are kept; their attributes are parsed from the mapped buffer on first
+ * access. Entity types are matched on the raw bytes, so skipped entities do not
+ * cause any allocations.
+ */
+public class MpgStepReader {
+
+	private final ByteBuffer buffer;
+	private final Map<Integer, List<String>> requestedTypes;
+	private final Map<Long, MpgStepEntity> entities = new HashMap<>();
+	private final List<MpgStepEntity> entitiesInFileOrder = new ArrayList<>();
+	private final Map<String, List<MpgStepEntity>> entitiesByType = new LinkedHashMap<>();
+
+	/**
+	 * @param buffer buffer with the contents of a STEP file
+	 * @param types  upper case entity types to read, e.g. IFCWALL. null reads all
+	 *               entities
+	 */
+	public MpgStepReader(ByteBuffer buffer, Collection<String> types) {
+		this.buffer = buffer;
+		if (types != null) {
+			this.requestedTypes = new HashMap<>();
+			types.forEach(t -> requestedTypes.computeIfAbsent(t.hashCode(), h -> new ArrayList<>()).add(t));
+		} else {
+			this.requestedTypes = null;
+		}
+		scan();
+	}
+
+	/**
+	 * Memory map a STEP file and read the entities of the requested types
+	 *
+	 * @param path  location of the .ifc file
+	 * @param types upper case entity types to read. null reads all entities
+	 * @return reader with the found entities
+	 * @throws IOException when the file cannot be read or is larger than 2GB
+	 */
+	public static MpgStepReader read(Path path, Collection<String> types) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("ifc file " + path + " is too large to be mapped");
+			}
+			return new MpgStepReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), types);
+		}
+	}
+
+	public MpgStepEntity get(long id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * @param type upper case entity type
+	 * @return the entities of exactly this type in file order
+	 */
+	public List<MpgStepEntity> getAll(String type) {
+		return entitiesByType.getOrDefault(type, Collections.emptyList());
+	}
+
+	/**
+	 * @return all read entities in file order
+	 */
+	public List<MpgStepEntity> getAll() {
+		return Collections.unmodifiableList(entitiesInFileOrder);
+	}
+
+	public int size() {
+		return entities.size();
+	}
+
+	/**
+	 * Scan the data section of the file for entity instances: #id=TYPE(...);
+	 */
+	private void scan() {
+		int limit = buffer.limit();
+		int pos = indexOf("DATA;", 0);
+		pos = pos < 0 ? limit : pos + 5;
+
+		while (pos < limit) {
+			pos = skipWhitespace(pos, limit);
+			if (pos >= limit) {
+				break;
+			}
+			byte c = buffer.get(pos);
+			if (c != '#') {
+				// ENDSEC; or anything unexpected: stop at the end of the data section
+				if (startsWith("ENDSEC", pos)) {
+					break;
+				}
+				pos = skipInstance(pos, limit);
+				continue;
+			}
+
+			pos++;
+			long id = 0;
+			while (pos < limit && isDigit(buffer.get(pos))) {
+				id = id * 10 + (buffer.get(pos) - '0');
+				pos++;
+			}
+			pos = skipWhitespace(pos, limit);
+			if (pos >= limit || buffer.get(pos) != '=') {
+				pos = skipInstance(pos, limit);
+				continue;
+			}
+			pos = skipWhitespace(pos + 1, limit);
+
+			int typeStart = pos;
+			while (pos < limit && isNameChar(buffer.get(pos))) {
+				pos++;
+			}
+			int typeEnd = pos;
+			pos = skipWhitespace(pos, limit);
+
+			// complex instances (#1=(A()B());) are not supported and skipped
+			if (typeStart == typeEnd || pos >= limit || buffer.get(pos) != '(') {
+				pos = skipInstance(pos, limit);
+				continue;
+			}
+
+			int argsEnd = findClosingParenthesis(pos, limit);
+			String type = matchType(typeStart, typeEnd);
+			if (type != null) {
+				MpgStepEntity entity = new MpgStepEntity(id, type, this, pos + 1, argsEnd);
+				entities.put(id, entity);
+				entitiesInFileOrder.add(entity);
+				entitiesByType.computeIfAbsent(type, t -> new ArrayList<>()).add(entity);
+			}
+			pos = skipInstance(argsEnd, limit);
+		}
+	}
+
+	/**
+	 * @return the requested type that matches the bytes, or null when the type is
+	 *         not requested
+	 */
+	private String matchType(int start, int end) {
+		if (requestedTypes == null) {
+			return decode(start, end);
+		}
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + (buffer.get(i) & 0xff);
+		}
+		List<String> candidates = requestedTypes.get(hash);
+		if (candidates != null) {
+			for (String candidate : candidates) {
+				if (candidate.length() == end - start && startsWith(candidate, start)) {
+					return candidate;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parse the attributes of an entity
+	 *
+	 * @param start position after the opening parenthesis
+	 * @param end   position of the closing parenthesis
+	 * @return the parsed attribute values
+	 */
+	List<Object> parseAttributes(int start, int end) {
+		List<Object> res = new ArrayList<>();
+		int[] pos = { start };
+		while (true) {
+			pos[0] = skipWhitespace(pos[0], end);
+			if (pos[0] >= end) {
+				break;
+			}
+			res.add(parseValue(pos, end));
+			pos[0] = skipWhitespace(pos[0], end);
+			if (pos[0] < end && buffer.get(pos[0]) == ',') {
+				pos[0]++;
+			} else {
+				break;
+			}
+		}
+		return res;
+	}
+
+	private Object parseValue(int[] pos, int end) {
+		int p = pos[0];
+		byte c = buffer.get(p);
+		switch (c) {
+		case '$':
+		case '*':
+			pos[0] = p + 1;
+			return null;
+		case '#':
+			p++;
+			long id = 0;
+			while (p < end && isDigit(buffer.get(p))) {
+				id = id * 10 + (buffer.get(p) - '0');
+				p++;
+			}
+			pos[0] = p;
+			return new MpgStepEntity.Reference(id);
+		case '\'':
+		case '"':
+			return parseString(pos, end, c);
+		case '.':
+			int enumEnd = p + 1;
+			while (enumEnd < end && buffer.get(enumEnd) != '.') {
+				enumEnd++;
+			}
+			pos[0] = enumEnd + 1;
+			return new MpgStepEntity.Enumeration(decode(p + 1, enumEnd));
+		case '(':
+			List<Object> list = new ArrayList<>();
+			pos[0] = skipWhitespace(p + 1, end);
+			while (pos[0] < end && buffer.get(pos[0]) != ')') {
+				int valueStart = pos[0];
+				Object value = parseValue(pos, end);
+				if (pos[0] == valueStart) {
+					// a byte that does not start a value: skip the rest of the attributes
+					pos[0] = end;
+					break;
+				}
+				list.add(value);
+				pos[0] = skipWhitespace(pos[0], end);
+				if (pos[0] < end && buffer.get(pos[0]) == ',') {
+					pos[0] = skipWhitespace(pos[0] + 1, end);
+				}
+			}
+			pos[0]++;
+			return list;
+		default:
+			if (isNameStart(c)) {
+				int nameEnd = p;
+				while (nameEnd < end && isNameChar(buffer.get(nameEnd))) {
+					nameEnd++;
+				}
+				String type = decode(p, nameEnd);
+				pos[0] = skipWhitespace(nameEnd, end) + 1;
+				pos[0] = skipWhitespace(pos[0], end);
+				Object value = parseValue(pos, end);
+				pos[0] = skipWhitespace(pos[0], end) + 1;
+				return new MpgStepEntity.TypedValue(type, value);
+			}
+			return parseNumber(pos, end);
+		}
+	}
+
+	private Object parseNumber(int[] pos, int end) {
+		int p = pos[0];
+		boolean real = false;
+		while (p < end) {
+			byte c = buffer.get(p);
+			if (c == '.' || c == 'E' || c == 'e') {
+				real = true;
+			} else if (!isDigit(c) && c != '-' && c != '+') {
+				break;
+			}
+			p++;
+		}
+		String number = decode(pos[0], p);
+		pos[0] = p;
+		try {
+			return real ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parse a string literal and decode the STEP escape sequences for quotes,
+	 * backslashes and \X\, \X2\ and \S\ encoded characters. Other characters are
+	 * decoded as UTF-8. Escape sequences with invalid hex digits are kept as they
+	 * are.
+	 */
+	private String parseString(int[] pos, int end, byte quote) {
+		StringBuilder sb = new StringBuilder();
+		int p = pos[0] + 1;
+		// start of the characters that are not yet appended
+		int run = p;
+		while (p < end) {
+			byte c = buffer.get(p);
+			if (c != quote && (c != '\\' || p + 1 >= end)) {
+				p++;
+				continue;
+			}
+			sb.append(decode(run, p, StandardCharsets.UTF_8));
+			if (c == quote) {
+				if (p + 1 < end && buffer.get(p + 1) == quote) {
+					sb.append((char) quote);
+					p += 2;
+					run = p;
+					continue;
+				}
+				run = ++p;
+				break;
+			}
+			if (startsWith("\\\\", p)) {
+				sb.append('\\');
+				p += 2;
+			} else if (startsWith("\\X2\\", p)) {
+				p += 4;
+				while (p + 4 <= end && !startsWith("\\X0\\", p)) {
+					appendHex(sb, p, p, p + 4);
+					p += 4;
+				}
+				p += 4;
+			} else if (startsWith("\\X\\", p) && p + 5 <= end) {
+				appendHex(sb, p, p + 3, p + 5);
+				p += 5;
+			} else if (startsWith("\\S\\", p) && p + 4 <= end) {
+				sb.append((char) ((buffer.get(p + 3) & 0xff) + 128));
+				p += 4;
+			} else {
+				// not an escape sequence, keep the backslash
+				run = p++;
+				continue;
+			}
+			run = p;
+		}
+		if (run < p) {
+			sb.append(decode(run, Math.min(p, end), StandardCharsets.UTF_8));
+		}
+		pos[0] = p;
+		return sb.toString();
+	}
+
+	/**
+	 * Append the character with the hex code between start and end, or the raw
+	 * characters from rawStart when the code is not a valid hex number
+	 */
+	private void appendHex(StringBuilder sb, int rawStart, int start, int end) {
+		try {
+			sb.append((char) Integer.parseInt(decode(start, end), 16));
+		} catch (NumberFormatException e) {
+			sb.append(decode(rawStart, end));
+		}
+	}
+
+	/**
+	 * @return the position of the parenthesis that closes the one at the start
+	 *         position, skipping any string literals
+	 */
+	private int findClosingParenthesis(int start, int limit) {
+		int depth = 0;
+		int p = start;
+		while (p < limit) {
+			byte c = buffer.get(p);
+			if (c == '\'' || c == '"') {
+				p = skipString(p, limit, c);
+				continue;
+			}
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+				if (depth == 0) {
+					return p;
+				}
+			}
+			p++;
+		}
+		return limit;
+	}
+
+	/**
+	 * @return the position after the semicolon that ends the current instance
+	 */
+	private int skipInstance(int pos, int limit) {
+		int p = pos;
+		while (p < limit) {
+			byte c = buffer.get(p);
+			if (c == '\'' || c == '"') {
+				p = skipString(p, limit, c);
+				continue;
+			}
+			p++;
+			if (c == ';') {
+				break;
+			}
+		}
+		return p;
+	}
+
+	private int skipString(int start, int limit, byte quote) {
+		int p = start + 1;
+		while (p < limit) {
+			if (buffer.get(p) == quote) {
+				if (p + 1 < limit && buffer.get(p + 1) == quote) {
+					p += 2;
+					continue;
+				}
+				return p + 1;
+			}
+			p++;
+		}
+		return limit;
+	}
+
+	private int skipWhitespace(int pos, int limit) {
+		int p = pos;
+		while (p < limit) {
+			byte c = buffer.get(p);
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+				p++;
+			} else if (c == '/' && p + 1 < limit && buffer.get(p + 1) == '*') {
+				int close = indexOf("*/", p + 2);
+				p = close < 0 ? limit : close + 2;
+			} else {
+				break;
+			}
+		}
+		return p;
+	}
+
+	private int indexOf(String value, int from) {
+		int last = buffer.limit() - value.length();
+		for (int p = from; p <= last; p++) {
+			if (startsWith(value, p)) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	private boolean startsWith(String value, int pos) {
+		if (pos + value.length() > buffer.limit()) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (buffer.get(pos + i) != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String decode(int start, int end) {
+		return decode(start, end, StandardCharsets.ISO_8859_1);
+	}
+
+	private String decode(int start, int end, Charset charset) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, charset);
+	}
+
+	private static boolean isDigit(byte c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isNameStart(byte c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
+	}
+
+	private static boolean isNameChar(byte c) {
+		return isNameStart(c) || isDigit(c);
+	}
+}
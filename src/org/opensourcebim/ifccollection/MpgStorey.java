@@ -0,0 +1,42 @@
+package org.opensourcebim.ifccollection;
+
+/**
+ * Building storey of a model. Objects contained in the storey, or decomposing
+ * an object that is, form the storey partition of the object store.
+ */
+public class MpgStorey {
+
+	private final String globalId;
+	private final String name;
+	private final double elevation;
+	private final String buildingId;
+
+	/**
+	 * @param globalId   guid of the storey
+	 * @param name       name of the storey
+	 * @param elevation  elevation of the storey in model units
+	 * @param buildingId guid of the building the storey is part of, if known
+	 */
+	public MpgStorey(String globalId, String name, double elevation, String buildingId) {
+		this.globalId = globalId;
+		this.name = name == null ? "undefined name" : name;
+		this.elevation = elevation;
+		this.buildingId = buildingId;
+	}
+
+	public String getGlobalId() {
+		return globalId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getElevation() {
+		return elevation;
+	}
+
+	public String getBuildingId() {
+		return buildingId;
+	}
+}
@@ -0,0 +1,129 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dictionary of the strings of a single store. Names, types, materials and
+ * source labels repeat for many objects and are stored only once. Strings that
+ * went through the dictionary can be compared on identity, and on an int key
+ * when case and surrounding whitespace should be ignored. Lookups of other
+ * strings give the same answers, but do not add them to the dictionary.
+ */
+public final class MpgStringDictionary {
+
+	private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+	// lower case instance per string of the dictionary, determined on first request
+	private final ConcurrentHashMap<String, String> lowerCaseByString = new ConcurrentHashMap<>();
+	// key id per string of the dictionary, equal for strings that only differ in case or whitespace
+	private final ConcurrentHashMap<String, Integer> keyIdByString = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Integer> keyIds = new ConcurrentHashMap<>();
+	private final AtomicInteger nextKeyId = new AtomicInteger();
+
+	private final LongAdder duplicates = new LongAdder();
+
+	public MpgStringDictionary() {
+		// material source labels are compared on identity with these literals
+		for (String label : new String[] { "direct", "layer", "type", "P_Set" }) {
+			strings.put(label, label);
+		}
+	}
+
+	/**
+	 * @param value any string, may be null
+	 * @return the instance of the dictionary that equals the value
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		String existing = strings.putIfAbsent(value, value);
+		if (existing == null) {
+			return value;
+		}
+		if (existing != value) {
+			duplicates.increment();
+		}
+		return existing;
+	}
+
+	/**
+	 * @param value any string, not null
+	 * @return the value in lower case. For strings of the dictionary the lower
+	 *         case instance is kept, such that repeated calls do not allocate.
+	 */
+	public String toLowerCase(String value) {
+		String lower = lowerCaseByString.get(value);
+		if (lower == null) {
+			lower = value.toLowerCase();
+			if (strings.containsKey(value)) {
+				lower = intern(lower);
+				lowerCaseByString.putIfAbsent(value, lower);
+			}
+		}
+		return lower;
+	}
+
+	/**
+	 * @param value any string, may be null
+	 * @return an id that is equal for strings that only differ in case or
+	 *         surrounding whitespace. -1 for null and for strings of which no
+	 *         string in the dictionary has the same key.
+	 */
+	public int getKeyId(String value) {
+		if (value == null) {
+			return -1;
+		}
+		Integer id = keyIdByString.get(value);
+		if (id != null) {
+			return id;
+		}
+		String key = value.toLowerCase().trim();
+		if (!strings.containsKey(value)) {
+			id = keyIds.get(key);
+			return id == null ? -1 : id;
+		}
+		id = keyIds.computeIfAbsent(key, k -> nextKeyId.getAndIncrement());
+		keyIdByString.putIfAbsent(value, id);
+		return id;
+	}
+
+	/**
+	 * @return true when the strings only differ in case or surrounding whitespace
+	 */
+	public boolean isSameKey(String first, String second) {
+		if (first == second) {
+			return true;
+		}
+		if (first == null || second == null) {
+			return false;
+		}
+		int firstId = getKeyId(first);
+		int secondId = getKeyId(second);
+		if (firstId >= 0 && secondId >= 0) {
+			return firstId == secondId;
+		}
+		// at least one of the strings is not known to the dictionary
+		return first.trim().equalsIgnoreCase(second.trim());
+	}
+
+	/**
+	 * @return the number of distinct strings
+	 */
+	public int size() {
+		return strings.size();
+	}
+
+	/**
+	 * @return the number of strings replaced by an earlier equal instance
+	 */
+	public long getDuplicateCount() {
+		return duplicates.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d distinct strings, %d duplicates replaced", size(), getDuplicateCount());
+	}
+}
@@ -0,0 +1,272 @@
+package org.opensourcebim.ifccollection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.function.Consumer;
+
+import org.bimserver.models.geometry.Buffer;
+import org.bimserver.models.geometry.GeometryData;
+import org.bimserver.models.geometry.GeometryInfo;
+
+/**
+ * Volume, surface area along z and oriented bounding box of a triangulated
+ * geometry. The vertex and index data of the GeometryData object are read
+ * through little endian buffer views on the original byte arrays, so nothing is
+ * copied. Values are in the length unit of the vertices.
+ */
+final class MpgTriangleGeometry {
+
+	private static final int JACOBI_SWEEPS = 16;
+
+	private int triangleCount = 0;
+	private double volume = 0.0;
+	private double surfaceAreaAlongZ = 0.0;
+	private final double[] dimensions = new double[3];
+
+	private MpgTriangleGeometry() {
+	}
+
+	int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * @return the enclosed volume, assuming a closed and consistently oriented mesh
+	 */
+	double getVolume() {
+		return volume;
+	}
+
+	/**
+	 * @return the area of the upward facing triangles projected on the xy plane
+	 */
+	double getSurfaceAreaAlongZ() {
+		return surfaceAreaAlongZ;
+	}
+
+	/**
+	 * @return the sizes of the oriented bounding box along its three axes
+	 */
+	double[] getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * @param geometry the geometry info of a product
+	 * @return the triangle geometry or null when the geometry has no triangle data
+	 */
+	static MpgTriangleGeometry fromGeometry(GeometryInfo geometry) {
+		GeometryData data = geometry.getData();
+		if (data == null || !hasData(data.getIndices()) || !hasData(data.getVertices())) {
+			return null;
+		}
+		return compute(getIndices(data), getVertices(data), getTransformation(geometry));
+	}
+
+	/**
+	 * Pass the transformed corner points of every triangle of a geometry to a
+	 * consumer. The array with the x, y and z of the three points is reused for
+	 * every triangle.
+	 *
+	 * @param geometry the geometry info of a product
+	 * @param consumer consumer of the nine triangle coordinates
+	 * @return the number of triangles
+	 */
+	static int forEachTriangle(GeometryInfo geometry, Consumer<double[]> consumer) {
+		GeometryData data = geometry.getData();
+		if (data == null || !hasData(data.getIndices()) || !hasData(data.getVertices())) {
+			return 0;
+		}
+		return forEachTriangle(getIndices(data), getVertices(data), getTransformation(geometry), consumer);
+	}
+
+	private static IntBuffer getIndices(GeometryData data) {
+		return ByteBuffer.wrap(data.getIndices().getData()).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	private static FloatBuffer getVertices(GeometryData data) {
+		return ByteBuffer.wrap(data.getVertices().getData()).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+	}
+
+	/**
+	 * @return the 4x4 column major transformation matrix of the geometry or null
+	 *         when the geometry is not transformed
+	 */
+	private static DoubleBuffer getTransformation(GeometryInfo geometry) {
+		byte[] transformation = geometry.getTransformation();
+		if (transformation == null || transformation.length < 16 * Double.BYTES) {
+			return null;
+		}
+		return ByteBuffer.wrap(transformation).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+	}
+
+	/**
+	 * Compute the volume, area along z and vertex covariance in one pass over the
+	 * triangles and the extents of the bounding box along the principal axes of
+	 * the covariance in a pass over the vertices.
+	 *
+	 * @param indices   three vertex indices per triangle
+	 * @param vertices  x, y and z per vertex
+	 * @param transform optional column major transformation matrix
+	 * @return the triangle geometry
+	 */
+	static MpgTriangleGeometry compute(IntBuffer indices, FloatBuffer vertices, DoubleBuffer transform) {
+		MpgTriangleGeometry res = new MpgTriangleGeometry();
+		int vertexCount = vertices.limit() / 3;
+		if (vertexCount == 0) {
+			return res;
+		}
+
+		double[] sums = new double[2];
+		res.triangleCount = forEachTriangle(indices, vertices, transform, p -> {
+			// signed volume of the tetrahedron with the origin
+			sums[0] += p[0] * (p[4] * p[8] - p[5] * p[7]) - p[1] * (p[3] * p[8] - p[5] * p[6])
+					+ p[2] * (p[3] * p[7] - p[4] * p[6]);
+
+			// z component of the cross product is twice the projected area
+			double crossZ = (p[3] - p[0]) * (p[7] - p[1]) - (p[4] - p[1]) * (p[6] - p[0]);
+			if (crossZ > 0) {
+				sums[1] += crossZ;
+			}
+		});
+		res.volume = Math.abs(sums[0]) / 6.0;
+		res.surfaceAreaAlongZ = sums[1] / 2.0;
+
+		// covariance of the vertices
+		double[] mean = new double[3];
+		double[] cov = new double[9];
+		double[] v = new double[3];
+		for (int i = 0; i < vertexCount; i++) {
+			vertex(vertices, transform, i, v, 0);
+			mean[0] += v[0];
+			mean[1] += v[1];
+			mean[2] += v[2];
+			for (int r = 0; r < 3; r++) {
+				for (int c = r; c < 3; c++) {
+					cov[3 * r + c] += v[r] * v[c];
+				}
+			}
+		}
+		for (int r = 0; r < 3; r++) {
+			mean[r] /= vertexCount;
+		}
+		for (int r = 0; r < 3; r++) {
+			for (int c = r; c < 3; c++) {
+				cov[3 * r + c] = cov[3 * r + c] / vertexCount - mean[r] * mean[c];
+				cov[3 * c + r] = cov[3 * r + c];
+			}
+		}
+		double[] axes = eigenVectors(cov);
+
+		// extents along the principal axes
+		double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int i = 0; i < vertexCount; i++) {
+			vertex(vertices, transform, i, v, 0);
+			for (int a = 0; a < 3; a++) {
+				double d = v[0] * axes[a] + v[1] * axes[3 + a] + v[2] * axes[6 + a];
+				min[a] = Math.min(min[a], d);
+				max[a] = Math.max(max[a], d);
+			}
+		}
+		for (int a = 0; a < 3; a++) {
+			res.dimensions[a] = max[a] - min[a];
+		}
+		return res;
+	}
+
+	private static int forEachTriangle(IntBuffer indices, FloatBuffer vertices, DoubleBuffer transform,
+			Consumer<double[]> consumer) {
+		int vertexCount = vertices.limit() / 3;
+		int triangles = indices.limit() / 3;
+		int count = 0;
+		double[] p = new double[9];
+		for (int t = 0; t < triangles; t++) {
+			int i0 = indices.get(3 * t);
+			int i1 = indices.get(3 * t + 1);
+			int i2 = indices.get(3 * t + 2);
+			if (i0 < 0 || i1 < 0 || i2 < 0 || i0 >= vertexCount || i1 >= vertexCount || i2 >= vertexCount) {
+				continue;
+			}
+			vertex(vertices, transform, i0, p, 0);
+			vertex(vertices, transform, i1, p, 3);
+			vertex(vertices, transform, i2, p, 6);
+			consumer.accept(p);
+			count++;
+		}
+		return count;
+	}
+
+	private static void vertex(FloatBuffer vertices, DoubleBuffer m, int index, double[] target, int offset) {
+		double x = vertices.get(3 * index);
+		double y = vertices.get(3 * index + 1);
+		double z = vertices.get(3 * index + 2);
+		if (m == null) {
+			target[offset] = x;
+			target[offset + 1] = y;
+			target[offset + 2] = z;
+		} else {
+			target[offset] = m.get(0) * x + m.get(4) * y + m.get(8) * z + m.get(12);
+			target[offset + 1] = m.get(1) * x + m.get(5) * y + m.get(9) * z + m.get(13);
+			target[offset + 2] = m.get(2) * x + m.get(6) * y + m.get(10) * z + m.get(14);
+		}
+	}
+
+	/**
+	 * Cyclic Jacobi eigenvalue method for a symmetric 3x3 matrix.
+	 *
+	 * @param matrix row major symmetric matrix, overwritten during the iteration
+	 * @return row major matrix with the eigenvectors as columns
+	 */
+	static double[] eigenVectors(double[] matrix) {
+		double[] a = matrix;
+		double[] vectors = { 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+		for (int sweep = 0; sweep < JACOBI_SWEEPS; sweep++) {
+			double offDiagonal = Math.abs(a[1]) + Math.abs(a[2]) + Math.abs(a[5]);
+			if (offDiagonal < 1e-15 * (Math.abs(a[0]) + Math.abs(a[4]) + Math.abs(a[8]) + 1e-300)) {
+				break;
+			}
+			for (int p = 0; p < 2; p++) {
+				for (int q = p + 1; q < 3; q++) {
+					double apq = a[3 * p + q];
+					if (apq == 0.0) {
+						continue;
+					}
+					double theta = (a[3 * q + q] - a[3 * p + p]) / (2 * apq);
+					double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+					if (theta == 0.0) {
+						t = 1.0;
+					}
+					double c = 1 / Math.sqrt(t * t + 1);
+					double s = t * c;
+					for (int k = 0; k < 3; k++) {
+						double akp = a[3 * k + p];
+						double akq = a[3 * k + q];
+						a[3 * k + p] = c * akp - s * akq;
+						a[3 * k + q] = s * akp + c * akq;
+					}
+					for (int k = 0; k < 3; k++) {
+						double apk = a[3 * p + k];
+						double aqk = a[3 * q + k];
+						a[3 * p + k] = c * apk - s * aqk;
+						a[3 * q + k] = s * apk + c * aqk;
+					}
+					for (int k = 0; k < 3; k++) {
+						double vkp = vectors[3 * k + p];
+						double vkq = vectors[3 * k + q];
+						vectors[3 * k + p] = c * vkp - s * vkq;
+						vectors[3 * k + q] = s * vkp + c * vkq;
+					}
+				}
+			}
+		}
+		return vectors;
+	}
+
+	private static boolean hasData(Buffer buffer) {
+		return buffer != null && buffer.getData() != null && buffer.getData().length > 0;
+	}
+}
@@ -0,0 +1,86 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.bimserver.models.ifc2x3tc1.IfcTypeObject;
+
+/**
+ * Cache of the properties and materials that are retrieved from IfcTypeObjects.
+ * A type is usually shared by many products, so its property sets and material
+ * associations are only resolved on the first occurrence and replayed for every
+ * following product. Entries are keyed by the oid of the type and are only
+ * valid within a single model.
+ */
+public class MpgTypeObjectCache {
+
+	private final Map<Long, List<ImmutablePair<String, Object>>> properties = new ConcurrentHashMap<>();
+	private final Map<Long, MpgMaterialAssociations> materials = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @return number of type lookups that could be served from the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of type lookups that required the type to be resolved
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of types for which data is cached
+	 */
+	public int size() {
+		return Math.max(properties.size(), materials.size());
+	}
+
+	/**
+	 * Add the properties of a type to an object, resolving them only when the type
+	 * has not been seen before.
+	 */
+	void addProperties(IfcTypeObject type, MpgObjectImpl target,
+			Function<IfcTypeObject, List<ImmutablePair<String, Object>>> resolver) {
+		getProperties(type, resolver).forEach(p -> target.addProperty(p.getLeft(), p.getRight()));
+	}
+
+	/**
+	 * Get the properties of a type, resolving them only when the type has not been
+	 * seen before.
+	 */
+	List<ImmutablePair<String, Object>> getProperties(IfcTypeObject type,
+			Function<IfcTypeObject, List<ImmutablePair<String, Object>>> resolver) {
+		return lookup(properties, type, resolver);
+	}
+
+	/**
+	 * Add the materials of a type to an object, resolving them only when the type
+	 * has not been seen before.
+	 */
+	void addMaterials(IfcTypeObject type, MpgObjectImpl target,
+			Function<IfcTypeObject, MpgMaterialAssociations> resolver) {
+		lookup(materials, type, resolver).addTo(target);
+	}
+
+	private <T> T lookup(Map<Long, T> cache, IfcTypeObject type, Function<IfcTypeObject, T> resolver) {
+		T value = cache.get(type.getOid());
+		if (value != null) {
+			hits.incrementAndGet();
+			return value;
+		}
+
+		misses.incrementAndGet();
+		value = resolver.apply(type);
+		T existing = cache.putIfAbsent(type.getOid(), value);
+		return existing != null ? existing : value;
+	}
+}
@@ -0,0 +1,251 @@
+package org.opensourcebim.ifccollection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Validation of the ifc data of the objects in a store. The issues of every
+ * object, of the object itself and including its (recursive) children, are
+ * determined in a single bottom up pass over the decomposition hierarchy. The
+ * store keeps the report until the store changes.
+ */
+public class MpgValidationReport {
+
+	// issue flags of an object
+	private static final int UNDEFINED_MATERIALS = 1;
+	private static final int UNDEFINED_VOLUME = 1 << 1;
+	private static final int REDUNDANT_MATERIALS = 1 << 2;
+	private static final int UNDEFINED_LAYERS = 1 << 3;
+	private static final int NUMBER_OF_ISSUES = 4;
+
+	private final MpgHierarchyIndex hierarchy;
+	private final int objectCount;
+	// modification count of the store at the time the objects were validated
+	private final long modificationCount;
+
+	private final Map<MpgObject, Integer> ownFlags = new IdentityHashMap<MpgObject, Integer>();
+	// combined flags of all (recursive) children per parent guid
+	private final Map<String, Integer> descendantFlags = new HashMap<String, Integer>();
+
+	// guids with an issue per flag bit, of the object itself and including children
+	private final List<Set<String>> ownGuids = new ArrayList<Set<String>>();
+	private final List<Set<String>> subtreeGuids = new ArrayList<Set<String>>();
+
+	/**
+	 * @param objects           objects of the store
+	 * @param hierarchy         decomposition hierarchy of the objects
+	 * @param modificationCount modification count of the store before the
+	 *                          objects are validated
+	 */
+	MpgValidationReport(List<MpgObject> objects, MpgHierarchyIndex hierarchy, long modificationCount) {
+		this.hierarchy = hierarchy;
+		this.objectCount = objects.size();
+		this.modificationCount = modificationCount;
+
+		for (MpgObject o : objects) {
+			ownFlags.put(o, determineOwnFlags(o));
+		}
+		for (MpgObject o : objects) {
+			resolveDescendantFlags(o.getGlobalId());
+		}
+
+		for (int i = 0; i < NUMBER_OF_ISSUES; i++) {
+			ownGuids.add(new LinkedHashSet<String>());
+			subtreeGuids.add(new LinkedHashSet<String>());
+		}
+		for (MpgObject o : objects) {
+			int own = getOwnFlags(o);
+			int subtree = own | getDescendantFlags(o.getGlobalId());
+			for (int i = 0; i < NUMBER_OF_ISSUES; i++) {
+				if ((own & (1 << i)) != 0) {
+					ownGuids.get(i).add(o.getGlobalId());
+				}
+				if ((subtree & (1 << i)) != 0) {
+					subtreeGuids.get(i).add(o.getGlobalId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of objects that have been validated
+	 */
+	public int getObjectCount() {
+		return objectCount;
+	}
+
+	long getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * @return true when none of the objects has an issue of its own
+	 */
+	public boolean isComplete() {
+		return ownGuids.stream().allMatch(Set::isEmpty);
+	}
+
+	/**
+	 * @param guid guid of an object
+	 * @return true when other objects decompose the object
+	 */
+	public boolean isDecomposed(String guid) {
+		return hierarchy.hasChildren(guid);
+	}
+
+	/**
+	 * Objects without materials and without children to resolve the materials
+	 */
+	public boolean hasUndefinedMaterials(MpgObject obj, boolean includeChildren) {
+		return hasIssue(obj, UNDEFINED_MATERIALS, includeChildren);
+	}
+
+	/**
+	 * Objects without volume and without children to resolve the volume
+	 */
+	public boolean hasUndefinedVolume(MpgObject obj, boolean includeChildren) {
+		return hasIssue(obj, UNDEFINED_VOLUME, includeChildren);
+	}
+
+	/**
+	 * Objects with materials that cannot be linked 1-on-1
+	 */
+	public boolean hasRedundantMaterials(MpgObject obj, boolean includeChildren) {
+		return hasIssue(obj, REDUNDANT_MATERIALS, includeChildren);
+	}
+
+	/**
+	 * Objects with layers without a material
+	 */
+	public boolean hasUndefinedLayers(MpgObject obj, boolean includeChildren) {
+		return hasIssue(obj, UNDEFINED_LAYERS, includeChildren);
+	}
+
+	public Set<String> getGuidsWithUndefinedMaterials(boolean includeChildren) {
+		return getGuids(UNDEFINED_MATERIALS, includeChildren);
+	}
+
+	public Set<String> getGuidsWithUndefinedVolume(boolean includeChildren) {
+		return getGuids(UNDEFINED_VOLUME, includeChildren);
+	}
+
+	public Set<String> getGuidsWithRedundantMaterials(boolean includeChildren) {
+		return getGuids(REDUNDANT_MATERIALS, includeChildren);
+	}
+
+	public Set<String> getGuidsWithUndefinedLayers(boolean includeChildren) {
+		return getGuids(UNDEFINED_LAYERS, includeChildren);
+	}
+
+	private boolean hasIssue(MpgObject obj, int flag, boolean includeChildren) {
+		int flags = getOwnFlags(obj);
+		if (includeChildren) {
+			flags |= getDescendantFlags(obj.getGlobalId());
+		}
+		return (flags & flag) != 0;
+	}
+
+	private Set<String> getGuids(int flag, boolean includeChildren) {
+		int index = Integer.numberOfTrailingZeros(flag);
+		return Collections.unmodifiableSet(includeChildren ? subtreeGuids.get(index) : ownGuids.get(index));
+	}
+
+	private int getOwnFlags(MpgObject obj) {
+		Integer flags = ownFlags.get(obj);
+		// objects that are not part of the store are validated on request
+		return flags == null ? determineOwnFlags(obj) : flags;
+	}
+
+	private int getDescendantFlags(String guid) {
+		return guid == null ? 0 : descendantFlags.getOrDefault(guid, 0);
+	}
+
+	/**
+	 * Determine the issues of an object itself. Materials and volumes only have to
+	 * be present on objects without children.
+	 */
+	private int determineOwnFlags(MpgObject o) {
+		int flags = 0;
+		boolean isLeaf = !hierarchy.hasChildren(o.getGlobalId());
+		int numLayers = o.getLayers().size();
+		int numMaterials = o.getMaterialNamesBySource(null).size();
+
+		if (isLeaf && numLayers + numMaterials == 0) {
+			flags |= UNDEFINED_MATERIALS;
+		}
+		if (isLeaf && (o.getGeometry() == null || o.getGeometry().getVolume() == null
+				|| o.getGeometry().getVolume() == 0)) {
+			flags |= UNDEFINED_VOLUME;
+		}
+		if ((numLayers == 0 && numMaterials > 1) || o.hasDuplicateMaterialNames()) {
+			flags |= REDUNDANT_MATERIALS;
+		}
+		if (o.getLayers().stream().anyMatch(l -> l.getMaterialName() == null || l.getMaterialName().isEmpty())) {
+			flags |= UNDEFINED_LAYERS;
+		}
+		return flags;
+	}
+
+	/**
+	 * Combine the flags of all children of a parent and its not yet resolved
+	 * descendant parents, children first. A child on a cyclic relation is still in
+	 * progress when its parent is combined, in that case the flags are combined
+	 * again until they no longer change.
+	 */
+	private void resolveDescendantFlags(String root) {
+		if (!hierarchy.hasChildren(root) || descendantFlags.containsKey(root)) {
+			return;
+		}
+
+		boolean cyclic = false;
+		Set<String> expanded = new HashSet<String>();
+		Deque<String> stack = new ArrayDeque<String>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			String guid = stack.peek();
+			if (descendantFlags.containsKey(guid)) {
+				stack.pop();
+			} else if (expanded.add(guid)) {
+				for (MpgObject child : hierarchy.getChildren(guid)) {
+					String childGuid = child.getGlobalId();
+					if (hierarchy.hasChildren(childGuid) && !expanded.contains(childGuid)) {
+						stack.push(childGuid);
+					}
+				}
+			} else {
+				stack.pop();
+				int flags = 0;
+				for (MpgObject child : hierarchy.getChildren(guid)) {
+					String childGuid = child.getGlobalId();
+					cyclic |= hierarchy.hasChildren(childGuid) && !descendantFlags.containsKey(childGuid);
+					flags |= getOwnFlags(child) | getDescendantFlags(childGuid);
+				}
+				descendantFlags.put(guid, flags);
+			}
+		}
+
+		boolean changed = cyclic;
+		while (changed) {
+			changed = false;
+			for (Map.Entry<String, Integer> entry : descendantFlags.entrySet()) {
+				int flags = entry.getValue();
+				for (MpgObject child : hierarchy.getChildren(entry.getKey())) {
+					flags |= getOwnFlags(child) | getDescendantFlags(child.getGlobalId());
+				}
+				if (flags != entry.getValue()) {
+					entry.setValue(flags);
+					changed = true;
+				}
+			}
+		}
+	}
+}
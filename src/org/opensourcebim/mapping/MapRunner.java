@@ -12,7 +12,6 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Scanner;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -23,7 +22,8 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.commons.lang3.StringUtils;
+import org.opensourcebim.ifccollection.MpgStepEntity;
+import org.opensourcebim.ifccollection.MpgStepReader;
 
 import com.opencsv.CSVReader;
 
@@ -132,25 +132,17 @@ public class MapRunner {
 
 			for (Path path : foundFiles) {
 				List<String> fileMaterials = new ArrayList<String>();
-				Scanner scanner = new Scanner(new File(path.toAbsolutePath().toString()));
-				while (scanner.hasNextLine()) {
-					String line = scanner.nextLine();
-					if (line.contains("IFCMATERIAL(")) {
-						String[] matRes = StringUtils.substringsBetween(line, "\'", "\'");
-						if (matRes != null) {
-							for (int i = 0; i < matRes.length; i++) {
-								if (matRes[i] != null) {
-									List<String> words = Arrays.asList(matRes[i].split(" |-|,|_|\\|(|)|<|>|:|;"))
-											.stream().filter(w -> w != null && !w.isEmpty()).map(w -> w.toLowerCase())
-											.collect(Collectors.toList());
-									fileMaterials.addAll(words);
-								}
-							}
-						}
+				MpgStepReader reader = MpgStepReader.read(path, Arrays.asList("IFCMATERIAL"));
+				for (MpgStepEntity material : reader.getAll("IFCMATERIAL")) {
+					String materialName = material.getString(0);
+					if (materialName != null) {
+						List<String> words = Arrays.asList(materialName.split(" |-|,|_|\\|(|)|<|>|:|;"))
+								.stream().filter(w -> w != null && !w.isEmpty()).map(w -> w.toLowerCase())
+								.collect(Collectors.toList());
+						fileMaterials.addAll(words);
 					}
 				}
 				allMaterials.addAll(fileMaterials);
-				scanner.close();
 			}
 
 		} catch (IOException e) {
@@ -212,7 +212,7 @@ public class NmdDataResolverImpl implements NmdDataResolver {
 				// next check for the material mappings and apply these
 				nmdMap.getMaterialMappings().forEach(mMap -> {
 					el.getMpgObject().getListedMaterials().forEach(mat -> {
-						if (mat.getName().toLowerCase().trim().equals(mMap.getMaterialName().toLowerCase().trim())) {
+						if (store.getStringDictionary().isSameKey(mat.getName(), mMap.getMaterialName())) {
 							Optional<NmdProductCard> matCard = cards.parallelStream()
 									.filter(c -> (long) c.getProductId() == mMap.getNmdProductId()).findFirst();
 							if (matCard.isPresent()) {
@@ -716,7 +716,7 @@ public class NmdDataResolverImpl implements NmdDataResolver {
 				.filter(o -> propMethod.apply(o).equals(referenceProperty)).filter(o -> o.getGeometry().getIsComplete())
 				.map(o -> o.getGeometry()).distinct().collect(Collectors.toList());
 
-		Optional<MpgGeometry> geom = candidates.stream().filter(g -> g.getDimensions().length == 3).findFirst();
+		Optional<MpgGeometry> geom = candidates.stream().filter(MpgGeometry::hasDimensions).findFirst();
 		if (geom.isPresent()) {
 			return geom.get();
 		} else {
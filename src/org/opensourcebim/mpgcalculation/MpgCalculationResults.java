@@ -2,10 +2,13 @@ package org.opensourcebim.mpgcalculation;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.opensourcebim.ifccollection.MpgObjectStore;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import nl.tno.bim.nmd.domain.NmdCostFactor;
@@ -100,6 +103,23 @@ public class MpgCalculationResults {
 		return grouping;
 	}
 	
+	/**
+	 * Group the costs by the storey partitions of a store
+	 * 
+	 * @param store the store the results were calculated for
+	 * @return the cost per storey guid
+	 */
+	public HashMap<String, Double> getCostPerStorey(MpgObjectStore store) {
+		Map<Long, String> storeyPerObjectId = new HashMap<Long, String>();
+		store.getStoreyPartitions().forEach((storeyId, elements) -> elements.forEach(el -> {
+			if (el.getMpgObject() != null) {
+				storeyPerObjectId.put(el.getMpgObject().getObjectId(), storeyId);
+			}
+		}));
+		return this.getCostPerCategory(
+				cf -> storeyPerObjectId.getOrDefault(cf.getObjectId(), MpgObjectStore.NO_STOREY));
+	}
+	
 	public HashMap<String, Double> getCostPerMilieuCategorie() {
 		return this.getCostPerCategory(NmdCostFactor::getMilieuCategorie);
 	}
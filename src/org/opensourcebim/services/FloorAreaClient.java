@@ -0,0 +1,123 @@
+package org.opensourcebim.services;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Client of the voxel service that determines the gross floor area of an ifc
+ * file. The endpoint and timeouts are fixed per client, the connections and
+ * request threads are shared by all clients.
+ */
+public class FloorAreaClient {
+
+	public static final String DEFAULT_ENDPOINT = "http://tnovoxelserver.aecgeeks.com/gross_floor_area";
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	public static final int DEFAULT_READ_TIMEOUT = 300000;
+
+	private static final CloseableHttpClient httpClient = createHttpClient();
+	private static final ObjectMapper mapper = new ObjectMapper();
+	private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "floor-area-request");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final String endpoint;
+	private final int connectTimeout;
+	private final int readTimeout;
+
+	public FloorAreaClient() {
+		this(DEFAULT_ENDPOINT, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * @param endpoint       url to post the ifc data to
+	 * @param connectTimeout timeout in milliseconds to connect to the voxel service
+	 * @param readTimeout    timeout in milliseconds to wait for the response
+	 */
+	public FloorAreaClient(String endpoint, int connectTimeout, int readTimeout) {
+		this.endpoint = endpoint;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	private static CloseableHttpClient createHttpClient() {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(20);
+		connectionManager.setDefaultMaxPerRoute(10);
+		return HttpClients.custom().setConnectionManager(connectionManager).build();
+	}
+
+	/**
+	 * Post the ifc data to the voxel service on a background thread
+	 *
+	 * @param ifcData the ifc file content
+	 * @return a future with the json response, or null when the service did not
+	 *         respond successfully
+	 */
+	public CompletableFuture<JsonNode> getJsonFromBinaryDataAsync(byte[] ifcData) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return getJsonFromBinaryData(ifcData);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	public JsonNode getJsonFromBinaryData(byte[] ifcData) throws IOException {
+
+		HttpPost uploadFile = new HttpPost(endpoint);
+		uploadFile.setConfig(RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setConnectionRequestTimeout(connectTimeout)
+				.setSocketTimeout(readTimeout)
+				.build());
+
+		// the body is written directly from the byte array
+		MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+		builder.addBinaryBody("ifc", ifcData, ContentType.MULTIPART_FORM_DATA, "bimbot_floorarea.ifc");
+		builder.setContentType(ContentType.MULTIPART_FORM_DATA);
+		uploadFile.setEntity(builder.build());
+
+		try (CloseableHttpResponse response = httpClient.execute(uploadFile)) {
+			HttpEntity entity = response.getEntity();
+			JsonNode json = null;
+			if (response.getStatusLine().getStatusCode() == 200 && entity != null) {
+				json = mapper.readTree(entity.getContent());
+			}
+			// make sure the connection can be reused
+			EntityUtils.consume(entity);
+			return json;
+		}
+	}
+}
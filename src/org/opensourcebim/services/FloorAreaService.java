@@ -1,18 +1,5 @@
 package org.opensourcebim.services;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
 import org.bimserver.bimbots.BimBotContext;
 import org.bimserver.bimbots.BimBotsException;
 import org.bimserver.bimbots.BimBotsInput;
@@ -20,18 +7,30 @@ import org.bimserver.bimbots.BimBotsOutput;
 import org.bimserver.plugins.PluginConfiguration;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.istack.logging.Logger;
 
 
 public class FloorAreaService extends IfcObjectCollectionBaseService {
 
+	private final FloorAreaClient client;
+
+	public FloorAreaService() {
+		this(new FloorAreaClient());
+	}
+
+	/**
+	 * @param client client of the voxel service to request the floor area from
+	 */
+	public FloorAreaService(FloorAreaClient client) {
+		this.client = client;
+	}
+
 	@Override
 	public BimBotsOutput runBimBot(BimBotsInput input, BimBotContext bimBotContext, PluginConfiguration pluginConfiguration)
 			throws BimBotsException {
 
 		try {
-			JsonNode json = FloorAreaService.getJsonFromBinaryData(input.getData());
+			JsonNode json = client.getJsonFromBinaryData(input.getData());
         	return this.toBimBotsJsonOutput(json, "floor area");
 		}
 		catch (Exception e) { 
@@ -45,32 +44,8 @@ public class FloorAreaService extends IfcObjectCollectionBaseService {
 	public String getOutputSchema() {
 		return "VOXEL_FLOORAREA_JSON_0_0_1";
 	}
-	
-	public static JsonNode getJsonFromBinaryData(byte[] ifcData) throws IOException {
-		
-		File f = File.createTempFile("bimbot_floorarea", ".ifc");
-		f.deleteOnExit();
-        OutputStream os = new FileOutputStream(f); 
-        os.write(ifcData); 
-        os.close(); 
-        
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        HttpPost uploadFile = new HttpPost("http://tnovoxelserver.aecgeeks.com/gross_floor_area");
 
-        MultipartEntityBuilder builder = MultipartEntityBuilder.create();
-        builder.addBinaryBody("ifc", f,
-                ContentType.MULTIPART_FORM_DATA, f.getAbsolutePath());
-        builder.setContentType(ContentType.MULTIPART_FORM_DATA);
-        HttpEntity multipart = builder.build();
-        uploadFile.setEntity(multipart);
-        HttpResponse response = httpClient.execute(uploadFile);
-        
-        JsonNode json = null;
-        if (response != null && response.getStatusLine().getStatusCode() == 200) {
-            HttpEntity entity = response.getEntity();
-            ObjectMapper mapper = new ObjectMapper();
-            json = mapper.readTree(EntityUtils.toString(entity, "UTF-8"));        	
-        }
-        return json;
+	public FloorAreaClient getClient() {
+		return client;
 	}
 }
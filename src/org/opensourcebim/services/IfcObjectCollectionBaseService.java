@@ -5,9 +5,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.bimserver.bimbots.BimBotContext;
 import org.bimserver.bimbots.BimBotsException;
+import org.bimserver.bimbots.BimBotsInput;
 import org.bimserver.bimbots.BimBotsOutput;
 import org.bimserver.plugins.services.BimBotAbstractService;
+import org.opensourcebim.ifccollection.MpgCollectorSettings;
+import org.opensourcebim.ifccollection.MpgIfcObjectCollector;
 import org.opensourcebim.ifccollection.MpgObjectStore;
 import org.opensourcebim.mapping.MappingDataServiceRestImpl;
 import org.opensourcebim.mapping.NmdDataResolver;
@@ -20,11 +24,13 @@ import nl.tno.bim.nmd.services.Nmd3DataService;
 
 public abstract class IfcObjectCollectionBaseService extends BimBotAbstractService {
 
-	private MpgObjectStore store = null;
+	// collector shared by all calls of the bot, every call collects into its own store
+	private volatile MpgIfcObjectCollector collector = null;
 
 	@Override
 	public boolean preloadCompleteModel() {
-		return true;
+		// when the collector queries the parts it needs the model does not have to be preloaded
+		return !getCollectorSettings().isQueryModelLoading();
 	}
 
 	@Override
@@ -54,12 +60,38 @@ public abstract class IfcObjectCollectionBaseService extends BimBotAbstractServi
 		}
 	}
 
-	public MpgObjectStore getStore() {
-		return store;
+	/**
+	 * @return the settings to collect the ifc model objects with
+	 */
+	protected MpgCollectorSettings getCollectorSettings() {
+		return new MpgCollectorSettings();
 	}
 
-	public void setStore(MpgObjectStore store) {
-		this.store = store;
+	/**
+	 * @return the collector of this service. The collector is reentrant, so it
+	 *         is created once and shared by concurrent bot calls.
+	 */
+	protected MpgIfcObjectCollector getCollector() {
+		if (collector == null) {
+			synchronized (this) {
+				if (collector == null) {
+					collector = new MpgIfcObjectCollector(getCollectorSettings());
+				}
+			}
+		}
+		return collector;
+	}
+
+	/**
+	 * Collect the objects of the model of a bot call. The store is not kept by the
+	 * service once the call is finished.
+	 * 
+	 * @param input         input of the bot call
+	 * @param bimBotContext context of the bot call
+	 * @return a new store with the collected objects
+	 */
+	protected MpgObjectStore collectObjects(BimBotsInput input, BimBotContext bimBotContext) {
+		return getCollector().collectIfcModelObjects(input, bimBotContext.getContextId());
 	}
 
 	/**
@@ -0,0 +1,27 @@
+package org.opensourcebim.services;
+
+import org.opensourcebim.ifccollection.MpgCollectorSettings;
+
+/**
+ * Quick scan variant of the bcf export service. The model is collected without
+ * generated geometry, so the material, layer and mapping issues can be reported
+ * without waiting for the server to tessellate the model. Volumes and areas are
+ * taken from the quantity sets where available and only the collected parts of
+ * the model are loaded. The model is not sent to the voxel service: without
+ * spaces the floor area is taken from the quantity sets of the slabs.
+ */
+public class IfcObjectCollectionQuickScanService extends IfcObjectCollectionToBcfService {
+
+	@Override
+	public boolean requiresGeometry() {
+		return false;
+	}
+
+	@Override
+	protected MpgCollectorSettings getCollectorSettings() {
+		MpgCollectorSettings settings = super.getCollectorSettings();
+		settings.setGeometryFreeCollection(true);
+		settings.setQueryModelLoading(true);
+		return settings;
+	}
+}
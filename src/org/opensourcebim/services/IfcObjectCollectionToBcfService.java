@@ -9,7 +9,7 @@ import org.bimserver.bimbots.BimBotsOutput;
 import org.bimserver.plugins.PluginConfiguration;
 import org.opensourcebim.bcf.BcfException;
 import org.opensourcebim.bcfexport.ObjectStoreToBcfConverter;
-import org.opensourcebim.ifccollection.MpgIfcObjectCollector;
+import org.opensourcebim.ifccollection.MpgObjectStore;
 
 public class IfcObjectCollectionToBcfService extends IfcObjectCollectionBaseService {
 	@Override
@@ -17,10 +17,9 @@ public class IfcObjectCollectionToBcfService extends IfcObjectCollectionBaseServ
 			throws BimBotsException {
 
 		// Get properties from ifcModel
-		MpgIfcObjectCollector matParser = new MpgIfcObjectCollector();
-		this.setStore(matParser.collectIfcModelObjects(input, bimBotContext.getContextId()));
+		MpgObjectStore store = collectObjects(input, bimBotContext);
 		
-		ObjectStoreToBcfConverter converter = new ObjectStoreToBcfConverter(this.getStore(), input);
+		ObjectStoreToBcfConverter converter = new ObjectStoreToBcfConverter(store, input);
 		
 		BimBotsOutput output = null;
 		try {
@@ -6,7 +6,7 @@ import org.bimserver.bimbots.BimBotsInput;
 import org.bimserver.bimbots.BimBotsOutput;
 import org.bimserver.plugins.PluginConfiguration;
 import org.opensourcebim.ifcanalysis.GuidDataSet;
-import org.opensourcebim.ifccollection.MpgIfcObjectCollector;
+import org.opensourcebim.ifccollection.MpgObjectStore;
 
 public class IfcToJsonDatasetService extends IfcObjectCollectionBaseService {
 
@@ -15,10 +15,9 @@ public class IfcToJsonDatasetService extends IfcObjectCollectionBaseService {
 			throws BimBotsException {
 
 		// Get properties from ifcModel
-		MpgIfcObjectCollector matParser = new MpgIfcObjectCollector();
-		this.setStore(matParser.collectIfcModelObjects(input, bimBotContext.getContextId()));
+		MpgObjectStore store = collectObjects(input, bimBotContext);
 		
-		GuidDataSet dataset = new GuidDataSet(this.getStore());
+		GuidDataSet dataset = new GuidDataSet(store);
 		
 		return this.toBimBotsJsonOutput(dataset, "guid property dataset results");
 	}
@@ -5,7 +5,7 @@ import org.bimserver.bimbots.BimBotsException;
 import org.bimserver.bimbots.BimBotsInput;
 import org.bimserver.bimbots.BimBotsOutput;
 import org.bimserver.plugins.PluginConfiguration;
-import org.opensourcebim.ifccollection.MpgIfcObjectCollector;
+import org.opensourcebim.ifccollection.MpgObjectStore;
 import org.opensourcebim.mapping.NmdDataResolver;
 
 public class IfcToMpgCollectionService extends IfcObjectCollectionBaseService {
@@ -15,11 +15,10 @@ public class IfcToMpgCollectionService extends IfcObjectCollectionBaseService {
 			throws BimBotsException {
 
 		// Get properties from ifcModel
-		MpgIfcObjectCollector matParser = new MpgIfcObjectCollector();
 		NmdDataResolver resolver = getNmdResolver();
 		
-		this.setStore(matParser.collectIfcModelObjects(input, bimBotContext.getContextId()));
-		resolver.setStore(this.getStore());
+		MpgObjectStore store = collectObjects(input, bimBotContext);
+		resolver.setStore(store);
 		resolver.nmdToMpg();
 				
 		return this.toBimBotsJsonOutput(resolver.getStore(), "results object collection");
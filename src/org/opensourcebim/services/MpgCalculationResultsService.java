@@ -5,7 +5,7 @@ import org.bimserver.bimbots.BimBotsException;
 import org.bimserver.bimbots.BimBotsInput;
 import org.bimserver.bimbots.BimBotsOutput;
 import org.bimserver.plugins.PluginConfiguration;
-import org.opensourcebim.ifccollection.MpgIfcObjectCollector;
+import org.opensourcebim.ifccollection.MpgObjectStore;
 import org.opensourcebim.mapping.NmdDataResolver;
 import org.opensourcebim.mpgcalculation.MpgCalculationResults;
 import org.opensourcebim.mpgcalculation.MpgCalculator;
@@ -18,11 +18,10 @@ public class MpgCalculationResultsService extends IfcObjectCollectionBaseService
 			throws BimBotsException {
 
 		// Get properties from ifcModel
-		MpgIfcObjectCollector matParser = new MpgIfcObjectCollector();
 		NmdDataResolver resolver = getNmdResolver();
-		this.setStore(matParser.collectIfcModelObjects(input, bimBotContext.getContextId()));
+		MpgObjectStore store = collectObjects(input, bimBotContext);
 		
-		resolver.setStore(this.getStore());
+		resolver.setStore(store);
 		resolver.nmdToMpg();
 		
 		// calculate the mpg scores
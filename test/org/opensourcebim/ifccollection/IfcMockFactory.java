@@ -3,6 +3,8 @@ package org.opensourcebim.ifccollection;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -14,26 +16,43 @@ import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.emf.PackageMetaData;
 import org.bimserver.emf.Schema;
 import org.bimserver.models.geometry.Bounds;
+import org.bimserver.models.geometry.Buffer;
+import org.bimserver.models.geometry.GeometryData;
 import org.bimserver.models.geometry.GeometryInfo;
 import org.bimserver.models.geometry.Vector3f;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingElement;
+import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.models.ifc2x3tc1.IfcElement;
+import org.bimserver.models.ifc2x3tc1.IfcElementQuantity;
 import org.bimserver.models.ifc2x3tc1.IfcMaterial;
 import org.bimserver.models.ifc2x3tc1.IfcMaterialLayer;
 import org.bimserver.models.ifc2x3tc1.IfcMaterialLayerSet;
 import org.bimserver.models.ifc2x3tc1.IfcMaterialLayerSetUsage;
 import org.bimserver.models.ifc2x3tc1.IfcMaterialList;
 import org.bimserver.models.ifc2x3tc1.IfcMaterialSelect;
+import org.bimserver.models.ifc2x3tc1.IfcObject;
 import org.bimserver.models.ifc2x3tc1.IfcObjectDefinition;
+import org.bimserver.models.ifc2x3tc1.IfcPhysicalQuantity;
 import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.models.ifc2x3tc1.IfcProject;
 import org.bimserver.models.ifc2x3tc1.IfcRelAssociates;
 import org.bimserver.models.ifc2x3tc1.IfcRelAssociatesMaterial;
+import org.bimserver.models.ifc2x3tc1.IfcRelContainedInSpatialStructure;
 import org.bimserver.models.ifc2x3tc1.IfcRelDecomposes;
+import org.bimserver.models.ifc2x3tc1.IfcPropertySetDefinition;
+import org.bimserver.models.ifc2x3tc1.IfcQuantityArea;
+import org.bimserver.models.ifc2x3tc1.IfcQuantityVolume;
 import org.bimserver.models.ifc2x3tc1.IfcRelDefines;
+import org.bimserver.models.ifc2x3tc1.IfcRelDefinesByProperties;
+import org.bimserver.models.ifc2x3tc1.IfcRelDefinesByType;
 import org.bimserver.models.ifc2x3tc1.IfcRelSpaceBoundary;
+import org.bimserver.models.ifc2x3tc1.IfcRoot;
 import org.bimserver.models.ifc2x3tc1.IfcSIPrefix;
 import org.bimserver.models.ifc2x3tc1.IfcSIUnit;
+import org.bimserver.models.ifc2x3tc1.IfcSlab;
+import org.bimserver.models.ifc2x3tc1.IfcSlabTypeEnum;
 import org.bimserver.models.ifc2x3tc1.IfcSpace;
+import org.bimserver.models.ifc2x3tc1.IfcTypeProduct;
 import org.bimserver.models.ifc2x3tc1.IfcUnit;
 import org.bimserver.models.ifc2x3tc1.IfcUnitAssignment;
 import org.bimserver.models.ifc2x3tc1.IfcUnitEnum;
@@ -118,6 +137,107 @@ public class IfcMockFactory {
 
 	}
 
+	/**
+	 * Add a storey that contains slabs and is decomposed in spaces with the given
+	 * geometries
+	 */
+	public void addStoreyToModel(IfcModelInterface mockModel, List<GeometryInfo> slabGeometries,
+			List<GeometryInfo> spaceGeometries) {
+		addStoreyToModel(mockModel, slabGeometries, spaceGeometries, IfcSlabTypeEnum.FLOOR);
+	}
+
+	public void addStoreyToModel(IfcModelInterface mockModel, List<GeometryInfo> slabGeometries,
+			List<GeometryInfo> spaceGeometries, IfcSlabTypeEnum slabType) {
+		IfcBuildingStorey storey = mock(IfcBuildingStorey.class);
+		when(storey.getGlobalId()).thenReturn(UUID.randomUUID().toString());
+
+		EList<IfcProduct> slabs = new BasicEList<IfcProduct>();
+		slabGeometries.forEach(geom -> {
+			IfcSlab slab = mock(IfcSlab.class);
+			when(slab.getGeometry()).thenReturn(geom);
+			when(slab.getPredefinedType()).thenReturn(slabType);
+			slabs.add(slab);
+		});
+		IfcRelContainedInSpatialStructure containment = mock(IfcRelContainedInSpatialStructure.class);
+		when(containment.getRelatedElements()).thenReturn(slabs);
+		EList<IfcRelContainedInSpatialStructure> containments = new BasicEList<IfcRelContainedInSpatialStructure>();
+		containments.add(containment);
+		when(storey.getContainsElements()).thenReturn(containments);
+
+		EList<IfcObjectDefinition> spaces = new BasicEList<IfcObjectDefinition>();
+		spaceGeometries.forEach(geom -> {
+			IfcSpace space = mock(IfcSpace.class);
+			when(space.getGeometry()).thenReturn(geom);
+			spaces.add(space);
+		});
+		IfcRelDecomposes decomposition = mock(IfcRelDecomposes.class);
+		when(decomposition.getRelatedObjects()).thenReturn(spaces);
+		EList<IfcRelDecomposes> decompositions = new BasicEList<IfcRelDecomposes>();
+		decompositions.add(decomposition);
+		when(storey.getIsDecomposedBy()).thenReturn(decompositions);
+
+		List<IfcBuildingStorey> storeys = mockModel.getAllWithSubTypes(IfcBuildingStorey.class);
+		storeys.add(storey);
+		when(mockModel.getAllWithSubTypes(IfcBuildingStorey.class)).thenReturn(storeys);
+	}
+
+	/**
+	 * Add a storey that contains the products with the given guids
+	 * 
+	 * @return the guid of the storey
+	 */
+	public String addContainingStoreyToModel(IfcModelInterface mockModel, double elevation,
+			List<String> productGuids) {
+		IfcBuildingStorey storey = mock(IfcBuildingStorey.class);
+		String storeyId = UUID.randomUUID().toString();
+		when(storey.getGlobalId()).thenReturn(storeyId);
+		when(storey.getElevation()).thenReturn(elevation);
+
+		IfcRelContainedInSpatialStructure containment = mock(IfcRelContainedInSpatialStructure.class);
+		when(containment.getRelatingStructure()).thenReturn(storey);
+		mockModel.getAllWithSubTypes(IfcProduct.class).stream()
+				.filter(p -> productGuids.contains(p.getGlobalId()) && p instanceof IfcElement).forEach(p -> {
+					EList<IfcRelContainedInSpatialStructure> containments = new BasicEList<IfcRelContainedInSpatialStructure>();
+					containments.add(containment);
+					when(((IfcElement) p).getContainedInStructure()).thenReturn(containments);
+				});
+
+		List<IfcBuildingStorey> storeys = mockModel.getAllWithSubTypes(IfcBuildingStorey.class);
+		storeys.add(storey);
+		when(mockModel.getAllWithSubTypes(IfcBuildingStorey.class)).thenReturn(storeys);
+		return storeyId;
+	}
+
+	/**
+	 * Add a slab without geometry that only has its net area in a quantity set
+	 * 
+	 * @param mockModel model to add the slab to
+	 * @param type      predefined type of the slab
+	 * @param netArea   value of the NetArea quantity
+	 */
+	public void addSlabWithAreaQuantityToModel(IfcModelInterface mockModel, IfcSlabTypeEnum type, double netArea) {
+		IfcSlab slab = mock(IfcSlab.class);
+		when(slab.getGlobalId()).thenReturn(UUID.randomUUID().toString());
+		when(slab.getPredefinedType()).thenReturn(type);
+
+		IfcQuantityArea quantity = mock(IfcQuantityArea.class);
+		when(quantity.getName()).thenReturn("NetArea");
+		when(quantity.getAreaValue()).thenReturn(netArea);
+		EList<IfcPhysicalQuantity> quantityList = new BasicEList<IfcPhysicalQuantity>();
+		quantityList.add(quantity);
+		IfcElementQuantity quantitySet = mock(IfcElementQuantity.class);
+		when(quantitySet.getQuantities()).thenReturn(quantityList);
+		IfcRelDefinesByProperties relation = mock(IfcRelDefinesByProperties.class);
+		when(relation.getRelatingPropertyDefinition()).thenReturn(quantitySet);
+		EList<IfcRelDefines> definitions = new BasicEList<IfcRelDefines>();
+		definitions.add(relation);
+		when(slab.getIsDefinedBy()).thenReturn(definitions);
+
+		List<IfcSlab> slabs = mockModel.getAllWithSubTypes(IfcSlab.class);
+		slabs.add(slab);
+		when(mockModel.getAllWithSubTypes(IfcSlab.class)).thenReturn(slabs);
+	}
+
 	public <T extends IfcProduct> void addGenericIfcProductToModel(IfcModelInterface mockModel, Class<T> productClass,
 			IfcProduct parent) {
 		List<T> products = mockModel.getAllWithSubTypes(productClass);
@@ -259,6 +379,37 @@ public class IfcMockFactory {
 		return geom;
 	}
 
+	/**
+	 * Geometry of a triangulated box without a volume reported by the geometry
+	 * server
+	 */
+	public GeometryInfo getTriangulatedBoxMock(double x, double y, double z) {
+		GeometryInfo geom = getGeometryInfoMock(Double.NaN, Double.NaN);
+
+		ByteBuffer vertices = ByteBuffer.allocate(8 * 3 * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < 8; i++) {
+			vertices.putFloat((float) ((i & 1) * x));
+			vertices.putFloat((float) (((i >> 1) & 1) * y));
+			vertices.putFloat((float) (((i >> 2) & 1) * z));
+		}
+		int[] faces = { 0, 2, 1, 1, 2, 3, 4, 5, 6, 5, 7, 6, 0, 1, 4, 1, 5, 4,
+				2, 6, 3, 3, 6, 7, 0, 4, 2, 2, 4, 6, 1, 3, 5, 3, 7, 5 };
+		ByteBuffer indices = ByteBuffer.allocate(faces.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int index : faces) {
+			indices.putInt(index);
+		}
+
+		Buffer vertexBuffer = mock(Buffer.class);
+		when(vertexBuffer.getData()).thenReturn(vertices.array());
+		Buffer indexBuffer = mock(Buffer.class);
+		when(indexBuffer.getData()).thenReturn(indices.array());
+		GeometryData data = mock(GeometryData.class);
+		when(data.getVertices()).thenReturn(vertexBuffer);
+		when(data.getIndices()).thenReturn(indexBuffer);
+		when(geom.getData()).thenReturn(data);
+		return geom;
+	}
+
 	public IfcRelAssociatesMaterial getRelAssociatesMaterialMock(IfcMaterialSelect material) {
 		IfcRelAssociatesMaterial association = mock(IfcRelAssociatesMaterial.class);
 		when(association.getRelatingMaterial()).thenReturn(material);
@@ -316,6 +467,126 @@ public class IfcMockFactory {
 		return layerSetUsage;
 	}
 
+	/**
+	 * Defines all products in the model by the same type, which has the input
+	 * material associated with it
+	 * 
+	 * @param mockModel    model with products
+	 * @param typeOid      object id of the type
+	 * @param typeMaterial material of the type
+	 */
+	public void addTypeToProducts(IfcModelInterface mockModel, long typeOid, IfcMaterialSelect typeMaterial) {
+		addTypeToProducts(mockModel, typeOid, typeMaterial, new ArrayList<Entry<String, Double>>());
+	}
+
+	/**
+	 * Defines all products in the model by the same type, which has the input
+	 * material and a quantity set with the input volume quantities. The type
+	 * relation and the material relation of the type are also registered as model
+	 * wide relations.
+	 * 
+	 * @param mockModel      model with products
+	 * @param typeOid        object id of the type
+	 * @param typeMaterial   material of the type
+	 * @param typeQuantities names and values of the volume quantities of the type
+	 */
+	public void addTypeToProducts(IfcModelInterface mockModel, long typeOid, IfcMaterialSelect typeMaterial,
+			List<Entry<String, Double>> typeQuantities) {
+		IfcTypeProduct type = mock(IfcTypeProduct.class);
+		when(type.getOid()).thenReturn(typeOid);
+		EList<IfcPropertySetDefinition> typePropertySets = new BasicEList<IfcPropertySetDefinition>();
+		if (!typeQuantities.isEmpty()) {
+			typePropertySets.add(getElementQuantityMock(typeQuantities));
+		}
+		when(type.getHasPropertySets()).thenReturn(typePropertySets);
+		EList<IfcRelAssociates> typeAssociations = new BasicEList<IfcRelAssociates>();
+		IfcRelAssociatesMaterial typeMaterialRelation = getRelAssociatesMaterialMock(typeMaterial);
+		EList<IfcRoot> typeMaterialObjects = new BasicEList<IfcRoot>();
+		typeMaterialObjects.add(type);
+		when(typeMaterialRelation.getRelatedObjects()).thenReturn(typeMaterialObjects);
+		typeAssociations.add(typeMaterialRelation);
+		when(type.getHasAssociations()).thenReturn(typeAssociations);
+
+		IfcRelDefinesByType typeRelation = mock(IfcRelDefinesByType.class);
+		when(typeRelation.getRelatingType()).thenReturn(type);
+		EList<IfcObject> typedObjects = new BasicEList<IfcObject>();
+		when(typeRelation.getRelatedObjects()).thenReturn(typedObjects);
+
+		mockModel.getAllWithSubTypes(IfcProduct.class).forEach(product -> {
+			EList<IfcRelDefines> definitions = new BasicEList<IfcRelDefines>();
+			definitions.add(typeRelation);
+			when(product.getIsDefinedBy()).thenReturn(definitions);
+			typedObjects.add(product);
+		});
+
+		List<IfcRelDefinesByType> typeRelations = new ArrayList<IfcRelDefinesByType>(
+				mockModel.getAllWithSubTypes(IfcRelDefinesByType.class));
+		typeRelations.add(typeRelation);
+		when(mockModel.getAllWithSubTypes(IfcRelDefinesByType.class)).thenReturn(typeRelations);
+		List<IfcRelAssociatesMaterial> materialRelations = new ArrayList<IfcRelAssociatesMaterial>(
+				mockModel.getAllWithSubTypes(IfcRelAssociatesMaterial.class));
+		materialRelations.add(typeMaterialRelation);
+		when(mockModel.getAllWithSubTypes(IfcRelAssociatesMaterial.class)).thenReturn(materialRelations);
+	}
+
+	/**
+	 * Adds a quantity set with volume quantities to all products in the model
+	 * 
+	 * @param mockModel  model with products
+	 * @param quantities names and values of the volume quantities
+	 */
+	public void addQuantitySetToProducts(IfcModelInterface mockModel, List<Entry<String, Double>> quantities) {
+		IfcRelDefinesByProperties relation = mock(IfcRelDefinesByProperties.class);
+		when(relation.getRelatingPropertyDefinition()).thenReturn(getElementQuantityMock(quantities));
+
+		mockModel.getAllWithSubTypes(IfcProduct.class).forEach(product -> {
+			EList<IfcRelDefines> definitions = new BasicEList<IfcRelDefines>();
+			definitions.add(relation);
+			when(product.getIsDefinedBy()).thenReturn(definitions);
+		});
+	}
+
+	private IfcElementQuantity getElementQuantityMock(List<Entry<String, Double>> quantities) {
+		IfcElementQuantity quantitySet = mock(IfcElementQuantity.class);
+		EList<IfcPhysicalQuantity> quantityList = new BasicEList<IfcPhysicalQuantity>();
+		quantities.forEach(q -> {
+			IfcQuantityVolume quantity = mock(IfcQuantityVolume.class);
+			when(quantity.getName()).thenReturn(q.getKey());
+			when(quantity.getVolumeValue()).thenReturn(q.getValue());
+			quantityList.add(quantity);
+		});
+		when(quantitySet.getQuantities()).thenReturn(quantityList);
+		return quantitySet;
+	}
+
+	/**
+	 * Registers the material associations of the products in the model as model
+	 * wide relations, such that the model can also be traversed by relation.
+	 * Products get a unique object id.
+	 * 
+	 * @param mockModel model with products
+	 */
+	public void addMaterialRelationsToModel(IfcModelInterface mockModel) {
+		List<IfcRelAssociatesMaterial> relations = new ArrayList<IfcRelAssociatesMaterial>(
+				mockModel.getAllWithSubTypes(IfcRelAssociatesMaterial.class));
+		List<IfcProduct> products = mockModel.getAllWithSubTypes(IfcProduct.class);
+		for (int i = 0; i < products.size(); i++) {
+			IfcProduct product = products.get(i);
+			when(product.getOid()).thenReturn((long) i + 1);
+			product.getHasAssociations().stream()
+					.filter(rel -> rel instanceof IfcRelAssociatesMaterial)
+					.map(rel -> (IfcRelAssociatesMaterial) rel)
+					.forEach(rel -> {
+						if (!relations.contains(rel)) {
+							relations.add(rel);
+							when(rel.getRelatedObjects()).thenReturn(new BasicEList<IfcRoot>());
+						}
+						rel.getRelatedObjects().add(product);
+					});
+		}
+		when(mockModel.getAllWithSubTypes(IfcRelAssociatesMaterial.class)).thenReturn(relations);
+	}
+
 	// ------------- auto-generated setters and getters ---------------
 	public GeometryInfo getGeometry() {
 		return geometry;
@@ -0,0 +1,77 @@
+package org.opensourcebim.ifccollection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.models.ifc2x3tc1.IfcSlabTypeEnum;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MpgFloorAreaRasterizerTest {
+
+	private IfcMockFactory factory;
+	private MpgFloorAreaRasterizer rasterizer;
+
+	@Before
+	public void setUp() throws Exception {
+		factory = new IfcMockFactory();
+		rasterizer = new MpgFloorAreaRasterizer(0.1, 1.0);
+	}
+
+	@Test
+	public void testFloorAreaOfNoGeometriesIsZero() {
+		assertEquals(0.0, rasterizer.getFloorArea(new ArrayList<>()), 1e-8);
+		assertEquals(0.0, rasterizer.getFloorArea(Arrays.asList(factory.getGeometryInfoMock(1, 3))), 1e-8);
+	}
+
+	@Test
+	public void testOverlappingGeometriesAreCountedOnce() {
+		double area = rasterizer.getFloorArea(Arrays.asList(factory.getTriangulatedBoxMock(2, 3, 0.2),
+				factory.getTriangulatedBoxMock(1, 3, 3)));
+
+		assertEquals(6.0, area, 1e-8);
+	}
+
+	@Test
+	public void testFloorAreaIsConvertedToSquareMeters() {
+		rasterizer = new MpgFloorAreaRasterizer(0.1, 0.001);
+
+		double area = rasterizer.getFloorArea(Arrays.asList(factory.getTriangulatedBoxMock(2000, 3000, 200)));
+
+		assertEquals(6.0, area, 1e-6);
+	}
+
+	@Test
+	public void testEveryStoreyGetsASpaceWithItsFloorArea() {
+		IfcModelInterface ifcModel = factory.getModelMock();
+		factory.addStoreyToModel(ifcModel, Arrays.asList(factory.getTriangulatedBoxMock(2, 3, 0.2)),
+				new ArrayList<>());
+		factory.addStoreyToModel(ifcModel, new ArrayList<>(),
+				Arrays.asList(factory.getTriangulatedBoxMock(4, 1, 3)));
+
+		List<MpgSpaceImpl> spaces = rasterizer.getStoreyFloorAreas(ifcModel);
+
+		assertEquals(2, spaces.size());
+		assertTrue(spaces.stream().anyMatch(space -> Math.abs(space.getArea() - 6.0) < 1e-8));
+		assertTrue(spaces.stream().anyMatch(space -> Math.abs(space.getArea() - 4.0) < 1e-8));
+	}
+
+	@Test
+	public void testRoofSlabsDoNotAddAFloorArea() {
+		IfcModelInterface ifcModel = factory.getModelMock();
+		factory.addStoreyToModel(ifcModel, Arrays.asList(factory.getTriangulatedBoxMock(2, 3, 0.2)),
+				new ArrayList<>());
+		factory.addStoreyToModel(ifcModel, Arrays.asList(factory.getTriangulatedBoxMock(4, 5, 0.3)),
+				new ArrayList<>(), IfcSlabTypeEnum.ROOF);
+
+		List<MpgSpaceImpl> spaces = rasterizer.getStoreyFloorAreas(ifcModel);
+
+		assertEquals(1, spaces.size());
+		assertEquals(6.0, spaces.get(0).getArea(), 1e-8);
+	}
+}
@@ -0,0 +1,65 @@
+package org.opensourcebim.ifccollection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MpgGeometryTest {
+
+	private MpgGeometry geom;
+
+	@Before
+	public void setUp() throws Exception {
+		geom = new MpgGeometry();
+	}
+
+	@Test
+	public void testScalerOrientationsAreSortedAndSharedPerGeometry() {
+		geom.setDimensions(2.0, 5.0, 1.0);
+
+		MpgScalingOrientation length = geom.getScalerOrientation(1);
+		MpgScalingOrientation area = geom.getScalerOrientation(2);
+
+		assertTrue(length == geom.getScalerOrientation(1));
+		assertEquals(5.0, length.getUnitDims()[0], 1e-8);
+		assertEquals(2.0, length.getScaleDims()[0], 1e-8);
+		assertEquals(1.0, length.getScaleDims()[1], 1e-8);
+		assertEquals(1.0, area.getScaleDims()[0], 1e-8);
+		assertEquals(10.0, geom.getFaceArea(), 1e-8);
+		assertEquals(5.0, geom.getDimension(1), 1e-8);
+	}
+
+	@Test
+	public void testMiddleDimensionIsKeptForLargeAndSmallDimensions() {
+		geom.setDimensions(1e-20, 1e20, 3.0);
+
+		MpgScalingOrientation length = geom.getScalerOrientation(1);
+
+		assertEquals(1e20, geom.getPrincipalDimension(), 1e-8);
+		assertEquals(3.0, length.getScaleDims()[0], 1e-8);
+		assertEquals(1e-20, length.getScaleDims()[1], 1e-28);
+	}
+
+	@Test
+	public void testInfiniteDimensionsAreSortedWithoutNaN() {
+		geom.setDimensions(2.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+		Double[] scaleDims = geom.getScalerOrientation(1).getScaleDims();
+
+		assertEquals(Double.POSITIVE_INFINITY, geom.getPrincipalDimension(), 0.0);
+		assertEquals(2.0, scaleDims[0], 1e-8);
+		assertEquals(Double.NEGATIVE_INFINITY, scaleDims[1], 0.0);
+	}
+
+	@Test
+	public void testOrientationReturnsItsDimensionsWithoutCopying() {
+		geom.setDimensions(2.0, 5.0, 1.0);
+		MpgScalingOrientation orientation = geom.getScalerOrientation(2);
+
+		assertTrue(orientation.getScaleDims() == orientation.getScaleDims());
+		assertTrue(orientation.getUnitDims() == orientation.getUnitDims());
+		assertEquals(1.0, orientation.getScaleDims()[0], 1e-8);
+	}
+}
@@ -1,24 +1,45 @@
 package org.opensourcebim.ifccollection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.models.geometry.GeometryData;
+import org.bimserver.models.geometry.GeometryInfo;
 import org.bimserver.models.ifc2x3tc1.IfcFurnishingElement;
 import org.bimserver.models.ifc2x3tc1.IfcOpeningElement;
 import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.models.ifc2x3tc1.IfcRelAssociates;
 import org.bimserver.models.ifc2x3tc1.IfcSIPrefix;
+import org.bimserver.models.ifc2x3tc1.IfcSlabTypeEnum;
 import org.bimserver.models.ifc2x3tc1.IfcSpace;
 import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.ecore.EClass;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opensourcebim.services.FloorAreaClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class MpgIfcObjectCollectorTest {
 
@@ -39,41 +60,36 @@ public class MpgIfcObjectCollectorTest {
 		collector = null;
 	}
 
-	@Test
-	public void testNewCollectorHasNoParsedMaterials() {
-		assertEquals(0, collector.results().getAllMaterialNames().count());
-	}
-	
 	@Test
 	public void testParseModelWithoutProducts() {
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(0, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(0, results.getAllMaterialNames().count());
 	}
 		
 	@Test
 	public void testParseModelWithoutMaterialAssociatesWillNotThrowError() {		
 		factory.setAssociations(null);
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(0, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(0, results.getAllMaterialNames().count());
 	}
 	
 	@Test
 	public void testParseModelWithoutGeometryWillNotThrowError() {
 		factory.setGeometry(null);
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 		
-		assertEquals(0, collector.results().getAllMaterialNames().count());
+		assertEquals(0, results.getAllMaterialNames().count());
 	}
 	
 	@Test
 	public void testCollectObjectsWillGatherObjectNamesofProduct() {
 		String name = "a structural beam";
 		factory.addProductToModel(ifcModel, name, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 		
-		assertEquals(name, collector.results().getObjects().get(0).getObjectName());
+		assertEquals(name, results.getObjects().get(0).getObjectName());
 	}
 	
 	@Test 
@@ -83,8 +99,8 @@ public class MpgIfcObjectCollectorTest {
 		IfcProduct parent = ifcModel.getAllWithSubTypes(IfcProduct.class).get(0);
 		factory.addProductToModel(ifcModel, "b", parent.getGlobalId());
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(parent.getGlobalId(), collector.results().getObjects().get(1).getParentId());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(parent.getGlobalId(), results.getObjects().get(1).getParentId());
 	}
 		
 	@Test
@@ -92,8 +108,8 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterial("aluminium");
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(1, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(1, results.getAllMaterialNames().count());
 	}
 	
 	@Test
@@ -102,9 +118,9 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterial("aluminium");
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 		// if the materials are the same we should only store it once.
-		assertEquals(1, collector.results().getAllMaterialNames().count());
+		assertEquals(1, results.getAllMaterialNames().count());
 	}
 	
 	@Test
@@ -118,9 +134,9 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterial("steel");
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 		// if the materials are the same we should only store it once.
-		assertEquals(2, collector.results().getAllMaterialNames().count());
+		assertEquals(2, results.getAllMaterialNames().count());
 	}
 	
 	@Test
@@ -129,33 +145,33 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterial("steel");
 		factory.setGeometry(null);
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 
-		assertEquals(2, collector.results().getAllMaterialNames().count());
+		assertEquals(2, results.getAllMaterialNames().count());
 	}
 	
 	@Test
 	public void testCanParseModelWithMaterialList() {
 		factory.addMaterialList(Arrays.asList("Steel", "Aluminium", "Aluminium"));
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(2, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(2, results.getAllMaterialNames().count());
 	}
 	
 	@Test
 	public void testCanParseModelWithEmptyMaterialList() {
 		factory.addMaterialList(new ArrayList<String>());
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(0, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(0, results.getAllMaterialNames().count());
 	}
 	
 	@Test
 	public void testCanParseModelWithMaterialLayer() {
 		factory.addMaterialLayer("brick", 0.15);
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(1, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(1, results.getAllMaterialNames().count());
 	}
 	
 	@Test
@@ -169,8 +185,8 @@ public class MpgIfcObjectCollectorTest {
 		
 		factory.addMaterialLayerSet(layers);
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(3, collector.results().getAllMaterialNames().count() );
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(3, results.getAllMaterialNames().count() );
 	}
 	
 	@Test
@@ -184,8 +200,8 @@ public class MpgIfcObjectCollectorTest {
 		
 		factory.addMaterialLayerSetUsage(layers);
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(3, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(3, results.getAllMaterialNames().count());
 	}
 	
 	@Test
@@ -201,8 +217,8 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterialLayer("styrofoam", .3);
 		
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(4, collector.results().getAllMaterialNames().count());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(4, results.getAllMaterialNames().count());
 	}
 	
 	@Test
@@ -213,8 +229,8 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterial("aluminium");
 		
 		factory.addProductToModel(ifcModel, null, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(1.0e-9, collector.results().getObjects().get(0).getGeometry().getVolume(), 1e-8);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(1.0e-9, results.getObjects().get(0).getGeometry().getVolume(), 1e-8);
 	}
 	
 	@Test
@@ -224,8 +240,8 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterial("brick");
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(3, collector.results().getObjects().get(0).getGeometry().getVolume(), 1e-8);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(3, results.getObjects().get(0).getGeometry().getVolume(), 1e-8);
 	}
 	
 	@Test
@@ -239,8 +255,8 @@ public class MpgIfcObjectCollectorTest {
 		factory.setGeometry(factory.getGeometryInfoMock(1, 2));
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(3, collector.results().getObjects().get(0).getGeometry().getVolume(), 1e-8);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(3, results.getObjects().get(0).getGeometry().getVolume(), 1e-8);
 	}
 	
 	@Test
@@ -251,9 +267,9 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterialLayer("rockwool", 3.0);
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(.25, collector.results().getObjects().get(0).getLayers().get(0).getVolume(), 1e-8);
-		assertEquals(.75, collector.results().getObjects().get(0).getLayers().get(1).getVolume(), 1e-8);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(.25, results.getObjects().get(0).getLayers().get(0).getVolume(), 1e-8);
+		assertEquals(.75, results.getObjects().get(0).getLayers().get(1).getVolume(), 1e-8);
 	}
 	
 	@Test
@@ -273,13 +289,13 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterialLayerSet(layers);
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(.25, collector.results().getObjects().get(0).getLayers().get(0).getVolume(), 1e-8);
-		assertEquals(.75, collector.results().getObjects().get(0).getLayers().get(1).getVolume(), 1e-8);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(.25, results.getObjects().get(0).getLayers().get(0).getVolume(), 1e-8);
+		assertEquals(.75, results.getObjects().get(0).getLayers().get(1).getVolume(), 1e-8);
 
-		assertEquals(2.5, collector.results().getObjects().get(1).getLayers().get(0).getVolume(), 1e-8);
-		assertEquals(5.0, collector.results().getObjects().get(1).getLayers().get(1).getVolume(), 1e-8);
-		assertEquals(2.5, collector.results().getObjects().get(1).getLayers().get(2).getVolume(), 1e-8);
+		assertEquals(2.5, results.getObjects().get(1).getLayers().get(0).getVolume(), 1e-8);
+		assertEquals(5.0, results.getObjects().get(1).getLayers().get(1).getVolume(), 1e-8);
+		assertEquals(2.5, results.getObjects().get(1).getLayers().get(2).getVolume(), 1e-8);
 	}
 	
 	@Test
@@ -296,10 +312,10 @@ public class MpgIfcObjectCollectorTest {
 		factory.setGeometry(factory.getGeometryInfoMock(1, 10));
 		factory.setAssociations(new BasicEList<IfcRelAssociates>());
 				
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 		
 		// material names of layers are null
-		assertEquals(0, collector.results().getAllMaterialNames().count());
+		assertEquals(0, results.getAllMaterialNames().count());
 	}
 	
 	@Test
@@ -311,12 +327,12 @@ public class MpgIfcObjectCollectorTest {
 		factory.addMaterial("steel");
 		factory.addProductToModel(ifcModel, null, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(.25,collector.results().getObjects().get(0).getLayers().get(0).getVolume(), 1e-8);
-		assertEquals(.75,collector.results().getObjects().get(0).getLayers().get(1).getVolume(), 1e-8);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(.25,results.getObjects().get(0).getLayers().get(0).getVolume(), 1e-8);
+		assertEquals(.75,results.getObjects().get(0).getLayers().get(1).getVolume(), 1e-8);
 		
 		// as there are layers present and this material is added separately we cannot assign a volume to it.
-		assertEquals(2, collector.results().getObjects().get(0).getLayers().size());
+		assertEquals(2, results.getObjects().get(0).getLayers().size());
 	}
 	
 	@Test
@@ -327,9 +343,9 @@ public class MpgIfcObjectCollectorTest {
 		factory.setGeometry(factory.getGeometryInfoMock(1, 4.0));
 		factory.addSpaceToModel(ifcModel, null);
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(4.0, collector.results().getSpaces().get(0).getVolume(), 1e-8);
-		assertEquals(Math.pow(4.0, (2.0/3.0)), collector.results().getSpaces().get(0).getArea(), 1e-8);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(4.0, results.getSpaces().get(0).getVolume(), 1e-8);
+		assertEquals(Math.pow(4.0, (2.0/3.0)), results.getSpaces().get(0).getArea(), 1e-8);
 	}
 	
 	@Test
@@ -343,32 +359,384 @@ public class MpgIfcObjectCollectorTest {
 		// add another space that is a child of the first one.
 		factory.addSpaceToModel(ifcModel, ifcModel.getAllWithSubTypes(IfcSpace.class).get(0));
 		
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
-		assertEquals(4.0, collector.results().getSpaces().get(0).getVolume(), 1e-8);
-		assertEquals(1, collector.results().getSpaces().size());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(4.0, results.getSpaces().get(0).getVolume(), 1e-8);
+		assertEquals(1, results.getSpaces().size());
 	}
 	
 	@Test
 	public void testCollectorOmitsFurnishingElements() {
 		factory.addGenericIfcProductToModel(ifcModel, IfcFurnishingElement.class, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 		
-		assertEquals(0, collector.results().getObjects().size());
+		assertEquals(0, results.getObjects().size());
 	}
 	
 	@Test
 	public void testCollectorCreatesDummySpaceWhenNoSpaceIsFound() {
 		factory.addGenericIfcProductToModel(ifcModel, IfcFurnishingElement.class, null);
-		collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
 		
-		assertEquals(-1d, collector.results().getSpaces().get(0).getArea(), 1e-8);
+		assertEquals(-1d, results.getSpaces().get(0).getArea(), 1e-8);
 	}
 	
 	@Test
 	public void testCollectorOmitsOpeningElements() {
 		// door and window openings are not included in the floor plan area calculation
 		factory.addGenericIfcProductToModel(ifcModel, IfcOpeningElement.class, null);
-		assertEquals(0, collector.results().getSpaces().size());
-		assertEquals(0, collector.results().getObjects().size());
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		assertEquals(-1d, results.getTotalFloorArea(), 1e-8);
+		assertEquals(0, results.getObjects().size());
+	}
+	
+	@Test
+	public void testParallelCollectionGivesSameResultAsSequentialCollection() {
+		factory.addProductToModel(ifcModel, "a", null);
+		IfcProduct parent = ifcModel.getAllWithSubTypes(IfcProduct.class).get(0);
+		for (int i = 0; i < 10; i++) {
+			factory.addProductToModel(ifcModel, "b" + i, parent.getGlobalId());
+		}
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		List<MpgObject> sequential = new ArrayList<>(results.getObjects());
+		
+		MpgCollectorSettings settings = new MpgCollectorSettings();
+		settings.setParallelism(4);
+		settings.setParallelThreshold(1);
+		MpgIfcObjectCollector parallelCollector = new MpgIfcObjectCollector(settings);
+		MpgObjectStore parallelResults = parallelCollector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		List<MpgObject> parallel = parallelResults.getObjects();
+		
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.get(i).getGlobalId(), parallel.get(i).getGlobalId());
+			assertEquals(sequential.get(i).getParentId(), parallel.get(i).getParentId());
+		}
+		assertEquals(results.getElements().size(), parallelResults.getElements().size());
+	}
+	
+	@Test
+	public void testQueryModelLoadingIsNotCombinedWithParallelCollection() {
+		MpgCollectorSettings settings = new MpgCollectorSettings();
+		settings.setParallelism(4);
+		settings.setParallelThreshold(1);
+		assertTrue(settings.collectInParallel(10));
+
+		settings.setQueryModelLoading(true);
+		assertFalse(settings.collectInParallel(10));
+	}
+	
+	@Test
+	public void testTypeMaterialsAreResolvedOncePerType() {
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addProductToModel(ifcModel, "b", null);
+		factory.addProductToModel(ifcModel, "c", null);
+		factory.addTypeToProducts(ifcModel, 42, factory.getIfcMaterialMock("steel"));
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		results.getObjects().forEach(o -> {
+			assertEquals(1, o.getListedMaterials().size());
+			assertEquals("type", o.getListedMaterials().get(0).getSource());
+		});
+		// properties and materials of the type are resolved on the first product only
+		assertEquals(2, results.getCollectionStatistics().getTypeCacheMissCount());
+		assertEquals(4, results.getCollectionStatistics().getTypeCacheHitCount());
+	}
+	
+	@Test
+	public void testSharedMaterialLayerSetIsScaledPerProduct() {
+		List<Entry<String, Double>> layers = new ArrayList<Entry<String, Double>>();
+
+		layers.add(new AbstractMap.SimpleEntry<>("brick", 0.3));
+		layers.add(new AbstractMap.SimpleEntry<>("rockwool", 0.1));
+		
+		factory.addMaterialLayerSet(layers);
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.setGeometry(factory.getGeometryInfoMock(2, 2));
+		factory.addProductToModel(ifcModel, "b", null);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		List<MpgObject> objects = results.getObjects();
+		assertEquals(0.75, objects.get(0).getLayers().get(0).getVolume(), 1e-8);
+		assertEquals(0.25, objects.get(0).getLayers().get(1).getVolume(), 1e-8);
+		assertEquals(1.5, objects.get(1).getLayers().get(0).getVolume(), 1e-8);
+		assertEquals(0.5, objects.get(1).getLayers().get(1).getVolume(), 1e-8);
+	}
+	
+	@Test
+	public void testCollectorOmitsConfiguredProductTypes() {
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addProductToModel(ifcModel, "b", null);
+		EClass proxyClass = mock(EClass.class);
+		when(proxyClass.getName()).thenReturn("IfcProxy");
+		when(ifcModel.getAllWithSubTypes(IfcProduct.class).get(0).eClass()).thenReturn(proxyClass);
+
+		collector.getSettings().getIgnoredProductTypes().add("IfcProxy");
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		assertEquals(1, results.getObjects().size());
+		assertEquals("b", results.getObjects().get(0).getObjectName());
+	}
+	
+	@Test
+	public void testRelationCentricCollectionGivesSameMaterialsAsProductCollection() {
+		List<Entry<String, Double>> layers = new ArrayList<Entry<String, Double>>();
+		layers.add(new AbstractMap.SimpleEntry<>("brick", 0.3));
+		layers.add(new AbstractMap.SimpleEntry<>("rockwool", 0.1));
+		factory.addMaterialLayerSetUsage(layers);
+		factory.addMaterial("steel");
+
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addProductToModel(ifcModel, "b", null);
+		factory.addMaterialRelationsToModel(ifcModel);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		List<MpgObject> expected = new ArrayList<>(results.getObjects());
+
+		MpgCollectorSettings settings = new MpgCollectorSettings();
+		settings.setRelationCentricCollection(true);
+		MpgIfcObjectCollector relationCollector = new MpgIfcObjectCollector(settings);
+		MpgObjectStore relationResults = relationCollector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		List<MpgObject> actual = relationResults.getObjects();
+
+		assertEquals(3, relationResults.getAllMaterialNames().count());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getListedMaterials().size(), actual.get(i).getListedMaterials().size());
+			assertEquals(expected.get(i).getLayers().size(), actual.get(i).getLayers().size());
+			for (int j = 0; j < expected.get(i).getLayers().size(); j++) {
+				assertEquals(expected.get(i).getLayers().get(j).getVolume(),
+						actual.get(i).getLayers().get(j).getVolume(), 1e-8);
+			}
+		}
+	}
+
+	@Test
+	public void testRelationCentricCollectionGivesSameTypeMaterialsAndPropertiesAsProductCollection() {
+		List<Entry<String, Double>> quantities = new ArrayList<Entry<String, Double>>();
+		quantities.add(new AbstractMap.SimpleEntry<>("NetVolume", 2.0));
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addProductToModel(ifcModel, "b", null);
+		factory.addMaterialRelationsToModel(ifcModel);
+		factory.addTypeToProducts(ifcModel, 42, factory.getIfcMaterialMock("steel"), quantities);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		List<MpgObject> expected = new ArrayList<>(results.getObjects());
+
+		MpgCollectorSettings settings = new MpgCollectorSettings();
+		settings.setRelationCentricCollection(true);
+		MpgIfcObjectCollector relationCollector = new MpgIfcObjectCollector(settings);
+		MpgObjectStore relationResults = relationCollector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		List<MpgObject> actual = relationResults.getObjects();
+
+		assertEquals(2, actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(1, actual.get(i).getListedMaterials().size());
+			assertEquals(expected.get(i).getListedMaterials().get(0).getName(),
+					actual.get(i).getListedMaterials().get(0).getName());
+			assertEquals(expected.get(i).getListedMaterials().get(0).getSource(),
+					actual.get(i).getListedMaterials().get(0).getSource());
+			assertEquals(2.0, (Double) expected.get(i).getProperty("netvolume"), 1e-8);
+			assertEquals(expected.get(i).getProperty("netvolume"), actual.get(i).getProperty("netvolume"));
+		}
+	}
+
+	@Test
+	public void testWhitelistedPropertiesAreCollectedAndOthersOnRequest() {
+		List<Entry<String, Double>> quantities = new ArrayList<Entry<String, Double>>();
+		quantities.add(new AbstractMap.SimpleEntry<>("NetVolume", 2.0));
+		quantities.add(new AbstractMap.SimpleEntry<>("Bulk", 3.0));
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addQuantitySetToProducts(ifcModel, quantities);
+
+		collector.getSettings().setPropertyWhitelist(MpgCollectorSettings.GEOMETRY_PROPERTIES);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObject object = results.getObjects().get(0);
+
+		assertEquals(1, object.getProperties().size());
+		assertEquals(2.0, (double) object.getProperties().get("netvolume"), 1e-8);
+		assertEquals(3.0, (double) object.getProperty("Bulk"), 1e-8);
+		assertEquals(2, object.getProperties().size());
+	}
+
+	@Test
+	public void testGeometryFreeCollectionTakesVolumeFromQuantitySets() {
+		List<Entry<String, Double>> quantities = new ArrayList<Entry<String, Double>>();
+		quantities.add(new AbstractMap.SimpleEntry<>("NetVolume", 2.0));
+		factory.setGeometry(factory.getGeometryInfoMock(1, 3));
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addQuantitySetToProducts(ifcModel, quantities);
+
+		collector.getSettings().setGeometryFreeCollection(true);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgObject object = results.getObjects().get(0);
+
+		assertEquals(2.0, object.getGeometry().getVolume(), 1e-8);
+		verify(ifcModel.getAllWithSubTypes(IfcProduct.class).get(0), never()).getGeometry();
+	}
+
+	@Test
+	public void testGeometryFreeCollectionTakesFloorAreaFromSlabQuantitiesWithoutSpaces() {
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addSlabWithAreaQuantityToModel(ifcModel, IfcSlabTypeEnum.FLOOR, 20.0);
+		factory.addSlabWithAreaQuantityToModel(ifcModel, IfcSlabTypeEnum.BASESLAB, 30.0);
+		factory.addSlabWithAreaQuantityToModel(ifcModel, IfcSlabTypeEnum.ROOF, 50.0);
+
+		// the model data is not sent to the voxel service in a geometry free collection
+		collector.getSettings().setGeometryFreeCollection(true);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID", new byte[] { 1 });
+
+		assertEquals(1, results.getSpaces().size());
+		assertEquals(50.0, results.getTotalFloorArea(), 1e-8);
+	}
+
+	@Test
+	public void testFailingFloorAreaRequestIsReportedAsStoreWarning() {
+		factory.addProductToModel(ifcModel, "a", null);
+
+		collector.getSettings().setFloorAreaClient(new FloorAreaClient() {
+			@Override
+			public CompletableFuture<JsonNode> getJsonFromBinaryDataAsync(byte[] ifcData) {
+				CompletableFuture<JsonNode> response = new CompletableFuture<>();
+				response.completeExceptionally(new IOException("connection refused"));
+				return response;
+			}
+		});
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID", new byte[] { 1 });
+
+		assertEquals(1, results.getObjects().size());
+		assertEquals(1, results.getWarnings().size());
+		assertTrue(results.getWarnings().get(0).startsWith("could not get floor area from voxel service"));
+	}
+
+	@Test
+	public void testQueryModelLoadingQueriesTheCollectedModelParts() throws Exception {
+		factory.addProductToModel(ifcModel, "a", null);
+
+		collector.getSettings().setQueryModelLoading(true);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		verify(ifcModel).query(any(ObjectNode.class), anyBoolean());
+		assertEquals(1, results.getObjects().size());
+	}
+
+	@Test
+	public void testFailingModelQueryIsReportedAsStoreWarning() throws Exception {
+		factory.addProductToModel(ifcModel, "a", null);
+		doThrow(new RuntimeException("timeout")).when(ifcModel).query(any(ObjectNode.class), anyBoolean());
+
+		collector.getSettings().setQueryModelLoading(true);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		assertEquals(1, results.getObjects().size());
+		assertEquals(1, results.getWarnings().size());
+		assertTrue(results.getWarnings().get(0).contains("timeout"));
+	}
+
+	@Test
+	public void testGeometryWithoutAdditionalDataIsIncomplete() {
+		GeometryInfo geometry = factory.getGeometryInfoMock(1, 3);
+		when(geometry.getAdditionalData()).thenReturn("{}");
+		factory.setGeometry(geometry);
+		factory.addProductToModel(ifcModel, "a", null);
+
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgGeometry geom = results.getObjects().get(0).getGeometry();
+
+		assertEquals(3.0, geom.getVolume(), 1e-8);
+		assertFalse(geom.getIsComplete());
+	}
+
+	@Test
+	public void testInstancesOfTheSameRepresentationShareTheirGeometry() {
+		GeometryInfo geometry = factory.getGeometryInfoMock(1, 3);
+		when(geometry.getData()).thenReturn(mock(GeometryData.class));
+		factory.setGeometry(geometry);
+		factory.addProductToModel(ifcModel, "a", null);
+		factory.addProductToModel(ifcModel, "b", null);
+
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		List<MpgObject> objects = results.getObjects();
+
+		assertTrue(objects.get(0).getGeometry() == objects.get(1).getGeometry());
+		assertTrue(objects.get(0).getGeometry().isImmutable());
+		assertEquals(2.0, results.getCollectionStatistics().getInstancingRatio(), 1e-8);
+	}
+
+	@Test
+	public void testCollectionStatisticsReportTheSharedStrings() {
+		factory.addMaterial(new String("aluminium"));
+		factory.addMaterial(new String("aluminium"));
+		factory.addProductToModel(ifcModel, null, null);
+
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		assertEquals(results.getStringDictionary().size(), results.getCollectionStatistics().getDistinctStringCount());
+		assertTrue(results.getCollectionStatistics().getDuplicateStringCount() >= 1);
+	}
+
+	@Test
+	public void testCollectorDeterminesGeometryFromTrianglesWithoutReportedVolume() {
+		factory.setGeometry(factory.getTriangulatedBoxMock(2, 3, 4));
+		factory.addProductToModel(ifcModel, "a", null);
+
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+		MpgGeometry geom = results.getObjects().get(0).getGeometry();
+
+		assertEquals(24.0, geom.getVolume(), 1e-4);
+		assertEquals(6.0, geom.getFloorArea(), 1e-4);
+		assertEquals(4.0, geom.getPrincipalDimension(), 1e-4);
+		assertTrue(geom.getIsComplete());
+	}
+
+	@Test
+	public void testStoreyRasterizationCountsOverlappingSlabsAndSpacesOnce() {
+		factory.addStoreyToModel(ifcModel,
+				Arrays.asList(factory.getTriangulatedBoxMock(2, 3, 0.2), factory.getTriangulatedBoxMock(1, 3, 0.2)),
+				Arrays.asList(factory.getTriangulatedBoxMock(2, 3, 3)));
+
+		collector.getSettings().setFloorAreaStrategy(MpgFloorAreaStrategy.storeyRasterization);
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		assertEquals(1, results.getSpaces().size());
+		assertEquals(6.0, results.getTotalFloorArea(), 1e-8);
+	}
+
+	@Test
+	public void testObjectsArePartitionedByTheirContainingStorey() {
+		factory.addProductToModel(ifcModel, "wall", null);
+		factory.addProductToModel(ifcModel, "floor", null);
+		String wallId = ifcModel.getAllWithSubTypes(IfcProduct.class).get(0).getGlobalId();
+		String floorId = ifcModel.getAllWithSubTypes(IfcProduct.class).get(1).getGlobalId();
+		// the part decomposes the wall and is not contained in a storey itself
+		factory.addProductToModel(ifcModel, "part", wallId);
+		factory.addProductToModel(ifcModel, "loose", null);
+		String upperId = factory.addContainingStoreyToModel(ifcModel, 3.0, Arrays.asList(floorId));
+		String lowerId = factory.addContainingStoreyToModel(ifcModel, 0.0, Arrays.asList(wallId));
+
+		MpgObjectStore results = collector.collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		Map<String, List<MpgElement>> partitions = results.getStoreyPartitions();
+		assertEquals(2, results.getStoreys().size());
+		assertEquals(Arrays.asList(lowerId, upperId, MpgObjectStore.NO_STOREY),
+				new ArrayList<String>(partitions.keySet()));
+		assertEquals(Arrays.asList("wall", "part"), partitions.get(lowerId).stream()
+				.map(el -> el.getMpgObject().getObjectName()).collect(Collectors.toList()));
+		assertEquals(1, partitions.get(upperId).size());
+		assertEquals("loose", partitions.get(MpgObjectStore.NO_STOREY).get(0).getMpgObject().getObjectName());
+	}
+
+	@Test
+	public void testCollectorCanCollectSeveralModelsAtOnce() {
+		IfcModelInterface otherModel = factory.getModelMock();
+		factory.addProductToModel(ifcModel, "wall", null);
+		factory.addProductToModel(otherModel, "floor", null);
+		factory.addProductToModel(otherModel, "roof", null);
+
+		CompletableFuture<MpgObjectStore> first = CompletableFuture
+				.supplyAsync(() -> collector.collectIfcModelObjects(ifcModel, "FirstProjectUUID"));
+		CompletableFuture<MpgObjectStore> second = CompletableFuture
+				.supplyAsync(() -> collector.collectIfcModelObjects(otherModel, "SecondProjectUUID"));
+
+		assertEquals(1, first.join().getObjects().size());
+		assertEquals("FirstProjectUUID", first.join().getProjectId());
+		assertEquals(2, second.join().getObjects().size());
+		assertEquals("SecondProjectUUID", second.join().getProjectId());
 	}
 }
@@ -0,0 +1,49 @@
+package org.opensourcebim.ifccollection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class MpgModelQueryTest {
+
+	private static boolean includesProducts(ObjectNode query, String define) {
+		for (JsonNode include : query.get("queries").get(0).get("includes")) {
+			if (define.equals(include.asText())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testModelQueryOnlyIncludesGeometryWhenRequested() {
+		assertTrue(MpgModelQuery.create(true).get("defines").has("geometry"));
+		assertFalse(MpgModelQuery.create(false).get("defines").has("geometry"));
+		assertEquals("IfcProduct", MpgModelQuery.create(false).get("queries").get(0).get("type").get("name").asText());
+	}
+
+	@Test
+	public void testModelQueryIncludesSpatialContainment() {
+		ObjectNode query = MpgModelQuery.create(false);
+
+		assertTrue(includesProducts(query, "containedIn"));
+		assertTrue(includesProducts(query, "containsElements"));
+		assertEquals("RelatingStructure", query.get("defines").get("relatingStructure").get("field").asText());
+	}
+
+	@Test
+	public void testModelQueryOnlyIncludesTriangleBuffersWhenRequested() {
+		ObjectNode geometry = MpgModelQuery.create(true);
+		ObjectNode triangles = MpgModelQuery.create(true, true);
+
+		assertEquals("data", geometry.get("defines").get("geometryData").get("field").asText());
+		assertFalse(geometry.get("defines").has("buffers"));
+		assertEquals("vertices", triangles.get("defines").get("buffers").get("fields").get(1).asText());
+		assertFalse(MpgModelQuery.create(false, true).get("defines").has("buffers"));
+	}
+}
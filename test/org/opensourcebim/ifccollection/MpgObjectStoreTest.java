@@ -4,11 +4,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.opensourcebim.mapping.NmdMappingType;
 
+import nl.tno.bim.nmd.domain.NmdProductCard;
+
 public class MpgObjectStoreTest {
 
 	private MpgObjectStore objectStore;
@@ -174,4 +183,314 @@ public class MpgObjectStoreTest {
 		assertTrue("warning found in objectstore while it should not be there.",
 				objectStore.isIfcDataComplete());
 	}
+	
+	@Test
+	public void testObjectPropertiesAreStoredInStorePropertyTable() {
+		MpgObjectImpl first = new MpgObjectImpl(1, "a", "wall", "Wall", "");
+		first.addProperty("volume", 2.0);
+		first.setPropertyTable(objectStore.getPropertyTable());
+		MpgObjectImpl second = new MpgObjectImpl(2, "b", "wall", "Wall", "");
+		second.setPropertyTable(objectStore.getPropertyTable());
+		second.addProperty("volume", 3.0);
+		second.addProperty("loadbearing", "TRUE");
+		second.addProperty("volume", 4.0);
+
+		assertEquals(2, objectStore.getPropertyTable().getRowCount());
+		assertEquals(2, objectStore.getPropertyTable().getPropertyNames().size());
+		assertEquals(1, first.getProperties().size());
+		assertEquals(2.0, (double) first.getProperty("volume"), 1e-8);
+		assertEquals(2, second.getProperties().size());
+		assertEquals("TRUE", second.getProperties().get("loadbearing"));
+		assertFalse(first.getProperties().containsKey("loadbearing"));
+		assertEquals(6.0, Arrays.stream(objectStore.getPropertyTable().getNumericValues("volume")).sum(), 1e-8);
+	}
+
+	@Test
+	public void testObjectsAndElementsCanBeFoundByGuidAndName() {
+		MpgElement el = objectStore.addElement("Wall-a");
+		MpgObject wall = new MpgObjectImpl(1, "a", "wall", "Wall", "");
+		objectStore.addObject(wall);
+		el.setMpgObject(wall);
+		objectStore.addObject(new MpgObjectImpl(2, "b", "slab", "Slab", ""));
+
+		assertEquals(wall, objectStore.getObjectByGuid("a").get());
+		assertEquals("slab", objectStore.getObjectByGuid("b").get().getObjectName());
+		assertFalse(objectStore.getObjectByGuid("c").isPresent());
+		assertEquals(el, objectStore.getElementByObjectGuid("a"));
+		assertEquals(el, objectStore.getElementByName("wall-A"));
+		assertEquals(2, objectStore.getObjectsByGuids(new HashSet<>(Arrays.asList("a", "b", "c"))).size());
+
+		objectStore.reset();
+		assertFalse(objectStore.getObjectByGuid("a").isPresent());
+		assertEquals(null, objectStore.getElementByName("Wall-a"));
+	}
+
+	@Test
+	public void testIndexesFollowRemovedAndAddedObjectsAndElements() {
+		MpgObject first = new MpgObjectImpl(1, "a", "wall", "Wall", "");
+		objectStore.addObject(first);
+		MpgElement el = objectStore.addElement("wall");
+		el.setMpgObject(first);
+
+		// the number of objects is the same after a remove and an add
+		assertTrue(objectStore.removeObject(first));
+		objectStore.addObject(new MpgObjectImpl(2, "b", "slab", "Slab", ""));
+		assertTrue(objectStore.removeElement(el));
+
+		assertEquals(1, objectStore.getObjects().size());
+		assertFalse(objectStore.getObjectByGuid("a").isPresent());
+		assertEquals("slab", objectStore.getObjectByGuid("b").get().getObjectName());
+		assertEquals(null, objectStore.getElementByName("wall"));
+		assertEquals(null, objectStore.getElementByObjectGuid("a"));
+		assertFalse(objectStore.removeObject(first));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testObjectsCanNotBeAddedToTheObjectListDirectly() {
+		objectStore.getObjects().add(new MpgObjectImpl(1, "a", "wall", "Wall", ""));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testElementsCanNotBeAddedToTheElementSetDirectly() {
+		objectStore.getElements().add(new MpgElement("wall", objectStore));
+	}
+
+	@Test
+	public void testDecompositionHierarchyIsTraversedWithoutEndlessRecursion() {
+		MpgObjectImpl wall = new MpgObjectImpl(1, "a", "wall", "Wall", "");
+		MpgObjectImpl part = new MpgObjectImpl(2, "b", "wall part", "Wall", "");
+		MpgObjectImpl subPart = new MpgObjectImpl(3, "c", "wall sub part", "Wall", "");
+		MpgObjectImpl first = new MpgObjectImpl(4, "d", "cyclic part", "Slab", "");
+		MpgObjectImpl second = new MpgObjectImpl(5, "e", "cyclic part", "Slab", "");
+		subPart.setGeometry(builder.createDummyGeom(1.0, 1.0, 1.0));
+		Arrays.asList(wall, part, subPart, first, second).forEach(o -> objectStore.addObject(o));
+
+		Map<String, String> childToParent = new HashMap<>();
+		childToParent.put("b", "a");
+		childToParent.put("c", "b");
+		childToParent.put("d", "e");
+		childToParent.put("e", "d");
+		((MpgObjectStoreImpl) objectStore).reloadParentChildRelationShips(childToParent);
+
+		assertEquals(1, objectStore.getChildren("a").count());
+		assertEquals(part, objectStore.getChildren(new String("a")).findFirst().get());
+		assertEquals(subPart, objectStore.getChildren("b").findFirst().get());
+		assertFalse(objectStore.hasUndefinedVolume(wall, true));
+		assertFalse(objectStore.hasUndefinedVolume(first, true));
+		assertFalse(objectStore.hasRedundantMaterials(first, true));
+
+		subPart.setGeometry(null);
+		assertTrue(objectStore.hasUndefinedVolume(wall, true));
+		assertFalse(objectStore.hasUndefinedVolume(wall, false));
+	}
+
+	@Test
+	public void testValidationReportIsKeptUntilTheStoreChanges() {
+		MpgObjectImpl wall = new MpgObjectImpl(1, "a", "wall", "Wall", "");
+		wall.addLayer(new MpgLayerImpl(1.0, 1.0, "steel", "steel_guid"));
+		wall.setGeometry(builder.createDummyGeom(1.0, 1.0, 1.0));
+		MpgObjectImpl part = new MpgObjectImpl(2, "b", "wall part", "Wall", "");
+		objectStore.addObject(wall);
+		objectStore.addObject(part);
+
+		MpgValidationReport report = objectStore.getValidationReport();
+		assertTrue(report == objectStore.getValidationReport());
+		assertFalse(report.isComplete());
+		assertEquals(new HashSet<>(Arrays.asList("b")), report.getGuidsWithUndefinedMaterials(false));
+		assertEquals(1, objectStore.getGuidsWithoutVolume().getSize());
+
+		// the wall is decomposed by the part
+		Map<String, String> childToParent = new HashMap<>();
+		childToParent.put("b", "a");
+		((MpgObjectStoreImpl) objectStore).reloadParentChildRelationShips(childToParent);
+		report = objectStore.getValidationReport();
+		assertTrue(report.isDecomposed("a"));
+		assertFalse(report.hasUndefinedVolume(wall, false));
+		assertTrue(report.hasUndefinedVolume(wall, true));
+		assertEquals(2, objectStore.getGuidsWithoutVolumeAndWithoutFullDecomposedVolumes().getSize());
+		assertEquals(1L, (long) objectStore.getGuidsWithoutVolumeAndWithoutFullDecomposedVolumes().getNumberOfComposed());
+
+		objectStore.addObject(new MpgObjectImpl(3, "c", "slab", "Slab", ""));
+		assertFalse(report == objectStore.getValidationReport());
+		assertEquals(3, objectStore.getValidationReport().getObjectCount());
+
+		// changes to the objects themselves also replace the report
+		report = objectStore.getValidationReport();
+		part.addMaterialSource("steel", "steel_guid", "test");
+		assertFalse(report == objectStore.getValidationReport());
+		assertFalse(objectStore.getValidationReport().hasUndefinedMaterials(part, false));
+		part.setGeometry(builder.createDummyGeom(1.0, 1.0, 1.0));
+		assertFalse(objectStore.getValidationReport().hasUndefinedVolume(wall, true));
+		part.addLayer(new MpgLayerImpl(1.0, 1.0, "", "empty_guid"));
+		assertTrue(objectStore.getValidationReport().hasUndefinedLayers(part, false));
+
+		// as do changes to the geometry of an object
+		part.getGeometry().setVolume(0.0);
+		assertTrue(objectStore.getValidationReport().hasUndefinedVolume(part, false));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testLayersCanOnlyBeAddedThroughTheObject() {
+		MpgObjectImpl wall = new MpgObjectImpl(1, "a", "wall", "Wall", "");
+		wall.getLayers().add(new MpgLayerImpl(1.0, 1.0, "steel", "steel_guid"));
+	}
+
+	@Test
+	public void testMappingsArePropagatedThroughTheDecompositionHierarchy() {
+		Map<String, String> childToParent = new HashMap<>();
+		childToParent.put("b", "a");
+		childToParent.put("c", "a");
+		childToParent.put("d", "c");
+		MpgElement[] elements = new MpgElement[4];
+		for (int i = 0; i < 4; i++) {
+			String guid = Character.toString((char) ('a' + i));
+			MpgObjectImpl obj = new MpgObjectImpl(i, guid, "wall " + guid, "Wall", "");
+			objectStore.addObject(obj);
+			elements[i] = objectStore.addElement("wall " + guid);
+			elements[i].setMpgObject(obj);
+		}
+		((MpgObjectStoreImpl) objectStore).reloadParentChildRelationShips(childToParent);
+
+		elements[1].setMappingMethod(NmdMappingType.DirectDeelProduct);
+		assertEquals(NmdMappingType.None, elements[0].getMappingMethod());
+
+		// c is mapped through its only child d, and a through b and c
+		elements[3].setMappingMethod(NmdMappingType.DirectDeelProduct);
+		assertEquals(NmdMappingType.IndirectThroughChildren, elements[2].getMappingMethod());
+		assertEquals(NmdMappingType.IndirectThroughChildren, elements[0].getMappingMethod());
+
+		elements[3].setMappingMethod(NmdMappingType.None);
+		assertEquals(NmdMappingType.None, elements[2].getMappingMethod());
+		assertEquals(NmdMappingType.None, elements[0].getMappingMethod());
+
+		elements[0].setMappingMethod(NmdMappingType.DirectTotaalProduct);
+		assertEquals(NmdMappingType.IndirectThroughParent, elements[1].getMappingMethod());
+		assertEquals(NmdMappingType.IndirectThroughParent, elements[3].getMappingMethod());
+
+		elements[0].setMappingMethod(NmdMappingType.None);
+		assertEquals(NmdMappingType.None, elements[1].getMappingMethod());
+		assertEquals(NmdMappingType.None, elements[3].getMappingMethod());
+
+		// the counters are kept up to date while mapping
+		elements[2].setMappingMethod(NmdMappingType.DirectDeelProduct);
+		assertEquals(NmdMappingType.None, elements[0].getMappingMethod());
+		elements[1].setMappingMethod(NmdMappingType.DirectDeelProduct);
+		assertEquals(NmdMappingType.IndirectThroughChildren, elements[0].getMappingMethod());
+	}
+
+	@Test
+	public void testProductCardsCanBeFoundAfterCardsAreRemoved() {
+		MpgObjectStoreImpl store = (MpgObjectStoreImpl) objectStore;
+		List<NmdProductCard> cards = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			NmdProductCard card = builder.createDummyProductCard("card " + i, 1, "m2", 10, null);
+			cards.add(card);
+			store.addProductCard(card);
+		}
+		for (int i = 0; i < 100; i += 2) {
+			store.removeProductCard(cards.get(i).getProductId());
+		}
+
+		assertEquals(50, store.getProductCards().size());
+		for (int i = 0; i < 100; i++) {
+			NmdProductCard card = cards.get(i);
+			assertEquals(i % 2 == 0 ? null : card, store.getProductCard(card.getProductId()));
+		}
+		assertEquals(Arrays.asList(cards.get(3), cards.get(1)), store.getProductCards(
+				Arrays.asList(cards.get(3).getProductId(), cards.get(2).getProductId(), cards.get(1).getProductId())));
+	}
+
+	@Test
+	public void testElementProductCardsFollowTheMapping() {
+		MpgElement el = objectStore.addElement("wall");
+		MpgObjectImpl wall = new MpgObjectImpl(1, "a", "wall", "Wall", "");
+		objectStore.addObject(wall);
+		el.setMpgObject(wall);
+		// product ids start at 0, which is not a valid mapping id
+		builder.createDummyProductCard("unused", 1, "m2", 10, null);
+		NmdProductCard card = builder.createDummyProductCard("brick", 1, "m2", 10, null);
+
+		assertEquals(0, el.getNmdProductCards().size());
+		el.mapProductCard(new MaterialSource("1", "brick", "direct"), card);
+		assertEquals(Arrays.asList(card), el.getNmdProductCards());
+		assertEquals(Arrays.asList(card.getProductId()), el.getProductIds());
+
+		el.removeProductCards();
+		assertEquals(0, el.getNmdProductCards().size());
+	}
+
+	@Test
+	public void testElementGroupsFollowChangesOfTheObjects() {
+		MpgObjectImpl[] walls = new MpgObjectImpl[3];
+		for (int i = 0; i < 3; i++) {
+			walls[i] = new MpgObjectImpl(i, "guid" + i, "wall", "Wall", "");
+			walls[i].addMaterialSource("brick", "", "direct");
+			objectStore.addObject(walls[i]);
+			objectStore.addElement("wall" + i).setMpgObject(walls[i]);
+		}
+
+		Map<String, List<MpgElement>> groups = objectStore.getElementGroups();
+		assertEquals(1, groups.size());
+		assertEquals(3, groups.get(walls[0].getValueHash()).size());
+		assertTrue(groups == objectStore.getElementGroups());
+		assertTrue(walls[0].hasEqualValueHash(walls[1]));
+
+		walls[2].addMaterialSource("insulation", "", "direct");
+		groups = objectStore.getElementGroups();
+		assertEquals(2, groups.size());
+		assertEquals(2, groups.get(walls[0].getValueHash()).size());
+		assertEquals(1, groups.get(walls[2].getValueHash()).size());
+		assertFalse(walls[0].hasEqualValueHash(walls[2]));
+
+		walls[1].setObjectName("");
+		assertEquals(2, objectStore.getCleanedElementGroups().size());
+		assertEquals(3, objectStore.getElementGroups().size());
+	}
+
+	@Test
+	public void testElementGroupsFollowObjectsThatAreNotAddedToTheStore() {
+		MpgObjectImpl wall = new MpgObjectImpl(1, "guid1", "wall", "Wall", "");
+		MpgElement el = objectStore.addElement("wall1");
+		el.setMpgObject(wall);
+		String valueHash = wall.getValueHash();
+		assertEquals(Arrays.asList(el), objectStore.getElementGroups().get(valueHash));
+
+		wall.addMaterialSource("brick", "", "direct");
+		assertEquals(null, objectStore.getElementGroups().get(valueHash));
+		assertEquals(Arrays.asList(el), objectStore.getElementGroups().get(wall.getValueHash()));
+
+		objectStore.removeElement(el);
+		assertTrue(objectStore.getElementGroups().isEmpty());
+	}
+
+	@Test
+	public void testStringsOfAddedObjectsAreSharedWithinTheStore() {
+		MpgObjectImpl first = new MpgObjectImpl(1, "a", new String("wall"), new String("Wall"), "");
+		first.addMaterialSource(new String("brick"), "brick_guid", new String("layer"));
+		MpgObjectImpl second = new MpgObjectImpl(2, "b", new String("wall"), new String("Wall"), "");
+		second.addMaterialSource(new String("brick"), "brick_guid", new String("layer"));
+		objectStore.addObject(first);
+		objectStore.addObject(second);
+
+		assertTrue(first.getObjectName() == second.getObjectName());
+		assertTrue(first.getObjectType() == second.getObjectType());
+		assertTrue(first.getListedMaterials().get(0).getName() == second.getListedMaterials().get(0).getName());
+		// source labels are compared on identity
+		assertEquals(1, second.getMaterialNamesBySource("layer").size());
+		assertTrue(objectStore.getStringDictionary().getDuplicateCount() >= 4);
+
+		MpgStringDictionary strings = objectStore.getStringDictionary();
+		assertTrue(strings.isSameKey(" Brick", "brick"));
+		assertFalse(strings.isSameKey("brick", "bricks"));
+	}
+
+	@Test
+	public void testElementNamesAreNotAddedToTheStringDictionary() {
+		int size = objectStore.getStringDictionary().size();
+		objectStore.addElement("Wall-guid1");
+		objectStore.addElement("Wall-guid2");
+
+		assertEquals(size, objectStore.getStringDictionary().size());
+		assertEquals("Wall-guid1", objectStore.getElementByName("wall-GUID1").getIfcName());
+	}
 }
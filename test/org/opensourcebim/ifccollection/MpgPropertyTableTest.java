@@ -0,0 +1,81 @@
+package org.opensourcebim.ifccollection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MpgPropertyTableTest {
+
+	private MpgPropertyTable table;
+
+	@Before
+	public void setUp() throws Exception {
+		table = new MpgPropertyTable();
+	}
+
+	@Test
+	public void testPropertiesAddedToEarlierRowsAreKeptInRowOrder() {
+		int first = table.addRow();
+		int second = table.addRow();
+		table.put(second, "volume", 2.0);
+		table.put(first, "volume", 1.0);
+		table.put(first, "name", "wall");
+
+		assertArrayEquals(new double[] { 1.0, 2.0 }, table.getNumericValues("volume"), 1e-8);
+		assertEquals("wall", table.get(first, "name"));
+		assertNull(table.get(second, "name"));
+		assertEquals(2, table.size(first));
+	}
+
+	@Test
+	public void testNaNIsStoredAsValue() {
+		int row = table.addRow();
+		table.put(row, "volume", Double.NaN);
+
+		assertTrue(table.contains(row, "volume"));
+		assertTrue(((Double) table.get(row, "volume")).isNaN());
+	}
+
+	@Test
+	public void testRemovedPropertiesAreAbsent() {
+		int row = table.addRow();
+		table.put(row, "volume", 1.0);
+		table.put(row, "name", "wall");
+
+		assertEquals(1.0, table.remove(row, "volume"));
+		assertFalse(table.contains(row, "volume"));
+		assertEquals(0, table.getNumericValues("volume").length);
+		table.put(row, "name", null);
+		assertEquals(0, table.size(row));
+	}
+
+	@Test
+	public void testAppendedRowsKeepTheirProperties() {
+		Map<String, Object> first = table.getRowView(table.addRow());
+		first.put("volume", 1.0);
+
+		MpgPropertyTable other = new MpgPropertyTable();
+		Map<String, Object> second = other.getRowView(other.addRow());
+		second.put("volume", 2.0);
+		second.put("name", new String("wall"));
+		first.put("name", "wall");
+
+		assertEquals(1, table.append(other));
+		assertEquals(2, table.getRowCount());
+		assertEquals(2.0, second.get("volume"));
+		assertArrayEquals(new double[] { 1.0, 2.0 }, table.getNumericValues("volume"), 1e-8);
+		// string values are shared within the table after the append
+		assertTrue(first.get("name") == second.get("name"));
+
+		// the view writes to the table it has been appended to
+		second.put("area", 3.0);
+		assertEquals(3.0, table.get(1, "area"));
+	}
+}
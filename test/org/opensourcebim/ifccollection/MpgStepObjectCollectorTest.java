@@ -0,0 +1,162 @@
+package org.opensourcebim.ifccollection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.models.ifc2x3tc1.IfcProduct;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MpgStepObjectCollectorTest {
+
+	private static final String HEADER = "ISO-10303-21;\nHEADER;\nFILE_SCHEMA(('IFC2X3'));\nENDSEC;\nDATA;\n";
+	private static final String FOOTER = "ENDSEC;\nEND-ISO-10303-21;\n";
+
+	private static final String WALL_MODEL = HEADER
+			+ "#1=IFCBUILDINGSTOREY('2VxPBHJ6XDzvz7Y9dJ0Tnu',$,'Storey 1',$,$,$,$,$,.ELEMENT.,0.);\n"
+			+ "#2=IFCWALL('1VxPBHJ6XDzvz7Y9dJ0Tnu',$,'Wall ''A''',$,$,$,$,$);\n"
+			+ "#3=IFCRELAGGREGATES('3VxPBHJ6XDzvz7Y9dJ0Tnu',$,$,$,#1,(#2));\n"
+			+ "#4=IFCQUANTITYVOLUME('NetVolume',$,$,2.5);\n"
+			+ "#5=IFCELEMENTQUANTITY('4VxPBHJ6XDzvz7Y9dJ0Tnu',$,'BaseQuantities',$,$,(#4));\n"
+			+ "#6=IFCRELDEFINESBYPROPERTIES('5VxPBHJ6XDzvz7Y9dJ0Tnu',$,$,$,(#2),#5);\n"
+			+ "#7=IFCPROPERTYSINGLEVALUE('LoadBearing',$,IFCBOOLEAN(.T.),$);\n"
+			+ "#8=IFCPROPERTYSINGLEVALUE('Reference',$,IFCIDENTIFIER('W\\X2\\00E9\\X0\\1'),$);\n"
+			+ "#9=IFCPROPERTYSET('6VxPBHJ6XDzvz7Y9dJ0Tnu',$,'Pset_WallCommon',$,(#7,#8));\n"
+			+ "#10=IFCRELDEFINESBYPROPERTIES('7VxPBHJ6XDzvz7Y9dJ0Tnu',$,$,$,(#2),#9);\n"
+			+ "#11=IFCMATERIAL('brick');\n"
+			+ "#12=IFCMATERIAL('rockwool');\n"
+			+ "#13=IFCMATERIALLAYER(#11,0.3,$);\n"
+			+ "#14=IFCMATERIALLAYER(#12,0.1,$);\n"
+			+ "#15=IFCMATERIALLAYERSET((#13,#14),'wall layers');\n"
+			+ "#16=IFCMATERIALLAYERSETUSAGE(#15,.AXIS2.,.POSITIVE.,0.);\n"
+			+ "#17=IFCRELASSOCIATESMATERIAL('8VxPBHJ6XDzvz7Y9dJ0Tnu',$,$,$,(#2),#16);\n"
+			+ "#18=IFCCLASSIFICATION('BIM Loket','2005',$,'NL-SfB');\n"
+			+ "#19=IFCCLASSIFICATIONREFERENCE($,'21.12','wall',#18);\n"
+			+ "#20=IFCRELASSOCIATESCLASSIFICATION('9VxPBHJ6XDzvz7Y9dJ0Tnu',$,$,$,(#2),#19);\n"
+			+ FOOTER;
+
+	private MpgStepObjectCollector collector;
+
+	@Before
+	public void setUp() throws Exception {
+		collector = new MpgStepObjectCollector();
+	}
+
+	private MpgStepReader getReader(String content) {
+		return new MpgStepReader(ByteBuffer.wrap(content.getBytes(StandardCharsets.ISO_8859_1)), null);
+	}
+
+	@Test
+	public void testReaderParsesAttributeTypes() {
+		MpgStepReader reader = getReader(HEADER
+				+ "#1=IFCCARTESIANPOINT((0.,-1.5E-3,1.));\n"
+				+ "/* comment; with a semicolon */\n"
+				+ "#2=IFCPROPERTYSINGLEVALUE('It''s',$,IFCLABEL('\\X2\\00E9\\X0\\'),#1);\n"
+				+ FOOTER);
+
+		assertEquals(2, reader.size());
+		assertEquals(Arrays.asList(0.0, -0.0015, 1.0), reader.get(1).get(0));
+		assertEquals("It's", reader.get(2).getString(0));
+		assertNull(reader.get(2).get(1));
+		assertEquals("\u00e9", ((MpgStepEntity.TypedValue) reader.get(2).get(2)).getValue());
+		assertEquals(1, reader.get(2).getReference(3));
+	}
+
+	@Test
+	public void testReaderStopsAtValuesItCannotParse() {
+		MpgStepReader reader = getReader(HEADER
+				+ "#1=IFCCARTESIANPOINT((0.,&,1.));\n"
+				+ "#2=IFCLABEL('a\\X\\ZZb\\X2\\00E9QQQQ\\X0\\');\n"
+				+ FOOTER);
+
+		assertEquals(Arrays.asList(0.0), reader.get(1).get(0));
+		assertEquals("a\\X\\ZZb\u00e9QQQQ", reader.get(2).getString(0));
+	}
+
+	@Test
+	public void testReaderDecodesStringsAsUtf8() {
+		MpgStepReader reader = new MpgStepReader(ByteBuffer.wrap(
+				(HEADER + "#1=IFCMATERIAL('kalkzandsteen \u00e9\u00e9n');\n" + FOOTER).getBytes(StandardCharsets.UTF_8)),
+				null);
+
+		assertEquals("kalkzandsteen \u00e9\u00e9n", reader.get(1).getString(0));
+	}
+
+	@Test
+	public void testReaderOnlyKeepsRequestedTypes() {
+		MpgStepReader reader = new MpgStepReader(ByteBuffer.wrap(WALL_MODEL.getBytes(StandardCharsets.ISO_8859_1)),
+				Arrays.asList("IFCMATERIAL"));
+
+		assertEquals(2, reader.size());
+		assertEquals("rockwool", reader.getAll("IFCMATERIAL").get(1).getString(0));
+	}
+
+	@Test
+	public void testCollectorCollectsProductsWithoutGeometry() {
+		MpgObjectStore results = collector.collectIfcModelObjects(getReader(WALL_MODEL), "SomeProjectUUID");
+
+		assertEquals(1, results.getObjects().size());
+		MpgObject wall = results.getObjects().get(0);
+		assertEquals("Wall 'A'", wall.getObjectName());
+		assertEquals("IfcWall", wall.getObjectType());
+		assertEquals("TRUE", wall.getProperty("loadbearing"));
+		assertEquals(2.5, wall.getGeometry().getVolume(), 1e-8);
+		assertEquals(2, wall.getLayers().size());
+		assertEquals(1.875, wall.getLayers().get(0).getVolume(), 1e-8);
+		assertTrue(wall.hasNlsfbCode());
+	}
+
+	@Test
+	public void testCollectorAddsDummySpaceWhenNoSpaceIsFound() {
+		MpgObjectStore results = collector.collectIfcModelObjects(getReader(WALL_MODEL), "SomeProjectUUID");
+
+		assertEquals(-1d, results.getSpaces().get(0).getArea(), 1e-8);
+	}
+
+	@Test
+	public void testCollectorGivesSameStoreAsModelCollectorForModelWithoutSpaces() {
+		IfcMockFactory factory = new IfcMockFactory();
+		IfcModelInterface ifcModel = factory.getModelMock();
+		factory.addProductToModel(ifcModel, "wall", null);
+		String wallId = ifcModel.getAllWithSubTypes(IfcProduct.class).get(0).getGlobalId();
+		factory.addProductToModel(ifcModel, "window", wallId);
+		String windowId = ifcModel.getAllWithSubTypes(IfcProduct.class).get(1).getGlobalId();
+		MpgObjectStore expected = new MpgIfcObjectCollector().collectIfcModelObjects(ifcModel, "SomeProjectUUID");
+
+		// the furnishing element is ignored and should not be part of the decomposition
+		MpgObjectStore actual = collector.collectIfcModelObjects(getReader(HEADER
+				+ "#1=IFCWALL('" + wallId + "',$,'wall',$,$,$,$,$);\n"
+				+ "#2=IFCWINDOW('" + windowId + "',$,'window',$,$,$,$,$,$,$);\n"
+				+ "#3=IFCFURNISHINGELEMENT('0VxPBHJ6XDzvz7Y9dJ0Tnu',$,'chair',$,$,$,$,$);\n"
+				+ "#4=IFCRELAGGREGATES('3VxPBHJ6XDzvz7Y9dJ0Tnu',$,$,$,#1,(#2,#3));\n"
+				+ FOOTER), "SomeProjectUUID");
+
+		List<MpgObject> expectedObjects = expected.getObjects();
+		List<MpgObject> actualObjects = actual.getObjects();
+		assertEquals(expectedObjects.size(), actualObjects.size());
+		for (int i = 0; i < expectedObjects.size(); i++) {
+			assertEquals(expectedObjects.get(i).getGlobalId(), actualObjects.get(i).getGlobalId());
+			assertEquals(expectedObjects.get(i).getObjectName(), actualObjects.get(i).getObjectName());
+			assertEquals(expectedObjects.get(i).getParentId(), actualObjects.get(i).getParentId());
+		}
+		assertEquals(expected.getSpaces().size(), actual.getSpaces().size());
+		assertEquals(expected.getSpaces().get(0).getId(), actual.getSpaces().get(0).getId());
+		assertEquals(expected.getSpaces().get(0).getArea(), actual.getSpaces().get(0).getArea(), 1e-8);
+	}
+
+	@Test
+	public void testCollectorAddsNoDummySpaceWhenAllSpacesAreExternal() {
+		MpgObjectStore results = collector.collectIfcModelObjects(getReader(HEADER
+				+ "#1=IFCSPACE('1VxPBHJ6XDzvz7Y9dJ0Tnu',$,'garden',$,$,$,$,$,.ELEMENT.,.EXTERNAL.,$);\n"
+				+ FOOTER), "SomeProjectUUID");
+
+		assertEquals(0, results.getSpaces().size());
+	}
+}
@@ -0,0 +1,53 @@
+package org.opensourcebim.ifccollection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MpgStringDictionaryTest {
+
+	private MpgStringDictionary strings;
+
+	@Before
+	public void setUp() throws Exception {
+		strings = new MpgStringDictionary();
+	}
+
+	@Test
+	public void testLookupsDoNotAddStrings() {
+		strings.intern("Brick");
+		int size = strings.size();
+
+		assertTrue(strings.isSameKey("Brick", " brick"));
+		assertFalse(strings.isSameKey("concrete", "Brick"));
+		assertTrue(strings.isSameKey("Concrete ", "concrete"));
+		assertEquals(-1, strings.getKeyId("concrete"));
+		assertEquals("concrete", strings.toLowerCase("Concrete"));
+
+		assertEquals(size, strings.size());
+	}
+
+	@Test
+	public void testStringsWithTheSameKeyShareTheirId() {
+		String brick = strings.intern("Brick");
+		String other = strings.intern(" brick");
+
+		assertEquals(strings.getKeyId(brick), strings.getKeyId(other));
+		// a string that is not in the dictionary finds the id of an equal key
+		assertEquals(strings.getKeyId(brick), strings.getKeyId("BRICK"));
+	}
+
+	@Test
+	public void testLowerCaseOfDictionaryStringsIsKept() {
+		String name = strings.intern("NetVolume");
+
+		String lower = strings.toLowerCase(name);
+
+		assertEquals("netvolume", lower);
+		assertTrue(lower == strings.toLowerCase(new String("NetVolume")));
+		assertTrue(lower == strings.intern("netvolume"));
+	}
+}
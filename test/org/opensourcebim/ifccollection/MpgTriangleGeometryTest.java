@@ -0,0 +1,60 @@
+package org.opensourcebim.ifccollection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bimserver.models.geometry.GeometryInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MpgTriangleGeometryTest {
+
+	private IfcMockFactory factory;
+
+	@Before
+	public void setUp() throws Exception {
+		factory = new IfcMockFactory();
+	}
+
+	@Test
+	public void testGeometryWithoutTriangleDataIsNotDetermined() {
+		assertNull(MpgTriangleGeometry.fromGeometry(factory.getGeometryInfoMock(1, 3)));
+	}
+
+	@Test
+	public void testBoxGeometryIsDeterminedFromTriangles() {
+		MpgTriangleGeometry geom = MpgTriangleGeometry.fromGeometry(factory.getTriangulatedBoxMock(2, 3, 4));
+
+		assertEquals(12, geom.getTriangleCount());
+		assertEquals(24.0, geom.getVolume(), 1e-4);
+		assertEquals(6.0, geom.getSurfaceAreaAlongZ(), 1e-4);
+
+		double[] dims = geom.getDimensions().clone();
+		Arrays.sort(dims);
+		assertEquals(2.0, dims[0], 1e-4);
+		assertEquals(3.0, dims[1], 1e-4);
+		assertEquals(4.0, dims[2], 1e-4);
+	}
+
+	@Test
+	public void testEveryTriangleIsPassedToTheConsumer() {
+		GeometryInfo box = factory.getTriangulatedBoxMock(2, 3, 4);
+		List<double[]> triangles = new ArrayList<>();
+
+		int count = MpgTriangleGeometry.forEachTriangle(box, p -> triangles.add(p.clone()));
+
+		assertEquals(12, count);
+		assertEquals(12, triangles.size());
+		triangles.forEach(p -> {
+			for (int i = 0; i < 9; i += 3) {
+				assertEquals(0.0, p[i] * (2.0 - p[i]), 1e-4);
+				assertEquals(0.0, p[i + 1] * (3.0 - p[i + 1]), 1e-4);
+				assertEquals(0.0, p[i + 2] * (4.0 - p[i + 2]), 1e-4);
+			}
+		});
+	}
+}
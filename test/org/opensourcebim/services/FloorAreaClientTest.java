@@ -0,0 +1,74 @@
+package org.opensourcebim.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+
+public class FloorAreaClientTest {
+
+	private HttpServer server;
+	private String receivedBody;
+	private FloorAreaClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/gross_floor_area", exchange -> {
+			receivedBody = readAll(exchange.getRequestBody());
+			byte[] response = "{\"floor_area\": 12.5}".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, response.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(response);
+			}
+		});
+		server.start();
+		client = new FloorAreaClient("http://localhost:" + server.getAddress().getPort() + "/gross_floor_area",
+				FloorAreaClient.DEFAULT_CONNECT_TIMEOUT, FloorAreaClient.DEFAULT_READ_TIMEOUT);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testAsyncRequestReturnsFloorArea() {
+		CompletableFuture<JsonNode> request = client
+				.getJsonFromBinaryDataAsync("ISO-10303-21;".getBytes(StandardCharsets.UTF_8));
+		JsonNode res = request.join();
+
+		assertEquals(12.5, res.get("floor_area").asDouble(), 1e-8);
+	}
+
+	@Test
+	public void testIfcDataIsSentAsMultipartBody() throws IOException {
+		client.getJsonFromBinaryData("ISO-10303-21;".getBytes(StandardCharsets.UTF_8));
+
+		assertTrue(receivedBody.contains("name=\"ifc\""));
+		assertTrue(receivedBody.contains("ISO-10303-21;"));
+	}
+
+	private static String readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
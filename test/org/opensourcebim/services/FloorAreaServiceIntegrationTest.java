@@ -35,7 +35,7 @@ public class FloorAreaServiceIntegrationTest extends BaseServiceIntegrationTest<
 	public void testModelHasNonZeroFloorArea() {
 		JsonNode res = null;
 		try {
-			res = FloorAreaService.getJsonFromBinaryData(Files.readAllBytes(this.getFullIfcModelPath()));
+			res = this.bimbot.getClient().getJsonFromBinaryData(Files.readAllBytes(this.getFullIfcModelPath()));
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -3,6 +3,8 @@ package org.opensourcebim.services;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import org.bimserver.bimbots.BimBotContext;
+import org.bimserver.bimbots.BimBotsInput;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -14,10 +16,18 @@ import org.opensourcebim.test.BimBotTest;
 public class NMDSelectionIntegrationTest extends BaseServiceIntegrationTest<IfcToMpgCollectionService> {
 
 	private MpgObjectStore referencemodel;
+	// store collected by the last bot call
+	private MpgObjectStore results;
 
 	public NMDSelectionIntegrationTest(String relPath, String filename, Object referenceData) {
 		super(relPath, filename, referenceData);
-		this.bimbot = new IfcToMpgCollectionService();
+		this.bimbot = new IfcToMpgCollectionService() {
+			@Override
+			protected MpgObjectStore collectObjects(BimBotsInput input, BimBotContext bimBotContext) {
+				results = super.collectObjects(input, bimBotContext);
+				return results;
+			}
+		};
 		if (referenceData instanceof MpgObjectStore) {
 			this.referencemodel = (MpgObjectStore) referenceData;
 		} else {
@@ -29,7 +39,6 @@ public class NMDSelectionIntegrationTest extends BaseServiceIntegrationTest<IfcT
 	public void TestResultJsonContainsReferenceData() {
 		BimBotTest test = new BimBotTest(this.getFullIfcModelPath(), factory, authInfo, this.bimbot);
 		test.run();
-		MpgObjectStore results = this.getService().getStore();
 		results.getElements().forEach(el -> {
 			// get reference element by name
 			MpgElement refEl = referencemodel.getElementByName(el.getMpgObject().getObjectName());
@@ -10,6 +10,8 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.tomcat.util.buf.StringUtils;
+import org.bimserver.bimbots.BimBotContext;
+import org.bimserver.bimbots.BimBotsInput;
 import org.eclipse.jdt.core.compiler.InvalidInputException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -23,10 +25,18 @@ import org.opensourcebim.test.BimBotTest;
 public class ObjectCollectionIntegrationTest extends BaseServiceIntegrationTest<IfcToJsonDatasetService> {
 
 	private MpgObjectStore referencemodel;
+	// store collected by the last bot call
+	private MpgObjectStore results;
 
 	public ObjectCollectionIntegrationTest(String relPath, String filename, Object referenceData) {
 		super(relPath, filename, referenceData);
-		this.bimbot = new IfcToJsonDatasetService();
+		this.bimbot = new IfcToJsonDatasetService() {
+			@Override
+			protected MpgObjectStore collectObjects(BimBotsInput input, BimBotContext bimBotContext) {
+				results = super.collectObjects(input, bimBotContext);
+				return results;
+			}
+		};
 		if (referenceData instanceof MpgObjectStore) {
 			this.referencemodel = (MpgObjectStore) referenceData;
 		} else {
@@ -43,7 +53,6 @@ public class ObjectCollectionIntegrationTest extends BaseServiceIntegrationTest<
 	public void TestResultJsonContainsReferenceData() {
 		BimBotTest test = new BimBotTest(this.getFullIfcModelPath(), factory, authInfo, this.bimbot);
 		test.run();
-		MpgObjectStore results = this.getService().getStore();
 
 		Map<String, List<MpgElement>> resultGroups = results.getCleanedElementGroups();
 		Map<String, List<MpgElement>> referenceGroups = this.referencemodel.getElementGroups();